@@ -0,0 +1,46 @@
+package com.bolin.bench;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bench
+ * 基准测试用例
+ *
+ * 每组参数调用一次setup，之后反复调用run计时，最后调用teardown。
+ * run的返回值会被消费，避免被JIT优化掉。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public abstract class Bench {
+
+	/**
+	 * 用例名称
+	 * @return
+	 */
+	public abstract String name();
+
+	/**
+	 * 所有参数组合
+	 * @return
+	 */
+	public abstract List<Map<String, String>> params();
+
+	public abstract void setup(Map<String, String> params) throws Exception;
+
+	public abstract Object run() throws Exception;
+
+	public void teardown() throws Exception {
+	}
+
+	/**
+	 * 每次run处理的字节数，用于计算吞吐量，未知时返回0
+	 * @return
+	 */
+	public long bytesPerOp() {
+		return 0;
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.bolin.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BenchRunner
+ * 基准测试入口，依次运行所有用例并输出结果表格
+ *
+ * java -cp bin:bench-bin:* com.bolin.bench.BenchRunner [用例名称过滤] [-w 预热轮数] [-i 测量轮数] [-t 每轮毫秒数]
+ *
+ * 每组参数先预热若干轮让JIT编译完成，再测量若干轮取平均值。
+ * 分配字节数通过HotSpot的ThreadMXBean.getThreadAllocatedBytes统计当前线程的分配量，
+ * 其他JVM上显示为-。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class BenchRunner {
+
+	/** 防止run的返回值被JIT优化掉 */
+	private static volatile int sink;
+
+	private int warmupIterations = 3;
+
+	private int measureIterations = 5;
+
+	private long iterationMillis = 1000;
+
+	public static void main(String[] args) throws Exception {
+		BenchRunner runner = new BenchRunner();
+		List<String> filters = new ArrayList<String>();
+		for ( int i = 0; i < args.length; i++ ) {
+			if("-w".equals(args[i]) && i + 1 < args.length){
+				runner.warmupIterations = Integer.parseInt(args[++i]);
+			}else if("-i".equals(args[i]) && i + 1 < args.length){
+				runner.measureIterations = Integer.parseInt(args[++i]);
+			}else if("-t".equals(args[i]) && i + 1 < args.length){
+				runner.iterationMillis = Long.parseLong(args[++i]);
+			}else{
+				filters.add(args[i]);
+			}
+		}
+		runner.run(benches(), filters);
+	}
+
+	/**
+	 * 所有用例
+	 * @return
+	 */
+	public static List<Bench> benches() {
+		List<Bench> benches = new ArrayList<Bench>();
+		benches.add(new PropertiesLoadBench());
+		benches.add(new PropertiesFileBench());
+		benches.add(new PropertiesStoreBench());
+		benches.add(new PropertiesPatchBench());
+		benches.add(new FindBench());
+		benches.add(new XmlReplaceBench());
+		benches.add(new XmlRulesBench());
+		benches.add(new FormatPatchBench());
+		return benches;
+	}
+
+	public void run(List<Bench> benches, List<String> filters) throws Exception {
+		System.out.println(String.format("%-22s %-36s %12s %12s %14s %10s", "bench", "params", "ops/s", "ms/op", "B/op", "MB/s"));
+		for ( Bench bench : benches ) {
+			if(!matches(bench.name(), filters)) continue;
+			for ( Map<String, String> params : bench.params() ) {
+				bench.setup(params);
+				try {
+					for ( int i = 0; i < warmupIterations; i++ ) {
+						iteration(bench);
+					}
+					long ops = 0;
+					long nanos = 0;
+					long allocated = 0;
+					for ( int i = 0; i < measureIterations; i++ ) {
+						long[] result = iteration(bench);
+						ops += result[0];
+						nanos += result[1];
+						allocated = allocated < 0 || result[2] < 0 ? -1 : allocated + result[2];
+					}
+					print(bench, params, ops, nanos, allocated);
+				}
+				finally {
+					bench.teardown();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 运行一轮
+	 * @return 次数、纳秒、分配字节数
+	 */
+	private long[] iteration(Bench bench) throws Exception {
+		long allocatedStart = allocatedBytes();
+		long start = System.nanoTime();
+		long deadline = start + iterationMillis * 1000000L;
+		long ops = 0;
+		long now;
+		do {
+			Object result = bench.run();
+			sink ^= result == null ? 0 : result.hashCode();
+			ops++;
+			now = System.nanoTime();
+		} while (now < deadline);
+		long allocatedEnd = allocatedBytes();
+		long allocated = allocatedStart < 0 || allocatedEnd < 0 ? -1 : allocatedEnd - allocatedStart;
+		return new long[] { ops, now - start, allocated };
+	}
+
+	private void print(Bench bench, Map<String, String> params, long ops, long nanos, long allocated) {
+		double seconds = nanos / 1e9;
+		double opsPerSecond = ops / seconds;
+		String bytesPerOp = allocated < 0 ? "-" : String.valueOf(allocated / ops);
+		String throughput = bench.bytesPerOp() > 0 ? String.format("%.1f", bench.bytesPerOp() * opsPerSecond / (1024 * 1024)) : "-";
+		System.out.println(String.format("%-22s %-36s %12.2f %12.3f %14s %10s", bench.name(), params, opsPerSecond,
+				seconds * 1000 / ops, bytesPerOp, throughput));
+	}
+
+	private static boolean matches(String name, List<String> filters) {
+		if(filters.isEmpty()) return true;
+		for ( String filter : filters ) {
+			if(name.contains(filter)) return true;
+		}
+		return false;
+	}
+
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean){
+			com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+			if(hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()){
+				return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+}
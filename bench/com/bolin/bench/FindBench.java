@@ -0,0 +1,70 @@
+package com.bolin.bench;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import com.bolin.utils.ConfigFileUtil;
+import com.bolin.utils.ProjectScanCache;
+
+/**
+ * FindBench
+ * 在项目目录中查找配置文件：
+ * find为原来的递归查找（findTargetFile），每个配置文件遍历一次；
+ * index为遍历一次建立文件名索引（不使用缓存）；cache为使用遍历缓存，只重新列出有变化的目录
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class FindBench extends Bench {
+
+	private static final int CONFIG_FILES = 5;
+
+	private final ConfigFileUtil util = new ConfigFileUtil();
+
+	private File projectDir;
+
+	private File[] configFiles;
+
+	private String mode;
+
+	@Override
+	public String name() {
+		return "project.find";
+	}
+
+	@Override
+	public List<Map<String, String>> params() {
+		return new Params().with("tree", "3x8", "4x10", "6x5").with("mode", "find", "index", "cache").list();
+	}
+
+	@Override
+	public void setup(Map<String, String> params) throws Exception {
+		String[] tree = params.get("tree").split("x");
+		projectDir = Fixtures.projectTree(Integer.parseInt(tree[0]), Integer.parseInt(tree[1]));
+		configFiles = new File[CONFIG_FILES];
+		configFiles[0] = new File("target.properties");
+		for ( int i = 1; i < CONFIG_FILES; i++ ) {
+			configFiles[i] = new File("missing" + i + ".properties");
+		}
+		mode = params.get("mode");
+		util.setUseScanCache("cache".equals(mode));
+		if(util.isUseScanCache()){
+			new ProjectScanCache(ProjectScanCache.defaultCacheDir(), 1, util.getScanFilter()).invalidate(projectDir);
+		}
+	}
+
+	@Override
+	public Object run() throws Exception {
+		if("find".equals(mode)){
+			int found = 0;
+			for ( File configFile : configFiles ) {
+				found += util.find(projectDir.getAbsolutePath(), configFile.getName()).length();
+			}
+			return found;
+		}
+		return util.findAll(projectDir.getAbsolutePath(), configFiles);
+	}
+
+}
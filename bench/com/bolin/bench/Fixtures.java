@@ -0,0 +1,249 @@
+package com.bolin.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Fixtures
+ * 生成基准测试用的properties文件、xml文件和项目目录，生成结果按参数缓存在临时目录中
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class Fixtures {
+
+	private static final File ROOT = new File(System.getProperty("java.io.tmpdir"), "patchconfig-bench");
+
+	private Fixtures() {
+	}
+
+	/**
+	 * properties文件，每个配置项前有一行注释
+	 * @param keys 配置项数量
+	 * @param cjk 注释是否为中文
+	 * @return
+	 * @throws IOException
+	 */
+	public static File properties(int keys, boolean cjk) throws IOException {
+		File file = new File(ROOT, "props-" + keys + (cjk ? "-cjk" : "-ascii") + ".properties");
+		if(file.isFile()) return file;
+		file.getParentFile().mkdirs();
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "utf-8"));
+		try {
+			for ( int i = 0; i < keys; i++ ) {
+				writer.write(cjk ? "#第" + i + "个配置项的说明，数据库连接地址\n" : "#comment for entry " + i + ", database url\n");
+				writer.write("app.module" + (i % 100) + ".key" + i + "=jdbc:mysql://127.0.0.1:3306/db" + i + "?useUnicode=true\n");
+			}
+		}
+		finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	/**
+	 * 配置文件：替换properties文件中每10个配置项中的一个，另加10个新配置项
+	 * @param keys 要修改的properties文件的配置项数量
+	 * @return
+	 * @throws IOException
+	 */
+	public static File propertiesSource(int keys) throws IOException {
+		File file = new File(ROOT, "source-" + keys + ".properties");
+		if(file.isFile()) return file;
+		file.getParentFile().mkdirs();
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "utf-8"));
+		try {
+			for ( int i = 0; i < keys; i += 10 ) {
+				writer.write("app.module" + (i % 100) + ".key" + i + "=jdbc:mysql://10.0.0.1:3306/prod" + i + "\n");
+			}
+			for ( int i = 0; i < 10; i++ ) {
+				writer.write("app.new.key" + i + "=value" + i + "\n");
+			}
+		}
+		finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	/**
+	 * web.xml，包含filters个filter，其中一个为CASFilter
+	 * @param filters
+	 * @return
+	 * @throws IOException
+	 */
+	public static File webXml(int filters) throws IOException {
+		File file = new File(ROOT, "web-" + filters + ".xml");
+		if(file.isFile()) return file;
+		file.getParentFile().mkdirs();
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "utf-8"));
+		try {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			writer.write("<web-app xmlns=\"http://java.sun.com/xml/ns/javaee\" version=\"2.5\">\n");
+			for ( int i = 0; i < filters; i++ ) {
+				String name = i == filters / 2 ? "CASFilter" : "filter" + i;
+				writer.write("    <filter>\n        <filter-name>" + name + "</filter-name>\n");
+				writer.write("        <filter-class>com.example.Filter" + i + "</filter-class>\n");
+				writer.write("        <init-param><param-name>p</param-name><param-value>" + i + "</param-value></init-param>\n");
+				writer.write("    </filter>\n");
+			}
+			writer.write("</web-app>\n");
+		}
+		finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	/**
+	 * 替换CASFilter用的配置文件
+	 * @return
+	 * @throws IOException
+	 */
+	public static File webXmlSource() throws IOException {
+		File file = new File(ROOT, "source-web.xml");
+		if(file.isFile()) return file;
+		file.getParentFile().mkdirs();
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "utf-8"));
+		try {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			writer.write("<filter>\n    <filter-name>CASFilter</filter-name>\n");
+			writer.write("    <filter-class>org.jasig.cas.client.authentication.AuthenticationFilter</filter-class>\n</filter>\n");
+		}
+		finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	/**
+	 * json文件，services中有entries个服务，最后是datasource
+	 * @param entries
+	 * @return
+	 * @throws IOException
+	 */
+	public static File json(int entries) throws IOException {
+		File file = new File(ROOT, "app-" + entries + ".json");
+		if(file.isFile()) return file;
+		file.getParentFile().mkdirs();
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "utf-8"));
+		try {
+			writer.write("{\n    \"services\": [\n");
+			for ( int i = 0; i < entries; i++ ) {
+				writer.write("        {\"name\": \"service" + i + "\", \"url\": \"http://host" + i + ":8080/\u670d\u52a1\", \"weight\": " + i + "}");
+				writer.write(i + 1 < entries ? ",\n" : "\n");
+			}
+			writer.write("    ],\n    \"datasource\": {\n        \"url\": \"jdbc:mysql://localhost/app\",\n        \"pool\": 10\n    }\n}\n");
+		}
+		finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	/**
+	 * yaml文件，services下有entries个服务，最后是spring.datasource
+	 * @param entries
+	 * @return
+	 * @throws IOException
+	 */
+	public static File yaml(int entries) throws IOException {
+		File file = new File(ROOT, "app-" + entries + ".yml");
+		if(file.isFile()) return file;
+		file.getParentFile().mkdirs();
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "utf-8"));
+		try {
+			writer.write("# services\nservices:\n");
+			for ( int i = 0; i < entries; i++ ) {
+				writer.write("  service" + i + ":\n    url: http://host" + i + ":8080/\u670d\u52a1  # \u6ce8\u91ca\n    weight: " + i + "\n");
+			}
+			writer.write("spring:\n  datasource:\n    url: jdbc:mysql://localhost/app\n    pool: 10\n");
+		}
+		finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	/**
+	 * 替换json或yaml文件中datasource的配置文件
+	 * @param format json或yaml
+	 * @return
+	 * @throws IOException
+	 */
+	public static File formatSource(String format) throws IOException {
+		boolean json = "json".equals(format);
+		File file = new File(ROOT, "source-app." + (json ? "json" : "yml"));
+		if(file.isFile()) return file;
+		file.getParentFile().mkdirs();
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "utf-8"));
+		try {
+			if(json){
+				writer.write("{\"datasource\": {\"url\": \"jdbc:mysql://db/app\", \"user\": \"app\"}}\n");
+			}else{
+				writer.write("spring:\n  datasource:\n    url: jdbc:mysql://db/app\n    user: app\n");
+			}
+		}
+		finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	/**
+	 * 项目目录：每层width个子目录，共depth层，每个目录中有width个文件，
+	 * 最深一层的最后一个目录中有目标文件target.properties
+	 * @param depth
+	 * @param width
+	 * @return
+	 * @throws IOException
+	 */
+	public static File projectTree(int depth, int width) throws IOException {
+		File root = new File(ROOT, "tree-" + depth + "x" + width);
+		File done = new File(root, ".done");
+		if(done.isFile()) return root;
+		createTree(root, depth, width);
+		File dir = root;
+		for ( int i = 0; i < depth; i++ ) {
+			dir = new File(dir, "d" + (width - 1));
+		}
+		new File(dir, "target.properties").createNewFile();
+		done.createNewFile();
+		return root;
+	}
+
+	private static void createTree(File dir, int depth, int width) throws IOException {
+		dir.mkdirs();
+		for ( int i = 0; i < width; i++ ) {
+			new File(dir, "f" + i + ".class").createNewFile();
+		}
+		if(depth == 0) return;
+		for ( int i = 0; i < width; i++ ) {
+			createTree(new File(dir, "d" + i), depth - 1, width);
+		}
+	}
+
+	/**
+	 * 复制文件，用于每次替换前恢复要修改的文件
+	 * @param from
+	 * @param to
+	 * @throws IOException
+	 */
+	public static void copy(File from, File to) throws IOException {
+		Files.copy(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	public static File workDir() {
+		File dir = new File(ROOT, "work");
+		dir.mkdirs();
+		return dir;
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.bolin.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import com.bolin.utils.ConfigFileUtil;
+import com.bolin.utils.FormatHandler;
+
+/**
+ * FormatPatchBench
+ * 在内存中流式替换json、yaml文件末尾的datasource，吞吐量应与文件大小无关
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class FormatPatchBench extends Bench {
+
+	private final ConfigFileUtil util = new ConfigFileUtil();
+
+	private FormatHandler handler;
+
+	private Object config;
+
+	private byte[] original;
+
+	@Override
+	public String name() {
+		return "format.patch";
+	}
+
+	@Override
+	public List<Map<String, String>> params() {
+		return new Params().with("format", "json", "yaml").with("entries", "1000", "100000").list();
+	}
+
+	@Override
+	public void setup(Map<String, String> params) throws Exception {
+		int entries = Integer.parseInt(params.get("entries"));
+		File target = "json".equals(params.get("format")) ? Fixtures.json(entries) : Fixtures.yaml(entries);
+		original = Files.readAllBytes(target.toPath());
+		handler = util.getFormatHandler(target.getName());
+		config = handler.load(Fixtures.formatSource(params.get("format")));
+	}
+
+	@Override
+	public Object run() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(original.length + 1024);
+		util.replaceFormat(handler, config, new ByteArrayInputStream(original), out);
+		return out.size();
+	}
+
+	@Override
+	public long bytesPerOp() {
+		return original.length;
+	}
+
+}
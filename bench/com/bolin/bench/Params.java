@@ -0,0 +1,48 @@
+package com.bolin.bench;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Params
+ * 生成参数的笛卡尔积
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class Params {
+
+	private final List<Map<String, String>> combinations = new ArrayList<Map<String, String>>();
+
+	public Params() {
+		combinations.add(new LinkedHashMap<String, String>());
+	}
+
+	/**
+	 * 增加一个参数及其所有取值
+	 * @param name
+	 * @param values
+	 * @return
+	 */
+	public Params with(String name, String... values) {
+		List<Map<String, String>> next = new ArrayList<Map<String, String>>();
+		for ( Map<String, String> combination : combinations ) {
+			for ( String value : values ) {
+				Map<String, String> copy = new LinkedHashMap<String, String>(combination);
+				copy.put(name, value);
+				next.add(copy);
+			}
+		}
+		combinations.clear();
+		combinations.addAll(next);
+		return this;
+	}
+
+	public List<Map<String, String>> list() {
+		return combinations;
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.bolin.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import com.bolin.utils.CommentedProperties;
+
+/**
+ * PropertiesFileBench
+ * 从文件读取properties：stream为FileInputStream、InputStreamReader和LineReader，
+ * bytes为一次读入内存后按字节查找（load(File, charset)）
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class PropertiesFileBench extends Bench {
+
+	private File file;
+
+	private boolean bytes;
+
+	@Override
+	public String name() {
+		return "properties.loadFile";
+	}
+
+	@Override
+	public List<Map<String, String>> params() {
+		return new Params().with("keys", "100", "10000", "1000000").with("mode", "stream", "bytes").list();
+	}
+
+	@Override
+	public void setup(Map<String, String> params) throws Exception {
+		file = Fixtures.properties(Integer.parseInt(params.get("keys")), true);
+		bytes = "bytes".equals(params.get("mode"));
+	}
+
+	@Override
+	public Object run() throws Exception {
+		CommentedProperties properties = new CommentedProperties();
+		if(bytes){
+			properties.load(file, "utf-8");
+		}else{
+			InputStream in = new FileInputStream(file);
+			try {
+				properties.load(in, "utf-8");
+			}
+			finally {
+				in.close();
+			}
+		}
+		return properties.size();
+	}
+
+	@Override
+	public long bytesPerOp() {
+		return file.length();
+	}
+
+}
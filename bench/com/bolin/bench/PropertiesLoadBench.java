@@ -0,0 +1,51 @@
+package com.bolin.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import com.bolin.utils.CommentedProperties;
+
+/**
+ * PropertiesLoadBench
+ * CommentedProperties读取properties（load0、LineReader.readLine、loadConvert），文件内容预先读入内存
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class PropertiesLoadBench extends Bench {
+
+	private byte[] content;
+
+	@Override
+	public String name() {
+		return "properties.load";
+	}
+
+	@Override
+	public List<Map<String, String>> params() {
+		return new Params().with("keys", "100", "10000", "1000000").with("cjk", "false", "true").list();
+	}
+
+	@Override
+	public void setup(Map<String, String> params) throws Exception {
+		File file = Fixtures.properties(Integer.parseInt(params.get("keys")), Boolean.parseBoolean(params.get("cjk")));
+		content = Files.readAllBytes(file.toPath());
+	}
+
+	@Override
+	public Object run() throws Exception {
+		CommentedProperties properties = new CommentedProperties();
+		properties.load(new ByteArrayInputStream(content), "utf-8");
+		return properties.size();
+	}
+
+	@Override
+	public long bytesPerOp() {
+		return content.length;
+	}
+
+}
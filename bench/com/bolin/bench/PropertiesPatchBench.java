@@ -0,0 +1,64 @@
+package com.bolin.bench;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import com.bolin.utils.ConfigFileUtil;
+
+/**
+ * PropertiesPatchBench
+ * ConfigFileUtil.replaceProperties替换properties文件，streaming为流式替换，legacy为读取整个文件后重新写出。
+ * 每次替换前复制原文件，复制的耗时也计算在内
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class PropertiesPatchBench extends Bench {
+
+	private final ConfigFileUtil util = new ConfigFileUtil();
+
+	private File original;
+
+	private File target;
+
+	private String source;
+
+	@Override
+	public String name() {
+		return "properties.patch";
+	}
+
+	@Override
+	public List<Map<String, String>> params() {
+		return new Params().with("keys", "100", "10000", "1000000").with("mode", "streaming", "legacy").list();
+	}
+
+	@Override
+	public void setup(Map<String, String> params) throws Exception {
+		int keys = Integer.parseInt(params.get("keys"));
+		original = Fixtures.properties(keys, true);
+		source = Fixtures.propertiesSource(keys).getAbsolutePath();
+		target = new File(Fixtures.workDir(), "target.properties");
+		util.setStreamingProperties("streaming".equals(params.get("mode")));
+	}
+
+	@Override
+	public Object run() throws Exception {
+		Fixtures.copy(original, target);
+		util.replaceProperties(source, target.getAbsolutePath());
+		return target.length();
+	}
+
+	@Override
+	public long bytesPerOp() {
+		return original.length();
+	}
+
+	@Override
+	public void teardown() throws Exception {
+		target.delete();
+	}
+
+}
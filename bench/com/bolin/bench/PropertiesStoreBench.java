@@ -0,0 +1,67 @@
+package com.bolin.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import com.bolin.utils.CommentedProperties;
+
+/**
+ * PropertiesStoreBench
+ * CommentedProperties写出properties（store0、saveConvert），写到内存中
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class PropertiesStoreBench extends Bench {
+
+	private CommentedProperties properties;
+
+	private int size;
+
+	@Override
+	public String name() {
+		return "properties.store";
+	}
+
+	@Override
+	public List<Map<String, String>> params() {
+		return new Params().with("keys", "100", "10000", "1000000").with("cjk", "false", "true").list();
+	}
+
+	@Override
+	public void setup(Map<String, String> params) throws Exception {
+		File file = Fixtures.properties(Integer.parseInt(params.get("keys")), Boolean.parseBoolean(params.get("cjk")));
+		properties = new CommentedProperties();
+		InputStream in = new FileInputStream(file);
+		try {
+			properties.load(in, "utf-8");
+		}
+		finally {
+			in.close();
+		}
+		size = (int) file.length();
+	}
+
+	@Override
+	public Object run() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(size + size / 2);
+		properties.store(out, "utf-8", null);
+		return out.size();
+	}
+
+	@Override
+	public long bytesPerOp() {
+		return size;
+	}
+
+	@Override
+	public void teardown() throws Exception {
+		properties = null;
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.bolin.bench;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import com.bolin.utils.ConfigFileUtil;
+
+/**
+ * XmlReplaceBench
+ * ConfigFileUtil.replaceXml替换web.xml中的CASFilter，比较dom4j与StAX。
+ * 每次替换前复制原文件，复制的耗时也计算在内
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class XmlReplaceBench extends Bench {
+
+	private final ConfigFileUtil util = new ConfigFileUtil();
+
+	private File original;
+
+	private File target;
+
+	private String source;
+
+	@Override
+	public String name() {
+		return "xml.replace";
+	}
+
+	@Override
+	public List<Map<String, String>> params() {
+		return new Params().with("filters", "10", "1000", "50000").with("mode", "dom4j", "stax").list();
+	}
+
+	@Override
+	public void setup(Map<String, String> params) throws Exception {
+		original = Fixtures.webXml(Integer.parseInt(params.get("filters")));
+		source = Fixtures.webXmlSource().getAbsolutePath();
+		target = new File(Fixtures.workDir(), "web.xml");
+		util.setStreamingXml("stax".equals(params.get("mode")));
+	}
+
+	@Override
+	public Object run() throws Exception {
+		Fixtures.copy(original, target);
+		util.replaceXml(source, target.getAbsolutePath());
+		return target.length();
+	}
+
+	@Override
+	public long bytesPerOp() {
+		return original.length();
+	}
+
+	@Override
+	public void teardown() throws Exception {
+		target.delete();
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.bolin.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.events.XMLEvent;
+
+import com.bolin.xml.StaxXmlDocument;
+import com.bolin.xml.XmlRules;
+
+/**
+ * XmlRulesBench
+ * XmlRules在内存中修改web.xml，比较1条规则和20条规则的耗时，
+ * 规则在一次遍历中应用，两者应当接近
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class XmlRulesBench extends Bench {
+
+	private byte[] original;
+
+	private XmlRules rules;
+
+	@Override
+	public String name() {
+		return "xml.rules";
+	}
+
+	@Override
+	public List<Map<String, String>> params() {
+		return new Params().with("filters", "1000", "50000").with("rules", "1", "20").list();
+	}
+
+	@Override
+	public void setup(Map<String, String> params) throws Exception {
+		int filters = Integer.parseInt(params.get("filters"));
+		original = Files.readAllBytes(Fixtures.webXml(filters).toPath());
+		List<XMLEvent> content = StaxXmlDocument.readRootElement(Fixtures.webXmlSource());
+		int count = Integer.parseInt(params.get("rules"));
+		List<XmlRules.Rule> list = new ArrayList<XmlRules.Rule>();
+		list.add(new XmlRules.Rule(XmlRules.Action.REPLACE, "filter[filter-name=CASFilter]", null, null, null, content));
+		for ( int i = 1; i < count; i++ ) {
+			//分散在文档各处的filter，一半修改属性，一半删除
+			String select = "filter[filter-name=filter" + (i * filters / count) + "]";
+			if(i % 2 == 0){
+				list.add(new XmlRules.Rule(XmlRules.Action.SET_ATTRIBUTE, select, null, "id", "f" + i, null));
+			}else{
+				list.add(new XmlRules.Rule(XmlRules.Action.REMOVE, select, null, null, null, null));
+			}
+		}
+		rules = new XmlRules(list);
+	}
+
+	@Override
+	public Object run() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(original.length + 1024);
+		rules.apply(new ByteArrayInputStream(original), out);
+		return out.size();
+	}
+
+	@Override
+	public long bytesPerOp() {
+		return original.length;
+	}
+
+}
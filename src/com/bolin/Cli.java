@@ -0,0 +1,449 @@
+package com.bolin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.bolin.patch.ApplyEngine;
+import com.bolin.patch.ApplyReport;
+import com.bolin.patch.ApplyResult;
+import com.bolin.patch.ArchivePatcher;
+import com.bolin.patch.BatchPatcher;
+import com.bolin.patch.BatchReport;
+import com.bolin.patch.ConfigWatcher;
+import com.bolin.patch.JarPruner;
+import com.bolin.patch.JarRules;
+import com.bolin.patch.PatchPlan;
+import com.bolin.patch.PatchPlanner;
+import com.bolin.patch.PruneReport;
+import com.bolin.utils.ConfigFileUtil;
+import com.bolin.utils.PatchMetrics;
+import com.bolin.utils.ScanFilter;
+
+/**
+ * 命令行入口，不加载AWT/Swing，可在无图形界面的构建机上运行
+ *
+ * java -cp PatchConfig_fat.jar com.bolin.Cli -p 项目目录或war包 -c 配置文件目录
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class Cli {
+
+	/** 全部替换成功 */
+	public static final int EXIT_OK = 0;
+	/** 有配置文件未找到、未处理或替换失败 */
+	public static final int EXIT_INCOMPLETE = 1;
+	/** 参数错误 */
+	public static final int EXIT_USAGE = 2;
+	/** 执行出错 */
+	public static final int EXIT_ERROR = 3;
+
+	private final PrintStream out;
+
+	private final PrintStream err;
+
+	private boolean quiet = false;
+
+	public Cli(PrintStream out, PrintStream err) {
+		super();
+		this.out = out;
+		this.err = err;
+	}
+
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		System.exit(new Cli(System.out, System.err).run(args));
+	}
+
+	/**
+	 * 解析参数并执行，返回退出码；结束时输出各阶段的耗时统计
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param args
+	 * @return
+	 */
+	public int run(String[] args) {
+		PatchMetrics.Snapshot before = PatchMetrics.snapshot();
+		int code = execute(args);
+		PatchMetrics.Snapshot metrics = PatchMetrics.snapshot().since(before);
+		if(!quiet && !metrics.isEmpty()){
+			//统计输出到标准错误，不影响--dry-run输出的diff
+			err.print(metrics.toTable());
+		}
+		return code;
+	}
+
+	private int execute(String[] args) {
+		String projectPath = null;
+		String projectsRoot = null;
+		List<File> projects = new ArrayList<File>();
+		String configPath = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int scanThreads = -1;
+		boolean dryRun = false;
+		String changesPath = null;
+		List<String> includes = new ArrayList<String>();
+		List<String> excludes = new ArrayList<String>(ScanFilter.DEFAULT_EXCLUDES);
+		int maxDepth = -1;
+		boolean pruneJars = false;
+		String jarRulesPath = null;
+		String container = "tomcat";
+		boolean watch = false;
+		long debounce = 200L;
+		boolean watchProject = false;
+		ConfigFileUtil util = new ConfigFileUtil();
+
+		for ( int i = 0; i < args.length; i++ ) {
+			String arg = args[i];
+			if("-h".equals(arg) || "--help".equals(arg)){
+				usage(out);
+				return EXIT_OK;
+			}else if("-q".equals(arg) || "--quiet".equals(arg)){
+				quiet = true;
+			}else if("--no-cache".equals(arg)){
+				util.setUseScanCache(false);
+			}else if("--legacy-properties".equals(arg)){
+				util.setStreamingProperties(false);
+			}else if("--legacy-xml".equals(arg)){
+				util.setStreamingXml(false);
+			}else if("--no-staging".equals(arg)){
+				util.setStagedWrites(false);
+			}else if("--dry-run".equals(arg)){
+				dryRun = true;
+			}else if(i + 1 < args.length && "--changes".equals(arg)){
+				dryRun = true;
+				changesPath = args[++i];
+			}else if("--no-default-excludes".equals(arg)){
+				excludes.removeAll(ScanFilter.DEFAULT_EXCLUDES);
+			}else if(i + 1 < args.length && "--include".equals(arg)){
+				includes.add(args[++i]);
+			}else if(i + 1 < args.length && "--exclude".equals(arg)){
+				excludes.add(args[++i]);
+			}else if(i + 1 < args.length && "--max-depth".equals(arg)){
+				maxDepth = parseInt(args[++i], -1);
+				if(maxDepth < 1) return usageError("最大深度无效：" + args[i]);
+			}else if("--watch".equals(arg)){
+				watch = true;
+			}else if("--watch-project".equals(arg)){
+				watch = true;
+				watchProject = true;
+			}else if(i + 1 < args.length && "--debounce".equals(arg)){
+				debounce = parseInt(args[++i], -1);
+				if(debounce < 0) return usageError("等待时间无效：" + args[i]);
+			}else if("--prune-jars".equals(arg)){
+				pruneJars = true;
+			}else if(i + 1 < args.length && "--jar-rules".equals(arg)){
+				pruneJars = true;
+				jarRulesPath = args[++i];
+			}else if(i + 1 < args.length && "--container".equals(arg)){
+				container = args[++i];
+			}else if(i + 1 < args.length && ("-p".equals(arg) || "--project".equals(arg))){
+				String value = args[++i];
+				if(projectPath == null){
+					projectPath = value;
+				}
+				projects.add(new File(value));
+			}else if(i + 1 < args.length && ("-r".equals(arg) || "--projects-root".equals(arg))){
+				projectsRoot = args[++i];
+			}else if(i + 1 < args.length && ("-c".equals(arg) || "--config".equals(arg))){
+				configPath = args[++i];
+			}else if(i + 1 < args.length && ("-t".equals(arg) || "--threads".equals(arg))){
+				threads = parseInt(args[++i], -1);
+				if(threads < 1) return usageError("线程数无效：" + args[i]);
+			}else if(i + 1 < args.length && "--scan-threads".equals(arg)){
+				scanThreads = parseInt(args[++i], -1);
+				if(scanThreads < 1) return usageError("线程数无效：" + args[i]);
+			}else{
+				return usageError("未知参数：" + arg);
+			}
+		}
+
+		util.setScanFilter(new ScanFilter(includes, excludes, maxDepth));
+
+		if(configPath == null && !pruneJars){
+			return usageError("未指定配置文件目录！");
+		}
+		if(projectPath == null && projectsRoot == null){
+			return usageError("未指定项目文件目录！");
+		}
+		if(projectsRoot != null){
+			projects.addAll(BatchPatcher.listProjects(new File(projectsRoot)));
+		}
+		if(pruneJars){
+			JarRules jarRules;
+			try {
+				jarRules = "none".equalsIgnoreCase(container) ? new JarRules() : JarRules.container(container);
+				if(jarRulesPath != null){
+					jarRules.addAll(JarRules.load(new File(jarRulesPath)));
+				}
+			}
+			catch (IllegalArgumentException e) {
+				return usageError(e.getMessage());
+			}
+			catch (IOException e) {
+				err.println(now() + "读取jar包规则出错：" + e);
+				return EXIT_USAGE;
+			}
+			int code = runPrune(projects, jarRules, threads, dryRun);
+			if(configPath == null || code != EXIT_OK){
+				return code;
+			}
+		}
+
+		File configDir = new File(configPath);
+		File[] configFiles = configDir.listFiles();
+		if(configFiles == null || configFiles.length < 1){
+			err.println(now() + "选择的配置文件目录中没有可以替换的配置文件！");
+			return EXIT_USAGE;
+		}
+
+		try {
+			if(watch){
+				if(dryRun || projectsRoot != null || projects.size() > 1){
+					return usageError("--watch只支持单个项目，不能与--dry-run一起使用！");
+				}
+				if(scanThreads > 0){
+					util.setScanParallelism(scanThreads);
+				}
+				return runWatch(util, threads, projectPath, configDir, debounce, watchProject);
+			}
+			if(dryRun){
+				if(projectsRoot != null || projects.size() > 1){
+					return usageError("--dry-run只支持单个项目！");
+				}
+				if(!util.isStreamingProperties() || !util.isStreamingXml()){
+					//预览按流式替换计算，与legacy方式实际写出的内容不同
+					return usageError("--dry-run、--changes不能与--legacy-properties、--legacy-xml一起使用！");
+				}
+				if(scanThreads > 0){
+					util.setScanParallelism(scanThreads);
+				}
+				return runPlan(util, threads, projectPath, configFiles, changesPath);
+			}
+			if(projectsRoot != null || projects.size() > 1){
+				//项目之间已经并行，遍历单个项目时不再多开线程
+				util.setScanParallelism(scanThreads > 0 ? scanThreads : 1);
+				return runBatch(util, threads, projects, configDir);
+			}
+			if(scanThreads > 0){
+				util.setScanParallelism(scanThreads);
+			}
+			return runSingle(util, threads, projectPath, configFiles);
+		}
+		catch (Exception e) {
+			err.println(now() + "执行出错：" + e);
+			return EXIT_ERROR;
+		}
+	}
+
+	private int runSingle(ConfigFileUtil util, int threads, String projectPath, File[] configFiles) throws Exception {
+		File project = new File(projectPath);
+		if(!project.exists()){
+			err.println(now() + "项目文件目录不存在：" + projectPath);
+			return EXIT_USAGE;
+		}
+		log("开始替换配置文件...");
+		ApplyReport report;
+		if(project.isFile() && ArchivePatcher.isArchive(project.getName())){
+			report = new ArchivePatcher(util).patch(project, configFiles);
+		}else{
+			report = new ApplyEngine(util, threads).apply(project.getAbsolutePath(), configFiles, null);
+		}
+		for ( ApplyResult result : report.getResults() ) {
+			logResult(result, "");
+		}
+		log(report.toString());
+		return report.isSuccess() ? EXIT_OK : EXIT_INCOMPLETE;
+	}
+
+	/**
+	 * 完整替换一次后监视配置文件目录，修改的配置文件重新替换，Ctrl+C结束
+	 */
+	private int runWatch(ConfigFileUtil util, int threads, String projectPath, File configDir, long debounce,
+			boolean watchProject) throws Exception {
+		File project = new File(projectPath);
+		if(!project.isDirectory()){
+			err.println(now() + "--watch只支持项目目录：" + projectPath);
+			return EXIT_USAGE;
+		}
+		final ConfigWatcher watcher = new ConfigWatcher(util, project, configDir, threads, debounce, watchProject);
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					watcher.close();
+				}
+				catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}));
+		log("开始替换配置文件...");
+		ApplyReport report = watcher.start();
+		for ( ApplyResult result : report.getResults() ) {
+			logResult(result, "");
+		}
+		log(report.toString());
+		log("监视配置文件目录" + configDir.getPath() + "，按Ctrl+C结束");
+		watcher.watch(new ConfigWatcher.Listener() {
+			@Override
+			public void onResult(ApplyResult result) {
+				logResult(result, "，耗时" + result.getMillis() + "ms");
+			}
+		});
+		return EXIT_OK;
+	}
+
+	private void logResult(ApplyResult result, String suffix) {
+		if(result.isSuccess()){
+			log("配置文件:" + result.getConfigFile().getName() + " -> " + result.getTargetFile() + suffix);
+		}else{
+			err.println(now() + "配置文件:" + result.getConfigFile().getName() + " " + result.getMsg() + suffix);
+		}
+	}
+
+	/**
+	 * 删除项目lib目录中匹配规则的jar包，预览时日志输出到标准错误
+	 */
+	private int runPrune(List<File> projects, JarRules jarRules, int threads, boolean dryRun) {
+		PrintStream info = dryRun ? err : out;
+		boolean success = true;
+		for ( File project : projects ) {
+			if(!project.isDirectory()){
+				err.println(now() + "只能删除项目目录中的jar包：" + project.getPath());
+				success = false;
+				continue;
+			}
+			PruneReport report = new JarPruner(jarRules, threads).prune(project, dryRun, null);
+			for ( PruneReport.JarResult result : report.getResults() ) {
+				if(result.getStatus() == PruneReport.Status.FAILED){
+					err.println(now() + result);
+				}else if(result.getStatus() != PruneReport.Status.KEPT && !quiet){
+					info.println(now() + result);
+				}
+			}
+			if(!quiet){
+				info.println(now() + project.getName() + "：" + report);
+			}
+			success &= report.isSuccess();
+		}
+		return success ? EXIT_OK : EXIT_INCOMPLETE;
+	}
+
+	/**
+	 * 预览替换，diff输出到标准输出，日志输出到标准错误，不修改任何文件
+	 */
+	private int runPlan(ConfigFileUtil util, int threads, String projectPath, File[] configFiles, String changesPath) throws Exception {
+		File project = new File(projectPath);
+		if(!project.exists()){
+			err.println(now() + "项目文件目录不存在：" + projectPath);
+			return EXIT_USAGE;
+		}
+		PatchPlan plan = new PatchPlanner(util, threads).plan(project, configFiles);
+		out.print(plan.toUnifiedDiff());
+		out.flush();
+		if(changesPath != null){
+			Writer writer = new OutputStreamWriter(new FileOutputStream(changesPath), "UTF-8");
+			try {
+				writer.write(plan.toJson());
+			}
+			finally {
+				writer.close();
+			}
+		}
+		ApplyReport report = plan.getReport();
+		for ( ApplyResult result : report.getResults() ) {
+			if(!result.isSuccess()){
+				err.println(now() + "配置文件:" + result.getConfigFile().getName() + " " + result.getMsg());
+			}
+		}
+		if(!quiet){
+			err.println(now() + "预览：" + report.toString() + "，修改" + plan.getChanges().size() + "处");
+		}
+		return report.isSuccess() ? EXIT_OK : EXIT_INCOMPLETE;
+	}
+
+	private int runBatch(ConfigFileUtil util, int threads, List<File> projects, File configDir) {
+		if(projects.isEmpty()){
+			err.println(now() + "没有需要替换的项目！");
+			return EXIT_USAGE;
+		}
+		log("开始批量替换" + projects.size() + "个项目...");
+		BatchReport report = new BatchPatcher(util, threads).apply(projects, configDir, new BatchPatcher.Listener() {
+			@Override
+			public void onProject(BatchReport.ProjectResult result, int done, int total) {
+				if(result.isSuccess()){
+					log("[" + done + "/" + total + "] " + result);
+				}else{
+					err.println(now() + "[" + done + "/" + total + "] " + result);
+				}
+			}
+		});
+		log("共" + report.getResults().size() + "个项目，全部成功" + report.getSuccessCount() + "个，耗时" + report.getMillis() + "ms");
+		return report.isSuccess() ? EXIT_OK : EXIT_INCOMPLETE;
+	}
+
+	private void log(String msg) {
+		if(!quiet){
+			out.println(now() + msg);
+		}
+	}
+
+	private int usageError(String msg) {
+		err.println(msg);
+		usage(err);
+		return EXIT_USAGE;
+	}
+
+	private static int parseInt(String value, int defaultValue) {
+		try {
+			return Integer.parseInt(value);
+		}
+		catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private static void usage(PrintStream stream) {
+		stream.println("用法: java -cp PatchConfig_fat.jar com.bolin.Cli [选项]");
+		stream.println("  -p, --project <路径>        项目文件目录或war包，可指定多个");
+		stream.println("  -r, --projects-root <目录>  批量替换目录下的所有项目（子目录和war包）");
+		stream.println("  -c, --config <目录>         配置文件目录");
+		stream.println("  -t, --threads <n>           并发线程数，默认为CPU核数");
+		stream.println("      --scan-threads <n>      遍历项目目录的线程数");
+		stream.println("      --include <glob>        只查找匹配的文件，可指定多个");
+		stream.println("      --exclude <glob>        不进入匹配的目录、不查找匹配的文件，可指定多个");
+		stream.println("      --no-default-excludes   不排除.git、node_modules、WEB-INF/lib等默认目录");
+		stream.println("      --max-depth <n>         最多查找到项目目录下第n层");
+		stream.println("      --prune-jars            删除lib目录中容器已提供的jar包，可单独使用");
+		stream.println("      --jar-rules <文件>      删除jar包的规则文件：文件名glob或groupId:artifactId，每行一条");
+		stream.println("      --container <名称>      容器已提供的jar包列表：tomcat（默认）或none");
+		stream.println("      --no-cache              不使用项目目录遍历缓存");
+		stream.println("      --legacy-properties     读取整个properties文件后重新写出");
+		stream.println("      --legacy-xml            使用dom4j替换xml文件");
+		stream.println("      --no-staging            逐个文件直接替换，不统一提交");
+		stream.println("      --watch                 替换后监视配置文件目录，修改的配置文件立即重新替换");
+		stream.println("      --watch-project         同--watch，并在项目文件被覆盖后重新替换");
+		stream.println("      --debounce <ms>         连续修改时等待的毫秒数，默认200");
+		stream.println("      --dry-run               只预览，输出unified diff，不修改文件，不能与legacy选项一起使用");
+		stream.println("      --changes <文件>        预览并把修改清单以json写入文件");
+		stream.println("  -q, --quiet                 只输出错误信息");
+		stream.println("  -h, --help                  显示帮助");
+		stream.println("退出码: 0 全部成功，1 有配置文件未替换，2 参数错误，3 执行出错");
+	}
+
+	private static String now(){
+		return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + " ";
+	}
+
+}
@@ -4,23 +4,36 @@ import java.awt.BorderLayout;
 import java.awt.EventQueue;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.SwingWorker;
 
 import org.apache.commons.lang.StringUtils;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONObject;
+import com.bolin.patch.ApplyEngine;
+import com.bolin.patch.ArchivePatcher;
+import com.bolin.patch.ApplyReport;
+import com.bolin.patch.ApplyResult;
+import com.bolin.patch.ConfigSource;
+import com.bolin.patch.JarPruner;
+import com.bolin.patch.JarRules;
+import com.bolin.patch.PruneReport;
 import com.bolin.utils.ConfigFileUtil;
+import com.bolin.utils.PatchMetrics;
 
 /**
  * @author bolin
@@ -36,8 +49,15 @@ public class Main {
 	private JTextField configPath;
 	private JButton startReplaceBtn;
 	private JTextArea logArea;
+	private JButton removeJarBtn;
+	private JButton cancelBtn;
+	private JProgressBar progressBar;
+	private LogWorker worker;
 
-	private final String[] removedJars = new String[]{"jsp-api", "servlet"};
+	/**
+	 * 删除jar包的规则（见JarRules），容器已提供的完整列表只在命令行中通过--container使用
+	 */
+	private final String[] removedJars = new String[]{"*jsp-api*.jar", "*servlet-api*.jar"};
 	
 	/**
 	 * Launch the application.
@@ -84,8 +104,8 @@ public class Main {
 			public void actionPerformed(ActionEvent e) {
 				
 				JFileChooser addChooser = new JFileChooser("E:\\deploy");
-				addChooser.setDialogTitle("选择项目文件目录");
-				addChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+				addChooser.setDialogTitle("选择项目文件目录或war包");
+				addChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
 				int returnval = addChooser.showOpenDialog(frame);
                 if(returnval == JFileChooser.APPROVE_OPTION) 
                 { 
@@ -156,30 +176,8 @@ public class Main {
 				if(configFiles == null || configFiles.length < 1){
 					logArea.append(now() + "选择的配置文件目录中没有可以替换的配置文件！\n");
 					return;
-				}else{
-					
-					for ( File configFile : configFiles ) {
-						logArea.append("---------------------------------------------------------\n");
-						logArea.append(now() + "配置文件:" + configFile.getName() + "\n");
-						
-						ConfigFileUtil util = new ConfigFileUtil();
-						String findResultStr = util.find(projectFilePath, configFile.getName());
-						JSONObject findResult = JSON.parseObject(findResultStr);
-						if(!findResult.getBooleanValue("success")){
-							logArea.append(now() + findResult.getString("msg") + "\n");
-							return;
-						}
-						String targetFileDir =  findResult.getString("msg");
-						if(util.isXmlFile(targetFileDir)){
-							util.replaceXml(configFile.getAbsolutePath(), targetFileDir);
-						}else if(util.isPropertyFile(targetFileDir)){
-							util.replaceProperties(configFile.getAbsolutePath(), targetFileDir);
-						}else{
-							logArea.append(now() + "未知的配置文件类型：不处理\n");
-						}
-					}
-					logArea.append(now() + "替换配置文件结束！\n");
 				}
+				startWorker(new ReplaceWorker(projectFilePath, configFiles));
 			}
 		});
 		startReplaceBtn.setBounds(23, 86, 128, 23);
@@ -192,7 +190,7 @@ public class Main {
         jsp.setBounds(23, 115, 482, 246);
         frame.getContentPane().add(jsp, BorderLayout.CENTER);
         
-        JButton removeJarBtn = new JButton("删除jar包");
+        removeJarBtn = new JButton("删除jar包");
         removeJarBtn.addActionListener(new ActionListener() {
         	@Override
 			public void actionPerformed(ActionEvent e) {
@@ -203,28 +201,265 @@ public class Main {
 					return;
 				}
 				logArea.append(now() + "开始删除jar文件...\n");
-				String jarDir = projectFilePath + File.separator + "WEB-INF" + File.separator + "lib";
-				File jarFileDir = new File(jarDir);
-				
-				File[] jars = jarFileDir.listFiles();
-				if(jars.length > 0){
-					for ( File jar : jars ) {
-						if(StringUtils.contains(jar.getName(), "jsp-api") || 
-						   StringUtils.contains(jar.getName(), "servlet-api")){
-							logArea.append(now() + "删除jar：" + jar.getName());
-							jar.delete();
-						}
-					}
-				}else{
-					logArea.append("无需要删除的jar文件！");
-				}
+				startWorker(new RemoveJarWorker(projectFilePath));
         	}
         });
         removeJarBtn.setBounds(158, 86, 105, 23);
         frame.getContentPane().add(removeJarBtn);
+        
+        cancelBtn = new JButton("取消");
+        cancelBtn.setEnabled(false);
+        cancelBtn.addActionListener(new ActionListener() {
+        	@Override
+        	public void actionPerformed(ActionEvent e) {
+        		if(worker != null && !worker.isDone()){
+        			worker.requestCancel();
+        			cancelBtn.setEnabled(false);
+        		}
+        	}
+        });
+        cancelBtn.setBounds(270, 86, 70, 23);
+        frame.getContentPane().add(cancelBtn);
+        
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setBounds(347, 86, 158, 23);
+        frame.getContentPane().add(progressBar);
         frame.setVisible(true);
 	}
 	
+	/**
+	 * 在后台线程中执行任务，执行期间禁用操作按钮
+	 * @param logWorker
+	 */
+	private void startWorker(LogWorker logWorker) {
+		worker = logWorker;
+		startReplaceBtn.setEnabled(false);
+		removeJarBtn.setEnabled(false);
+		cancelBtn.setEnabled(true);
+		progressBar.setValue(0);
+		logWorker.addPropertyChangeListener(new PropertyChangeListener() {
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				if("progress".equals(evt.getPropertyName())){
+					progressBar.setValue((Integer) evt.getNewValue());
+				}
+			}
+		});
+		logWorker.execute();
+	}
+	
+	/**
+	 * 后台任务基类
+	 * 日志通过publish分批追加到logArea，任务之间检查是否已取消
+	 * 取消只设置标记，不调用SwingWorker.cancel：doInBackground返回后才恢复按钮，已执行部分的结果照常输出
+	 */
+	private abstract class LogWorker extends SwingWorker<Void, String> {
+		
+		protected volatile boolean cancelled = false;
+		
+		protected void log(String msg) {
+			publish(now() + msg + "\n");
+		}
+		
+		protected void line() {
+			publish("---------------------------------------------------------\n");
+		}
+		
+		/**
+		 * 点击取消时调用
+		 */
+		void requestCancel() {
+			cancelled = true;
+			onCancel();
+		}
+		
+		/**
+		 * 用于通知正在执行的任务尽快停止，任务开始前已取消的，由子类在开始时检查cancelled
+		 */
+		protected void onCancel() {
+		}
+		
+		/**
+		 * 取消是否生效，取消时已经执行完的任务返回false
+		 */
+		protected boolean isStopped() {
+			return cancelled;
+		}
+		
+		protected void progress(int done, int total) {
+			setProgress(total <= 0 ? 100 : Math.min(100, done * 100 / total));
+		}
+		
+		@Override
+		protected void process(List<String> lines) {
+			StringBuilder buffer = new StringBuilder();
+			for ( String line : lines ) {
+				buffer.append(line);
+			}
+			logArea.append(buffer.toString());
+		}
+		
+		@Override
+		protected void done() {
+			try {
+				get();
+				if(isStopped()){
+					logArea.append(now() + "已取消！\n");
+				}
+			}
+			catch (InterruptedException e) {
+				logArea.append(now() + "已取消！\n");
+			}
+			catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+				logArea.append(now() + "执行出错：" + e.getCause() + "\n");
+			}
+			startReplaceBtn.setEnabled(true);
+			removeJarBtn.setEnabled(true);
+			cancelBtn.setEnabled(false);
+		}
+	}
+	
+	/**
+	 * 替换配置文件
+	 */
+	private class ReplaceWorker extends LogWorker {
+		
+		private final String projectFilePath;
+		private final File[] configFiles;
+		private volatile ApplyEngine engine;
+		private volatile ArchivePatcher archivePatcher;
+		private volatile ApplyReport report;
+		
+		ReplaceWorker(String projectFilePath, File[] configFiles) {
+			this.projectFilePath = projectFilePath;
+			this.configFiles = configFiles;
+		}
+		
+		private final PatchMetrics.Snapshot before = PatchMetrics.snapshot();
+		
+		@Override
+		protected Void doInBackground() throws Exception {
+			progress(0, configFiles.length);
+			ConfigFileUtil util = new ConfigFileUtil();
+			if(ArchivePatcher.isArchive(projectFilePath) && new File(projectFilePath).isFile()){
+				//直接替换war包中的配置文件，取消时不修改war包
+				archivePatcher = new ArchivePatcher(util);
+				if(cancelled){
+					archivePatcher.cancel();
+				}
+				report = archivePatcher.patch(new File(projectFilePath), ConfigSource.of(configFiles), new ApplyEngine.Listener() {
+					@Override
+					public void onResult(ApplyResult result, int done, int total) {
+						progress(done, total);
+					}
+				});
+				for ( ApplyResult result : report.getResults() ) {
+					logResult(result);
+				}
+				line();
+				log(report.toString());
+				logMetrics();
+				log("替换配置文件结束！");
+				return null;
+			}
+			engine = new ApplyEngine(util);
+			if(cancelled){
+				engine.cancel();
+			}
+			report = engine.apply(projectFilePath, configFiles, new ApplyEngine.Listener() {
+				@Override
+				public void onResult(ApplyResult result, int done, int total) {
+					logResult(result);
+					progress(done, total);
+				}
+			});
+			line();
+			log(report.toString());
+			logMetrics();
+			log("替换配置文件结束！");
+			return null;
+		}
+		
+		private void logMetrics() {
+			publish(PatchMetrics.snapshot().since(before).toTable());
+		}
+		
+		private void logResult(ApplyResult result) {
+			line();
+			log("配置文件:" + result.getConfigFile().getName());
+			if(result.getStatus() != ApplyResult.Status.SUCCESS){
+				log(result.getMsg());
+			}
+		}
+		
+		@Override
+		protected boolean isStopped() {
+			return cancelled && (report == null || report.count(ApplyResult.Status.CANCELLED) > 0);
+		}
+		
+		@Override
+		protected void onCancel() {
+			if(engine != null){
+				engine.cancel();
+			}
+			if(archivePatcher != null){
+				archivePatcher.cancel();
+			}
+		}
+	}
+	
+	/**
+	 * 删除WEB-INF/lib下的jsp-api、servlet-api包
+	 */
+	private class RemoveJarWorker extends LogWorker {
+		
+		private final String projectFilePath;
+		private volatile JarPruner pruner;
+		
+		RemoveJarWorker(String projectFilePath) {
+			this.projectFilePath = projectFilePath;
+		}
+		
+		@Override
+		protected Void doInBackground() throws Exception {
+			File project = new File(projectFilePath);
+			if(JarPruner.libDirs(project).isEmpty()){
+				log("未找到WEB-INF/lib目录！");
+				progress(1, 1);
+				return null;
+			}
+			pruner = new JarPruner(new JarRules(removedJars));
+			if(cancelled){
+				pruner.cancel();
+			}
+			PruneReport report = pruner.prune(project, false, new JarPruner.Listener() {
+				@Override
+				public void onJar(PruneReport.JarResult result, int done, int total) {
+					if(result.getStatus() != PruneReport.Status.KEPT){
+						log(result.toString());
+					}
+					progress(done, total);
+				}
+			});
+			if(report.getResults().isEmpty()){
+				log("无需要删除的jar文件！");
+			}
+			line();
+			log(report.toString());
+			progress(1, 1);
+			return null;
+		}
+		
+		@Override
+		protected void onCancel() {
+			if(pruner != null){
+				pruner.cancel();
+			}
+		}
+	}
+	
 	private String now(){
 		return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + " ";
 	}
@@ -0,0 +1,336 @@
+package com.bolin.patch;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.bolin.utils.ConfigFileUtil;
+import com.bolin.utils.FindResult;
+import com.bolin.utils.PatchMetrics;
+import com.bolin.utils.StagedWrites;
+
+/**
+ * ApplyEngine
+ * 并发替换多个配置文件
+ *
+ * 配置文件之间互不依赖，在有界线程池中并发替换；JDK支持虚拟线程时使用虚拟线程，
+ * 并发数同样受线程数限制。多个配置文件对应同一个项目文件时，按项目文件加锁串行替换。
+ * 项目文件较大的先执行，避免大文件最后执行拖长总耗时。
+ *
+ * ConfigFileUtil.stagedWrites为true时，所有修改先写到临时文件，全部成功后统一fsync并替换原文件；
+ * 有配置文件替换失败或被取消时全部回滚，原文件保持不变。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class ApplyEngine {
+
+	/**
+	 * 替换进度回调，可能在多个线程中同时调用
+	 */
+	public interface Listener {
+
+		void onResult(ApplyResult result, int done, int total);
+
+	}
+
+	private final ConfigFileUtil util;
+
+	private final int threads;
+
+	private final ConcurrentMap<String, ReentrantLock> targetLocks = new ConcurrentHashMap<String, ReentrantLock>();
+
+	private volatile boolean cancelled = false;
+
+	/**
+	 * 线程数默认为CPU核数
+	 * @param util
+	 */
+	public ApplyEngine(ConfigFileUtil util) {
+		this(util, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param util
+	 * @param threads 最大并发数
+	 */
+	public ApplyEngine(ConfigFileUtil util, int threads) {
+		super();
+		this.util = util;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * 查找并替换所有配置文件
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param projectDir 项目目录
+	 * @param configFiles 配置文件
+	 * @param listener 进度回调，可为null
+	 * @return
+	 */
+	public ApplyReport apply(String projectDir, File[] configFiles, Listener listener) {
+		return apply(projectDir, ConfigSource.of(configFiles), listener);
+	}
+
+	/**
+	 * 查找并替换所有配置文件，配置文件可以是已解析的
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param projectDir 项目目录
+	 * @param sources 配置文件
+	 * @param listener 进度回调，可为null
+	 * @return
+	 */
+	public ApplyReport apply(String projectDir, ConfigSource[] sources, final Listener listener) {
+		long start = System.currentTimeMillis();
+		if(sources == null || sources.length < 1){
+			return new ApplyReport(new ArrayList<ApplyResult>(), 0L);
+		}
+		File[] configFiles = new File[sources.length];
+		List<String> targetNames = new ArrayList<String>(sources.length);
+		for ( int i = 0; i < sources.length; i++ ) {
+			configFiles[i] = sources[i].getFile();
+			targetNames.add(sources[i].getTargetName());
+		}
+		Map<String, FindResult> findResults = util.findTargets(projectDir, targetNames);
+
+		final StagedWrites staged = util.isStagedWrites() ? new StagedWrites() : null;
+		final int total = configFiles.length;
+		final AtomicInteger done = new AtomicInteger();
+		final ApplyResult[] ordered = new ApplyResult[total];
+		List<Job> jobs = new ArrayList<Job>();
+		for ( int i = 0; i < total; i++ ) {
+			File configFile = configFiles[i];
+			FindResult findResult = findResults.get(sources[i].getTargetName());
+			if(!findResult.isSuccess()){
+				ordered[i] = new ApplyResult(configFile, null, ApplyResult.Status.NOT_FOUND, findResult.getMsg(), 0L);
+				fireResult(listener, ordered[i], done.incrementAndGet(), total);
+			}else{
+				String targetFile = findResult.getTargetFile().getPath();
+				jobs.add(new Job(i, sources[i], targetFile, new File(targetFile).length()));
+			}
+		}
+
+		//大文件优先
+		Collections.sort(jobs, new Comparator<Job>() {
+			@Override
+			public int compare(Job o1, Job o2) {
+				return o1.size < o2.size ? 1 : (o1.size == o2.size ? 0 : -1);
+			}
+		});
+
+		if(threads == 1){
+			//单线程时直接在当前线程中执行
+			for ( Job job : jobs ) {
+				ordered[job.index] = run(job, staged);
+				fireResult(listener, ordered[job.index], done.incrementAndGet(), total);
+			}
+			finish(configFiles, ordered, staged);
+			return report(ordered, start);
+		}
+
+		final Semaphore permits = new Semaphore(threads, true);
+		ExecutorService executor = newExecutor();
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for ( final Job job : jobs ) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						permits.acquire();
+						try {
+							ordered[job.index] = run(job, staged);
+						}
+						finally {
+							permits.release();
+						}
+						fireResult(listener, ordered[job.index], done.incrementAndGet(), total);
+						return null;
+					}
+				}));
+			}
+			for ( Future<?> future : futures ) {
+				try {
+					future.get();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					cancel();
+				}
+				catch (ExecutionException e) {
+					e.getCause().printStackTrace();
+				}
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		finish(configFiles, ordered, staged);
+		return report(ordered, start);
+	}
+
+	private static ApplyReport report(ApplyResult[] ordered, long start) {
+		List<ApplyResult> results = new ArrayList<ApplyResult>(ordered.length);
+		Set<String> patched = new HashSet<String>();
+		for ( ApplyResult result : ordered ) {
+			results.add(result);
+			if(result.getStatus() == ApplyResult.Status.SUCCESS){
+				patched.add(result.getTargetFile());
+			}
+		}
+		PatchMetrics.filesPatched(patched.size());
+		return new ApplyReport(results, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * 补全未执行的结果；有暂存的修改时，全部成功则提交，否则回滚
+	 */
+	private void finish(File[] configFiles, ApplyResult[] ordered, StagedWrites staged) {
+		boolean failed = cancelled;
+		for ( int i = 0; i < ordered.length; i++ ) {
+			if(ordered[i] == null){
+				ordered[i] = new ApplyResult(configFiles[i], null, ApplyResult.Status.CANCELLED, "已取消", 0L);
+			}
+			ApplyResult.Status status = ordered[i].getStatus();
+			if(status == ApplyResult.Status.FAILED || status == ApplyResult.Status.CANCELLED){
+				failed = true;
+			}
+		}
+		if(staged == null) return;
+		if(failed){
+			staged.rollback();
+			replaceSuccess(ordered, ApplyResult.Status.ROLLED_BACK, "其他配置文件替换失败或已取消，未写入");
+			return;
+		}
+		try {
+			staged.commit();
+		}
+		catch (IOException e) {
+			replaceSuccess(ordered, ApplyResult.Status.FAILED, "提交出错，原文件已恢复：" + e.getMessage());
+		}
+	}
+
+	private static void replaceSuccess(ApplyResult[] ordered, ApplyResult.Status status, String msg) {
+		for ( int i = 0; i < ordered.length; i++ ) {
+			ApplyResult result = ordered[i];
+			if(result.getStatus() == ApplyResult.Status.SUCCESS){
+				ordered[i] = new ApplyResult(result.getConfigFile(), result.getTargetFile(), status, msg, result.getMillis());
+			}
+		}
+	}
+
+	/**
+	 * 取消替换，已开始的文件会执行完，未开始的不再执行
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	private ApplyResult run(Job job, StagedWrites staged) {
+		File configFile = job.source.getFile();
+		if(cancelled){
+			return new ApplyResult(configFile, job.targetFile, ApplyResult.Status.CANCELLED, "已取消", 0L);
+		}
+		long start = System.currentTimeMillis();
+		ReentrantLock lock = lockFor(job.targetFile);
+		lock.lock();
+		try {
+			ApplyResult.Status status = staged == null ? job.source.applyTo(util, job.targetFile)
+					: job.source.applyTo(util, new File(job.targetFile), staged);
+			if(status == ApplyResult.Status.UNKNOWN_TYPE){
+				return new ApplyResult(configFile, job.targetFile, ApplyResult.Status.UNKNOWN_TYPE,
+						"未知的配置文件类型：不处理", System.currentTimeMillis() - start);
+			}
+			if(status == ApplyResult.Status.UNCHANGED){
+				return new ApplyResult(configFile, job.targetFile, ApplyResult.Status.UNCHANGED,
+						"内容未变化，未修改文件", System.currentTimeMillis() - start);
+			}
+		}
+		catch (IOException e) {
+			return new ApplyResult(configFile, job.targetFile, ApplyResult.Status.FAILED,
+					"替换出错：" + e.getMessage(), System.currentTimeMillis() - start);
+		}
+		catch (RuntimeException e) {
+			e.printStackTrace();
+			return new ApplyResult(configFile, job.targetFile, ApplyResult.Status.FAILED,
+					"替换出错：" + e, System.currentTimeMillis() - start);
+		}
+		finally {
+			lock.unlock();
+		}
+		return new ApplyResult(configFile, job.targetFile, ApplyResult.Status.SUCCESS,
+				"替换成功", System.currentTimeMillis() - start);
+	}
+
+	private ReentrantLock lockFor(String targetFile) {
+		String key = new File(targetFile).getAbsolutePath();
+		ReentrantLock lock = targetLocks.get(key);
+		if(lock == null){
+			ReentrantLock newLock = new ReentrantLock();
+			lock = targetLocks.putIfAbsent(key, newLock);
+			if(lock == null) lock = newLock;
+		}
+		return lock;
+	}
+
+	private static void fireResult(Listener listener, ApplyResult result, int done, int total) {
+		if(listener != null){
+			listener.onResult(result, done, total);
+		}
+	}
+
+	/**
+	 * JDK支持虚拟线程时使用虚拟线程，否则使用固定大小线程池
+	 * @return
+	 */
+	private ExecutorService newExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		}
+		catch (Exception e) {
+			return Executors.newFixedThreadPool(threads);
+		}
+	}
+
+	private static class Job {
+		final int index;
+		final ConfigSource source;
+		final String targetFile;
+		final long size;
+
+		Job(int index, ConfigSource source, String targetFile, long size) {
+			this.index = index;
+			this.source = source;
+			this.targetFile = targetFile;
+			this.size = size;
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+package com.bolin.patch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ApplyReport
+ * 一次替换的汇总结果，结果顺序与配置文件顺序一致
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class ApplyReport {
+
+	private final List<ApplyResult> results;
+
+	private final long millis;
+
+	public ApplyReport(List<ApplyResult> results, long millis) {
+		super();
+		this.results = Collections.unmodifiableList(new ArrayList<ApplyResult>(results));
+		this.millis = millis;
+	}
+
+	public List<ApplyResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * 总耗时（毫秒）
+	 * @return
+	 */
+	public long getMillis() {
+		return millis;
+	}
+
+	public int count(ApplyResult.Status status) {
+		int count = 0;
+		for ( ApplyResult result : results ) {
+			if(result.getStatus() == status) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * 是否所有配置文件都替换成功
+	 * @return
+	 */
+	public boolean isSuccess() {
+		return count(ApplyResult.Status.SUCCESS) + count(ApplyResult.Status.UNCHANGED) == results.size();
+	}
+
+	@Override
+	public String toString() {
+		return "共" + results.size() + "个配置文件，成功" + count(ApplyResult.Status.SUCCESS)
+				+ "，未变化" + count(ApplyResult.Status.UNCHANGED)
+				+ "，未找到" + count(ApplyResult.Status.NOT_FOUND)
+				+ "，未处理" + count(ApplyResult.Status.UNKNOWN_TYPE)
+				+ "，失败" + count(ApplyResult.Status.FAILED)
+				+ "，取消" + count(ApplyResult.Status.CANCELLED)
+				+ (count(ApplyResult.Status.ROLLED_BACK) > 0 ? "，回滚" + count(ApplyResult.Status.ROLLED_BACK) : "")
+				+ "，耗时" + millis + "ms";
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.bolin.patch;
+
+import java.io.File;
+
+/**
+ * ApplyResult
+ * 单个配置文件的替换结果
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class ApplyResult {
+
+	public enum Status {
+		/** 替换成功 */
+		SUCCESS,
+		/** 替换后内容与原文件相同，未写文件 */
+		UNCHANGED,
+		/** 未找到同名配置文件 */
+		NOT_FOUND,
+		/** 未知的配置文件类型，不处理 */
+		UNKNOWN_TYPE,
+		/** 替换出错 */
+		FAILED,
+		/** 已取消，未执行 */
+		CANCELLED,
+		/** 替换成功，但同一次替换中有其他配置文件失败，已回滚未写入 */
+		ROLLED_BACK
+	}
+
+	private final File configFile;
+
+	private final String targetFile;
+
+	private final Status status;
+
+	private final String msg;
+
+	private final long millis;
+
+	public ApplyResult(File configFile, String targetFile, Status status, String msg, long millis) {
+		super();
+		this.configFile = configFile;
+		this.targetFile = targetFile;
+		this.status = status;
+		this.msg = msg;
+		this.millis = millis;
+	}
+
+	public File getConfigFile() {
+		return configFile;
+	}
+
+	/**
+	 * 要修改的项目文件，未找到时为null
+	 * @return
+	 */
+	public String getTargetFile() {
+		return targetFile;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public String getMsg() {
+		return msg;
+	}
+
+	/**
+	 * 替换耗时（毫秒）
+	 * @return
+	 */
+	public long getMillis() {
+		return millis;
+	}
+
+	/**
+	 * 替换成功或内容本来就相同
+	 * @return
+	 */
+	public boolean isSuccess() {
+		return status == Status.SUCCESS || status == Status.UNCHANGED;
+	}
+
+	@Override
+	public String toString() {
+		return configFile.getName() + " -> " + (targetFile == null ? "" : targetFile) + " [" + status + "] " + (msg == null ? "" : msg);
+	}
+
+}
@@ -0,0 +1,624 @@
+package com.bolin.patch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.bolin.utils.ChangeDetectingOutputStream;
+import com.bolin.utils.ConfigFileUtil;
+import com.bolin.utils.PatchMetrics;
+import com.bolin.utils.StagedWrites;
+
+/**
+ * ArchivePatcher
+ * 直接替换war/jar包中的配置文件，不需要解压
+ *
+ * 按中央目录逐个复制条目到新的压缩包：不需要替换的条目连同本地文件头按原始字节复制，
+ * 不解压也不重新压缩；只有需要替换的条目解压后替换，再重新压缩写出。
+ * 配置文件按文件名匹配压缩包中的条目，同名条目取中央目录中的第一个，与项目目录中的查找规则一致。
+ *
+ * 不支持ZIP64格式（超过4G或65535个条目）的压缩包。
+ * cancel后在下一个条目之前停止，临时文件删除，原压缩包不修改。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class ArchivePatcher {
+
+	private static final int LOC_SIG = 0x04034b50;
+	private static final int CEN_SIG = 0x02014b50;
+	private static final int END_SIG = 0x06054b50;
+	private static final int EXT_SIG = 0x08074b50;
+
+	private static final int LOC_HEADER = 30;
+	private static final int CEN_HEADER = 46;
+	private static final int END_HEADER = 22;
+
+	private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+	private static final int FLAG_UTF8 = 0x0800;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ConfigFileUtil util;
+
+	private volatile boolean cancelled = false;
+
+	public ArchivePatcher(ConfigFileUtil util) {
+		super();
+		this.util = util;
+	}
+
+	/**
+	 * 是否是可以直接替换的压缩包
+	 * @param name
+	 * @return
+	 */
+	public static boolean isArchive(String name) {
+		if(name == null) return false;
+		String lower = name.toLowerCase();
+		return lower.endsWith(".war") || lower.endsWith(".jar") || lower.endsWith(".zip");
+	}
+
+	/**
+	 * 替换压缩包中的配置文件，完成后替换原压缩包
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param archive war包
+	 * @param configFiles 配置文件
+	 * @return
+	 * @throws IOException
+	 */
+	public ApplyReport patch(File archive, File[] configFiles) throws IOException {
+		return patch(archive, ConfigSource.of(configFiles));
+	}
+
+	/**
+	 * 用已解析的配置文件替换压缩包中的配置文件，完成后替换原压缩包，所有条目内容都未变化时不修改原压缩包
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param archive war包
+	 * @param sources 配置文件
+	 * @return
+	 * @throws IOException
+	 */
+	public ApplyReport patch(File archive, ConfigSource[] sources) throws IOException {
+		return patch(archive, sources, (ApplyEngine.Listener) null);
+	}
+
+	/**
+	 * 同patch(File, ConfigSource[])，每个配置文件处理完后通知listener
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param archive war包
+	 * @param sources 配置文件
+	 * @param listener 可以为null；压缩包替换前通知，结果以返回的报告为准
+	 * @return 取消时替换过的配置文件也为CANCELLED
+	 * @throws IOException
+	 */
+	public ApplyReport patch(File archive, ConfigSource[] sources, ApplyEngine.Listener listener) throws IOException {
+		StagedWrites staged = new StagedWrites();
+		File tmpFile = staged.newTempFile(archive);
+		ApplyReport report;
+		try {
+			report = patch(archive, sources, tmpFile, listener);
+		}
+		catch (IOException e) {
+			tmpFile.delete();
+			throw e;
+		}
+		if(cancelled){
+			tmpFile.delete();
+			return cancelledReport(report);
+		}
+		if(report.count(ApplyResult.Status.SUCCESS) == 0){
+			//所有条目内容都未变化，不替换原压缩包
+			tmpFile.delete();
+			return report;
+		}
+		//fsync后再替换原压缩包
+		staged.stage(archive, tmpFile);
+		staged.commit();
+		Set<String> patched = new HashSet<String>();
+		for ( ApplyResult result : report.getResults() ) {
+			if(result.getStatus() == ApplyResult.Status.SUCCESS){
+				patched.add(result.getTargetFile());
+			}
+		}
+		PatchMetrics.filesPatched(patched.size());
+		return report;
+	}
+
+	/**
+	 * 替换压缩包中的配置文件，写到新的压缩包
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param archive war包
+	 * @param configFiles 配置文件
+	 * @param output 新的war包
+	 * @return
+	 * @throws IOException
+	 */
+	public ApplyReport patch(File archive, File[] configFiles, File output) throws IOException {
+		return patch(archive, ConfigSource.of(configFiles), output);
+	}
+
+	/**
+	 * 用已解析的配置文件替换压缩包中的配置文件，写到新的压缩包
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param archive war包
+	 * @param sources 配置文件
+	 * @param output 新的war包
+	 * @return
+	 * @throws IOException
+	 */
+	public ApplyReport patch(File archive, ConfigSource[] sources, File output) throws IOException {
+		return patch(archive, sources, output, null);
+	}
+
+	/**
+	 * 同patch(File, ConfigSource[], File)，每个配置文件处理完后通知listener，
+	 * 取消后不再处理剩下的条目，output不完整
+	 */
+	private ApplyReport patch(File archive, ConfigSource[] sources, File output, ApplyEngine.Listener listener) throws IOException {
+		long start = System.currentTimeMillis();
+		List<ApplyResult> results = new ArrayList<ApplyResult>();
+		int done = 0;
+
+		RandomAccessFile inFile = new RandomAccessFile(archive, "r");
+		ZipFile zipFile = null;
+		RandomAccessFile outFile = null;
+		try {
+			zipFile = new ZipFile(archive);
+			outFile = new RandomAccessFile(output, "rw");
+			outFile.setLength(0);
+			FileChannel in = inFile.getChannel();
+			FileChannel out = outFile.getChannel();
+			CentralDirectory cen = readCentralDirectory(in);
+
+			//文件名 -> 第一个同名条目
+			Map<String, Integer> nameIndex = new HashMap<String, Integer>();
+			for ( int i = 0; i < cen.entries.size(); i++ ) {
+				String name = cen.entries.get(i).name;
+				if(name.endsWith("/")) continue;
+				String fileName = name.substring(name.lastIndexOf('/') + 1);
+				if(!nameIndex.containsKey(fileName)){
+					nameIndex.put(fileName, i);
+				}
+			}
+			Map<Integer, List<ConfigSource>> patches = new LinkedHashMap<Integer, List<ConfigSource>>();
+			Map<ConfigSource, ApplyResult> resultMap = new HashMap<ConfigSource, ApplyResult>();
+			for ( ConfigSource source : sources ) {
+				File configFile = source.getFile();
+				Integer index = nameIndex.get(source.getTargetName());
+				if(index == null){
+					ApplyResult result = new ApplyResult(configFile, null, ApplyResult.Status.NOT_FOUND, "未找到同名配置文件！", 0L);
+					resultMap.put(source, result);
+					notify(listener, result, ++done, sources.length);
+					continue;
+				}
+				String entryName = cen.entries.get(index).name;
+				if(!source.canPatch(util, entryName)){
+					ApplyResult result = new ApplyResult(configFile, entryPath(archive, entryName),
+							ApplyResult.Status.UNKNOWN_TYPE, "未知的配置文件类型：不处理", 0L);
+					resultMap.put(source, result);
+					notify(listener, result, ++done, sources.length);
+					continue;
+				}
+				List<ConfigSource> list = patches.get(index);
+				if(list == null){
+					list = new ArrayList<ConfigSource>();
+					patches.put(index, list);
+				}
+				list.add(source);
+			}
+
+			ByteArrayOutputStream newCen = new ByteArrayOutputStream(cen.bytes.length + 1024);
+			for ( int i = 0; i < cen.entries.size(); i++ ) {
+				if(cancelled){
+					for ( ConfigSource source : sources ) {
+						results.add(resultMap.containsKey(source) ? resultMap.get(source)
+								: new ApplyResult(source.getFile(), null, ApplyResult.Status.CANCELLED, "已取消", 0L));
+					}
+					return new ApplyReport(results, System.currentTimeMillis() - start);
+				}
+				CenEntry entry = cen.entries.get(i);
+				long newOffset = out.position();
+				List<ConfigSource> entryPatches = patches.get(i);
+				if(entryPatches == null){
+					copyRaw(in, out, entry);
+					newCen.write(entry.withOffset(newOffset));
+				}else{
+					long entryStart = System.currentTimeMillis();
+					newCen.write(writePatched(zipFile, out, entry, entryPatches, newOffset));
+					long millis = System.currentTimeMillis() - entryStart;
+					for ( ConfigSource source : entryPatches ) {
+						ApplyResult result = entry.changed
+								? new ApplyResult(source.getFile(), entryPath(archive, entry.name), ApplyResult.Status.SUCCESS, "替换成功", millis)
+								: new ApplyResult(source.getFile(), entryPath(archive, entry.name), ApplyResult.Status.UNCHANGED, "内容未变化", millis);
+						resultMap.put(source, result);
+						notify(listener, result, ++done, sources.length);
+					}
+				}
+			}
+
+			long cenOffset = out.position();
+			writeFully(out, ByteBuffer.wrap(newCen.toByteArray()));
+			ByteBuffer end = ByteBuffer.allocate(END_HEADER + cen.comment.length).order(ByteOrder.LITTLE_ENDIAN);
+			end.putInt(END_SIG);
+			end.putShort((short) 0);
+			end.putShort((short) 0);
+			end.putShort((short) cen.entries.size());
+			end.putShort((short) cen.entries.size());
+			end.putInt(newCen.size());
+			end.putInt((int) cenOffset);
+			end.putShort((short) cen.comment.length);
+			end.put(cen.comment);
+			end.flip();
+			writeFully(out, end);
+
+			for ( ConfigSource source : sources ) {
+				results.add(resultMap.get(source));
+			}
+		}
+		finally {
+			if(outFile != null) outFile.close();
+			if(zipFile != null) zipFile.close();
+			inFile.close();
+		}
+		return new ApplyReport(results, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * 取消替换，正在处理的条目会处理完，压缩包不修改
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	private static void notify(ApplyEngine.Listener listener, ApplyResult result, int done, int total) {
+		if(listener != null){
+			listener.onResult(result, done, total);
+		}
+	}
+
+	/**
+	 * 压缩包未替换，替换成功的结果改为已取消
+	 */
+	private static ApplyReport cancelledReport(ApplyReport report) {
+		List<ApplyResult> results = new ArrayList<ApplyResult>(report.getResults().size());
+		for ( ApplyResult result : report.getResults() ) {
+			if(result.getStatus() == ApplyResult.Status.SUCCESS){
+				result = new ApplyResult(result.getConfigFile(), result.getTargetFile(), ApplyResult.Status.CANCELLED,
+						"已取消，压缩包未修改", result.getMillis());
+			}
+			results.add(result);
+		}
+		return new ApplyReport(results, report.getMillis());
+	}
+
+	static String entryPath(File archive, String entryName) {
+		return archive.getAbsolutePath() + "!/" + entryName;
+	}
+
+	/**
+	 * 复制本地文件头、压缩数据和数据描述符
+	 */
+	private void copyRaw(FileChannel in, FileChannel out, CenEntry entry) throws IOException {
+		ByteBuffer loc = readAt(in, entry.localOffset, LOC_HEADER);
+		if(loc.getInt(0) != LOC_SIG){
+			throw new IOException("无效的本地文件头：" + entry.name);
+		}
+		long length = LOC_HEADER + (loc.getShort(26) & 0xffff) + (loc.getShort(28) & 0xffff) + entry.compressedSize;
+		if((entry.flags & FLAG_DATA_DESCRIPTOR) != 0){
+			ByteBuffer ext = readAt(in, entry.localOffset + length, 4);
+			length += ext.getInt(0) == EXT_SIG ? 16 : 12;
+		}
+		long position = entry.localOffset;
+		long remaining = length;
+		while (remaining > 0) {
+			long transferred = in.transferTo(position, remaining, out);
+			if(transferred <= 0){
+				throw new EOFException("压缩包不完整：" + entry.name);
+			}
+			position += transferred;
+			remaining -= transferred;
+		}
+	}
+
+	/**
+	 * 解压条目、依次用配置文件替换后重新压缩写出，返回新的中央目录记录
+	 */
+	private byte[] writePatched(ZipFile zipFile, FileChannel out, CenEntry entry, List<ConfigSource> sources, long newOffset) throws IOException {
+		int flags = (entry.flags & FLAG_UTF8) | FLAG_DATA_DESCRIPTOR;
+		int dosTime = dosTime(System.currentTimeMillis());
+
+		ByteBuffer loc = ByteBuffer.allocate(LOC_HEADER + entry.nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+		loc.putInt(LOC_SIG);
+		loc.putShort((short) 20);
+		loc.putShort((short) flags);
+		loc.putShort((short) ZipEntry.DEFLATED);
+		loc.putInt(dosTime);
+		loc.putInt(0);
+		loc.putInt(0);
+		loc.putInt(0);
+		loc.putShort((short) entry.nameBytes.length);
+		loc.putShort((short) 0);
+		loc.put(entry.nameBytes);
+		loc.flip();
+		writeFully(out, loc);
+
+		long dataStart = out.position();
+		NonClosingOutputStream channelOut = new NonClosingOutputStream(Channels.newOutputStream(out));
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		CrcOutputStream crcOut = new CrcOutputStream(new DeflaterOutputStream(channelOut, deflater, 8192));
+		try {
+			InputStream entryIn = zipFile.getInputStream(zipFile.getEntry(entry.name));
+			try {
+				//多个配置文件对应同一个条目时依次替换
+				for ( int i = 0; i < sources.size() - 1; i++ ) {
+					ByteArrayOutputStream stage = new ByteArrayOutputStream();
+					sources.get(i).applyTo(util, entry.name, entryIn, stage);
+					entryIn.close();
+					entryIn = new ByteArrayInputStream(stage.toByteArray());
+				}
+				//写出的同时与原内容比较
+				InputStream originalIn = zipFile.getInputStream(zipFile.getEntry(entry.name));
+				try {
+					ChangeDetectingOutputStream detectOut = new ChangeDetectingOutputStream(originalIn, crcOut);
+					sources.get(sources.size() - 1).applyTo(util, entry.name, entryIn, detectOut);
+					entry.changed = detectOut.finish();
+				}
+				finally {
+					originalIn.close();
+				}
+			}
+			finally {
+				entryIn.close();
+			}
+			crcOut.finish();
+		}
+		finally {
+			deflater.end();
+		}
+		long compressedSize = out.position() - dataStart;
+
+		ByteBuffer ext = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+		ext.putInt(EXT_SIG);
+		ext.putInt((int) crcOut.crc.getValue());
+		ext.putInt((int) compressedSize);
+		ext.putInt((int) crcOut.count);
+		ext.flip();
+		writeFully(out, ext);
+
+		ByteBuffer cen = ByteBuffer.allocate(CEN_HEADER + entry.nameBytes.length + entry.commentBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+		cen.putInt(CEN_SIG);
+		cen.putShort((short) entry.versionMadeBy);
+		cen.putShort((short) 20);
+		cen.putShort((short) flags);
+		cen.putShort((short) ZipEntry.DEFLATED);
+		cen.putInt(dosTime);
+		cen.putInt((int) crcOut.crc.getValue());
+		cen.putInt((int) compressedSize);
+		cen.putInt((int) crcOut.count);
+		cen.putShort((short) entry.nameBytes.length);
+		cen.putShort((short) 0);
+		cen.putShort((short) entry.commentBytes.length);
+		cen.putShort((short) 0);
+		cen.putShort((short) entry.internalAttributes);
+		cen.putInt(entry.externalAttributes);
+		cen.putInt((int) newOffset);
+		cen.put(entry.nameBytes);
+		cen.put(entry.commentBytes);
+		return cen.array();
+	}
+
+	private static CentralDirectory readCentralDirectory(FileChannel in) throws IOException {
+		long size = in.size();
+		int tailLength = (int) Math.min(size, END_HEADER + 0xffff);
+		ByteBuffer tail = readAt(in, size - tailLength, tailLength);
+		int endPos = -1;
+		for ( int i = tailLength - END_HEADER; i >= 0; i-- ) {
+			if(tail.getInt(i) == END_SIG){
+				endPos = i;
+				break;
+			}
+		}
+		if(endPos < 0){
+			throw new IOException("不是有效的zip格式文件");
+		}
+		int total = tail.getShort(endPos + 10) & 0xffff;
+		long cenSize = tail.getInt(endPos + 12) & 0xffffffffL;
+		long cenOffset = tail.getInt(endPos + 16) & 0xffffffffL;
+		int commentLength = tail.getShort(endPos + 20) & 0xffff;
+		if(total == 0xffff || cenSize == 0xffffffffL || cenOffset == 0xffffffffL){
+			throw new IOException("不支持ZIP64格式的压缩包");
+		}
+
+		CentralDirectory cen = new CentralDirectory();
+		cen.comment = new byte[Math.min(commentLength, tailLength - endPos - END_HEADER)];
+		tail.position(endPos + END_HEADER);
+		tail.get(cen.comment);
+		cen.bytes = readAt(in, cenOffset, (int) cenSize).array();
+
+		ByteBuffer buf = ByteBuffer.wrap(cen.bytes).order(ByteOrder.LITTLE_ENDIAN);
+		int pos = 0;
+		for ( int i = 0; i < total; i++ ) {
+			if(buf.getInt(pos) != CEN_SIG){
+				throw new IOException("无效的中央目录");
+			}
+			CenEntry entry = new CenEntry();
+			int nameLength = buf.getShort(pos + 28) & 0xffff;
+			int extraLength = buf.getShort(pos + 30) & 0xffff;
+			int entryCommentLength = buf.getShort(pos + 32) & 0xffff;
+			int length = CEN_HEADER + nameLength + extraLength + entryCommentLength;
+			entry.record = new byte[length];
+			System.arraycopy(cen.bytes, pos, entry.record, 0, length);
+			entry.versionMadeBy = buf.getShort(pos + 4) & 0xffff;
+			entry.flags = buf.getShort(pos + 8) & 0xffff;
+			entry.compressedSize = buf.getInt(pos + 20) & 0xffffffffL;
+			entry.internalAttributes = buf.getShort(pos + 36) & 0xffff;
+			entry.externalAttributes = buf.getInt(pos + 38);
+			entry.localOffset = buf.getInt(pos + 42) & 0xffffffffL;
+			entry.nameBytes = new byte[nameLength];
+			System.arraycopy(cen.bytes, pos + CEN_HEADER, entry.nameBytes, 0, nameLength);
+			entry.commentBytes = new byte[entryCommentLength];
+			System.arraycopy(cen.bytes, pos + CEN_HEADER + nameLength + extraLength, entry.commentBytes, 0, entryCommentLength);
+			//未设置UTF-8标志的文件名按jar工具的习惯也使用UTF-8解码
+			entry.name = new String(entry.nameBytes, UTF8);
+			cen.entries.add(entry);
+			pos += length;
+		}
+		return cen;
+	}
+
+	private static ByteBuffer readAt(FileChannel in, long position, int length) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buf.hasRemaining()) {
+			if(in.read(buf, position + buf.position()) < 0){
+				throw new EOFException("压缩包不完整");
+			}
+		}
+		buf.flip();
+		return buf;
+	}
+
+	private static void writeFully(FileChannel out, ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining()) {
+			out.write(buf);
+		}
+	}
+
+	private static int dosTime(long millis) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(millis);
+		int year = calendar.get(Calendar.YEAR);
+		if(year < 1980){
+			return (1 << 21) | (1 << 16);
+		}
+		return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21
+				| calendar.get(Calendar.DAY_OF_MONTH) << 16 | calendar.get(Calendar.HOUR_OF_DAY) << 11
+				| calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+	}
+
+	private static class CentralDirectory {
+		byte[] bytes;
+		byte[] comment;
+		final List<CenEntry> entries = new ArrayList<CenEntry>();
+	}
+
+	private static class CenEntry {
+		byte[] record;
+		byte[] nameBytes;
+		byte[] commentBytes;
+		String name;
+		int versionMadeBy;
+		int flags;
+		long compressedSize;
+		int internalAttributes;
+		int externalAttributes;
+		long localOffset;
+		/** 替换后内容是否有变化，见writePatched */
+		boolean changed;
+
+		/**
+		 * 原中央目录记录，只修改本地文件头偏移
+		 */
+		byte[] withOffset(long offset) {
+			byte[] copy = record.clone();
+			ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN).putInt(42, (int) offset);
+			return copy;
+		}
+	}
+
+	/**
+	 * 关闭时不关闭底层的通道
+	 */
+	private static class NonClosingOutputStream extends FilterOutputStream {
+		NonClosingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+
+	/**
+	 * 计算未压缩数据的CRC和长度
+	 */
+	private static class CrcOutputStream extends FilterOutputStream {
+		final CRC32 crc = new CRC32();
+		long count = 0;
+
+		CrcOutputStream(DeflaterOutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			crc.update(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			crc.update(b, off, len);
+			count += len;
+		}
+
+		@Override
+		public void close() throws IOException {
+			//由finish结束压缩，patch方法内部关闭输出流时不能关闭通道
+			flush();
+		}
+
+		void finish() throws IOException {
+			((DeflaterOutputStream) out).finish();
+			out.flush();
+		}
+	}
+
+}
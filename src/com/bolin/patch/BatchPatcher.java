@@ -0,0 +1,163 @@
+package com.bolin.patch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.bolin.utils.ConfigFileUtil;
+
+/**
+ * BatchPatcher
+ * 用同一组配置文件批量替换多个项目
+ *
+ * 配置文件只解析一次，所有项目共享解析结果；项目之间在固定大小的线程池中并行替换，
+ * 单个项目内的配置文件依次替换，不再另开线程。项目可以是解压后的目录，也可以是war包。
+ * 项目之间已经并行，遍历项目目录的并行度（ConfigFileUtil.scanParallelism）可以设小一些。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class BatchPatcher {
+
+	/**
+	 * 批量替换进度回调，可能在多个线程中同时调用
+	 */
+	public interface Listener {
+
+		void onProject(BatchReport.ProjectResult result, int done, int total);
+
+	}
+
+	private final ConfigFileUtil util;
+
+	private final int threads;
+
+	/**
+	 * 线程数默认为CPU核数
+	 * @param util
+	 */
+	public BatchPatcher(ConfigFileUtil util) {
+		this(util, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param util
+	 * @param threads 同时替换的项目数
+	 */
+	public BatchPatcher(ConfigFileUtil util, int threads) {
+		super();
+		this.util = util;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * 根目录下的所有项目：子目录和war/jar包，按名称排序
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param projectsRoot
+	 * @return
+	 */
+	public static List<File> listProjects(File projectsRoot) {
+		List<File> projects = new ArrayList<File>();
+		File[] files = projectsRoot.listFiles();
+		if(files == null) return projects;
+		Arrays.sort(files);
+		for ( File file : files ) {
+			if(file.isDirectory() || (file.isFile() && ArchivePatcher.isArchive(file.getName()))){
+				projects.add(file);
+			}
+		}
+		return projects;
+	}
+
+	/**
+	 * 替换根目录下的所有项目
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param projectsRoot 项目根目录
+	 * @param configDir 配置文件目录
+	 * @param listener 进度回调，可为null
+	 * @return
+	 */
+	public BatchReport apply(File projectsRoot, File configDir, Listener listener) {
+		return apply(listProjects(projectsRoot), configDir, listener);
+	}
+
+	/**
+	 * 替换多个项目
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param projects 项目目录或war包
+	 * @param configDir 配置文件目录
+	 * @param listener 进度回调，可为null
+	 * @return
+	 */
+	public BatchReport apply(List<File> projects, File configDir, final Listener listener) {
+		long start = System.currentTimeMillis();
+		final ConfigSource[] sources = ConfigSource.of(configDir.listFiles());
+		final int total = projects.size();
+		final AtomicInteger done = new AtomicInteger();
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, total)));
+		List<Future<BatchReport.ProjectResult>> futures = new ArrayList<Future<BatchReport.ProjectResult>>();
+		try {
+			for ( final File project : projects ) {
+				futures.add(executor.submit(new Callable<BatchReport.ProjectResult>() {
+					@Override
+					public BatchReport.ProjectResult call() throws Exception {
+						BatchReport.ProjectResult result = applyProject(project, sources);
+						int count = done.incrementAndGet();
+						if(listener != null){
+							listener.onProject(result, count, total);
+						}
+						return result;
+					}
+				}));
+			}
+			List<BatchReport.ProjectResult> results = new ArrayList<BatchReport.ProjectResult>(total);
+			for ( int i = 0; i < total; i++ ) {
+				try {
+					results.add(futures.get(i).get());
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					results.add(new BatchReport.ProjectResult(projects.get(i), null, "已取消"));
+				}
+				catch (ExecutionException e) {
+					results.add(new BatchReport.ProjectResult(projects.get(i), null, String.valueOf(e.getCause())));
+				}
+			}
+			return new BatchReport(results, System.currentTimeMillis() - start);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private BatchReport.ProjectResult applyProject(File project, ConfigSource[] sources) {
+		try {
+			ApplyReport report;
+			if(project.isFile() && ArchivePatcher.isArchive(project.getName())){
+				report = new ArchivePatcher(util).patch(project, sources);
+			}else{
+				report = new ApplyEngine(util, 1).apply(project.getAbsolutePath(), sources, null);
+			}
+			return new BatchReport.ProjectResult(project, report, null);
+		}
+		catch (Exception e) {
+			return new BatchReport.ProjectResult(project, null, e.getMessage() == null ? e.toString() : e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.bolin.patch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * BatchReport
+ * 批量替换多个项目的汇总结果，顺序与项目顺序一致
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class BatchReport {
+
+	/**
+	 * 单个项目的替换结果
+	 */
+	public static class ProjectResult {
+
+		private final File project;
+
+		private final ApplyReport report;
+
+		private final String error;
+
+		public ProjectResult(File project, ApplyReport report, String error) {
+			super();
+			this.project = project;
+			this.report = report;
+			this.error = error;
+		}
+
+		public File getProject() {
+			return project;
+		}
+
+		/**
+		 * 项目的替换结果，项目出错时为null
+		 * @return
+		 */
+		public ApplyReport getReport() {
+			return report;
+		}
+
+		public String getError() {
+			return error;
+		}
+
+		public boolean isSuccess() {
+			return error == null && report != null && report.isSuccess();
+		}
+
+		@Override
+		public String toString() {
+			return project.getName() + "：" + (error != null ? "出错，" + error : report.toString());
+		}
+	}
+
+	private final List<ProjectResult> results;
+
+	private final long millis;
+
+	public BatchReport(List<ProjectResult> results, long millis) {
+		super();
+		this.results = Collections.unmodifiableList(new ArrayList<ProjectResult>(results));
+		this.millis = millis;
+	}
+
+	public List<ProjectResult> getResults() {
+		return results;
+	}
+
+	public long getMillis() {
+		return millis;
+	}
+
+	/**
+	 * 所有配置文件都替换成功的项目数
+	 * @return
+	 */
+	public int getSuccessCount() {
+		int count = 0;
+		for ( ProjectResult result : results ) {
+			if(result.isSuccess()) count++;
+		}
+		return count;
+	}
+
+	public boolean isSuccess() {
+		return getSuccessCount() == results.size();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buffer = new StringBuilder();
+		for ( ProjectResult result : results ) {
+			buffer.append(result).append('\n');
+		}
+		buffer.append("共").append(results.size()).append("个项目，全部成功").append(getSuccessCount())
+				.append("个，耗时").append(millis).append("ms");
+		return buffer.toString();
+	}
+
+}
@@ -0,0 +1,319 @@
+package com.bolin.patch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+
+import com.bolin.utils.AtomicFiles;
+import com.bolin.utils.ChangeDetectingOutputStream;
+import com.bolin.utils.ConfigFileUtil;
+import com.bolin.utils.FormatHandler;
+import com.bolin.utils.StagedWrites;
+import com.bolin.utils.StreamingPropertiesPatcher;
+import com.bolin.xml.StaxXmlDocument;
+import com.bolin.xml.XmlRules;
+
+/**
+ * ConfigSource
+ * 一个配置文件及其解析结果
+ *
+ * 配置文件在第一次使用时解析，之后的替换都使用解析结果，
+ * 同一组配置文件用于多个项目时只需解析一次。可以在多个线程中共享。
+ *
+ * 文件名以.rules结尾的是xml规则文件（见XmlRules），去掉.rules后的文件名为要修改的项目文件，
+ * 如web.xml.rules修改项目中的web.xml。
+ * json、yaml等其他格式由ConfigFileUtil按文件名选择FormatHandler读取和替换。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class ConfigSource {
+
+	/**
+	 * xml规则文件的后缀
+	 */
+	public static final String RULES_SUFFIX = ".rules";
+
+	private final File file;
+
+	private Map<String, String> properties;
+
+	private List<XMLEvent> xmlEvents;
+
+	private XmlRules xmlRules;
+
+	private IOException error;
+
+	private boolean parsed = false;
+
+	/**
+	 * FormatHandler读取的配置，每种格式读取一次
+	 */
+	private final Map<FormatHandler, Object> formatConfigs = new HashMap<FormatHandler, Object>();
+
+	public ConfigSource(File file) {
+		super();
+		this.file = file;
+	}
+
+	/**
+	 * 配置文件目录中的所有配置文件
+	 * @param configFiles
+	 * @return
+	 */
+	public static ConfigSource[] of(File[] configFiles) {
+		if(configFiles == null) return new ConfigSource[0];
+		ConfigSource[] sources = new ConfigSource[configFiles.length];
+		for ( int i = 0; i < configFiles.length; i++ ) {
+			sources[i] = new ConfigSource(configFiles[i]);
+		}
+		return sources;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public String getName() {
+		return file.getName();
+	}
+
+	/**
+	 * 是否是xml规则文件
+	 * @return
+	 */
+	public boolean isRules() {
+		return file.getName().endsWith(RULES_SUFFIX);
+	}
+
+	/**
+	 * 要修改的项目文件的名称，规则文件去掉.rules后缀，其他配置文件与文件名相同
+	 * @return
+	 */
+	public String getTargetName() {
+		String name = file.getName();
+		return isRules() ? name.substring(0, name.length() - RULES_SUFFIX.length()) : name;
+	}
+
+	/**
+	 * 能否修改此类型的项目文件：xml都可以，properties和其他格式不能用规则文件
+	 * @param util
+	 * @param targetName 项目文件名称
+	 * @return
+	 */
+	public boolean canPatch(ConfigFileUtil util, String targetName) {
+		return util.isXmlFile(targetName) || (!isRules()
+				&& (util.isPropertyFile(targetName) || util.getFormatHandler(targetName) != null));
+	}
+
+	/**
+	 * 替换项目文件
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param util
+	 * @param targetFile 要修改的项目文件
+	 * @return SUCCESS：已修改；UNCHANGED：内容不变，未写文件；UNKNOWN_TYPE：文件类型未知
+	 * @throws IOException 配置文件解析出错
+	 */
+	public ApplyResult.Status applyTo(ConfigFileUtil util, String targetFile) throws IOException {
+		boolean changed;
+		if(util.isXmlFile(targetFile)){
+			if(util.isStreamingXml() || isRules()){
+				changed = util.replaceXml(xmlRules(), targetFile);
+			}else{
+				changed = util.replaceXml(file.getAbsolutePath(), targetFile);
+			}
+		}else if(util.isPropertyFile(targetFile) && !isRules()){
+			changed = util.replaceProperties(properties(), targetFile);
+		}else if(canPatch(util, targetFile)){
+			FormatHandler handler = util.getFormatHandler(targetFile);
+			changed = util.replaceFormat(handler, formatConfig(handler), targetFile);
+		}else{
+			return ApplyResult.Status.UNKNOWN_TYPE;
+		}
+		return changed ? ApplyResult.Status.SUCCESS : ApplyResult.Status.UNCHANGED;
+	}
+
+	/**
+	 * 替换项目文件，结果暂存到临时文件，由staged统一提交
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param util
+	 * @param target 要修改的项目文件
+	 * @param staged 本次替换的暂存区，同一文件已暂存时在暂存的内容上修改
+	 * @return SUCCESS：已暂存；UNCHANGED：内容不变，未暂存；UNKNOWN_TYPE：文件类型未知
+	 * @throws IOException
+	 */
+	public ApplyResult.Status applyTo(ConfigFileUtil util, File target, StagedWrites staged) throws IOException {
+		String name = target.getName();
+		if(!canPatch(util, name)){
+			return ApplyResult.Status.UNKNOWN_TYPE;
+		}
+		boolean xml = util.isXmlFile(name);
+		File readFrom = staged.readFrom(target);
+		File tmpFile = staged.newTempFile(target);
+		boolean changed = false;
+		try {
+			boolean streaming = xml ? util.isStreamingXml() || isRules()
+					: !util.isPropertyFile(name) || util.isStreamingProperties();
+			if(streaming){
+				//内容不变时不会创建临时文件
+				InputStream in = new BufferedInputStream(new FileInputStream(readFrom), 65536);
+				try {
+					ChangeDetectingOutputStream out = ChangeDetectingOutputStream.forFile(readFrom, tmpFile);
+					try {
+						applyTo(util, name, in, out);
+					}
+					finally {
+						out.close();
+					}
+					changed = out.isChanged();
+				}
+				finally {
+					in.close();
+				}
+			}else{
+				//整个文件读写的方式只能按路径修改，先复制再在临时文件上修改
+				Files.copy(readFrom.toPath(), tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				applyTo(util, tmpFile.getPath());
+				changed = !AtomicFiles.sameContent(readFrom, tmpFile);
+			}
+		}
+		finally {
+			if(!changed){
+				tmpFile.delete();
+			}
+		}
+		if(!changed){
+			return ApplyResult.Status.UNCHANGED;
+		}
+		staged.stage(target, tmpFile);
+		return ApplyResult.Status.SUCCESS;
+	}
+
+	/**
+	 * 替换项目文件内容
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param util
+	 * @param targetName 要修改的文件名，用于判断文件类型
+	 * @param in 要修改的内容
+	 * @param out 替换后的内容
+	 * @return 文件类型未知时返回false
+	 * @throws IOException
+	 */
+	public boolean applyTo(ConfigFileUtil util, String targetName, InputStream in, OutputStream out) throws IOException {
+		if(util.isXmlFile(targetName)){
+			util.replaceXml(xmlRules(), in, out);
+			return true;
+		}
+		if(util.isPropertyFile(targetName) && !isRules()){
+			util.replaceProperties(properties(), in, out);
+			return true;
+		}
+		if(canPatch(util, targetName)){
+			FormatHandler handler = util.getFormatHandler(targetName);
+			util.replaceFormat(handler, formatConfig(handler), in, out);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * properties配置文件的配置项
+	 * @return
+	 * @throws IOException
+	 */
+	public Map<String, String> properties() throws IOException {
+		parse();
+		if(properties == null){
+			throw new IOException("不是properties配置文件：" + file.getName());
+		}
+		return properties;
+	}
+
+	/**
+	 * xml配置文件的根元素事件
+	 * @return
+	 * @throws IOException
+	 */
+	public List<XMLEvent> xmlEvents() throws IOException {
+		parse();
+		if(xmlEvents == null){
+			throw new IOException("不是xml配置文件：" + file.getName());
+		}
+		return xmlEvents;
+	}
+
+	/**
+	 * 修改xml的规则：规则文件中的所有规则，xml配置文件为替换CASFilter的一条规则
+	 * @return
+	 * @throws IOException
+	 */
+	public XmlRules xmlRules() throws IOException {
+		parse();
+		if(xmlRules == null){
+			throw new IOException("不是xml配置文件：" + file.getName());
+		}
+		return xmlRules;
+	}
+
+	/**
+	 * 按格式读取配置文件，读取结果缓存，出错时每次都重新读取
+	 * @param handler
+	 * @return handler.load的返回值
+	 * @throws IOException
+	 */
+	public synchronized Object formatConfig(FormatHandler handler) throws IOException {
+		Object config = formatConfigs.get(handler);
+		if(config == null){
+			config = handler.load(file);
+			formatConfigs.put(handler, config);
+		}
+		return config;
+	}
+
+	private synchronized void parse() throws IOException {
+		if(!parsed){
+			parsed = true;
+			String name = file.getName();
+			try {
+				if(isRules()){
+					xmlRules = XmlRules.load(file);
+				}else if(name.endsWith(".properties")){
+					properties = StreamingPropertiesPatcher.loadReplacements(file);
+				}else if(name.endsWith(".xml")){
+					xmlEvents = StaxXmlDocument.readRootElement(file);
+					xmlRules = ConfigFileUtil.xmlRules(xmlEvents);
+				}
+			}
+			catch (IOException e) {
+				error = e;
+			}
+			catch (XMLStreamException e) {
+				error = new IOException("xml解析出错：" + name, e);
+			}
+		}
+		if(error != null){
+			throw error;
+		}
+	}
+
+}
@@ -0,0 +1,325 @@
+package com.bolin.patch;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.bolin.utils.ConfigFileUtil;
+import com.bolin.utils.FindResult;
+import com.bolin.utils.StagedWrites;
+
+/**
+ * ConfigWatcher
+ * 监视配置文件目录，配置文件修改后只重新替换这个文件
+ *
+ * start先完整替换一次，记住每个配置文件对应的项目文件；之后watch阻塞等待配置文件目录的变化，
+ * 连续保存时等到debounceMillis内没有新的变化再处理，每个变化的配置文件重新解析后直接替换到记住的项目文件，
+ * 不再遍历项目目录。新增的配置文件或项目文件已被移走时，才在项目目录中查找这一个文件（使用遍历缓存）。
+ *
+ * watchProject为true时还监视项目文件所在的目录，项目文件被其他程序（如构建）覆盖后重新替换；
+ * 本程序写出的修改按文件的修改时间和大小识别，不会重复触发。
+ *
+ * 同一个项目文件有多个配置文件（如web.xml和web.xml.rules）时，只重新应用修改过的那个。
+ * ConfigFileUtil.stagedWrites为true时每次重新替换都通过StagedWrites提交，与ApplyEngine相同。
+ * 监视在调用watch的线程中进行，close可以在其他线程中调用。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class ConfigWatcher implements Closeable {
+
+	public interface Listener {
+		/**
+		 * 一个配置文件重新替换完成
+		 * @param result
+		 */
+		void onResult(ApplyResult result);
+	}
+
+	private final ConfigFileUtil util;
+
+	private final File project;
+
+	private final File configDir;
+
+	private final int threads;
+
+	private final long debounceMillis;
+
+	private final boolean watchProject;
+
+	private final WatchService watchService;
+
+	/**
+	 * 项目文件名 -> 项目文件
+	 */
+	private final Map<String, File> targets = new HashMap<String, File>();
+
+	/**
+	 * 本程序写出后项目文件的修改时间和大小，用于忽略自己引起的变化
+	 */
+	private final Map<File, long[]> written = new HashMap<File, long[]>();
+
+	/**
+	 * 已监视的项目目录
+	 */
+	private final Map<WatchKey, Path> projectDirs = new HashMap<WatchKey, Path>();
+
+	private WatchKey configKey;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * @param util 查找和替换的设置
+	 * @param project 项目目录
+	 * @param configDir 配置文件目录
+	 * @param threads 第一次完整替换的并发数
+	 * @param debounceMillis 最后一次变化之后等待的毫秒数
+	 * @param watchProject 是否监视项目文件被覆盖
+	 * @throws IOException 无法创建WatchService
+	 */
+	public ConfigWatcher(ConfigFileUtil util, File project, File configDir, int threads, long debounceMillis,
+			boolean watchProject) throws IOException {
+		super();
+		this.util = util;
+		this.project = project.getAbsoluteFile();
+		this.configDir = configDir.getAbsoluteFile();
+		this.threads = threads;
+		this.debounceMillis = Math.max(0L, debounceMillis);
+		this.watchProject = watchProject;
+		this.watchService = FileSystems.getDefault().newWatchService();
+	}
+
+	/**
+	 * 开始监视并完整替换一次，先注册监视再替换，替换期间的修改不会遗漏
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @return 完整替换的结果
+	 * @throws IOException 无法监视配置文件目录
+	 */
+	public ApplyReport start() throws IOException {
+		configKey = configDir.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.OVERFLOW);
+		ApplyReport report = new ApplyEngine(util, threads).apply(project.getPath(), configFiles(), null);
+		for ( ApplyResult result : report.getResults() ) {
+			if(result.getTargetFile() != null){
+				File target = new File(result.getTargetFile());
+				targets.put(target.getName(), target);
+				wrote(target);
+			}
+		}
+		return report;
+	}
+
+	/**
+	 * 阻塞等待配置文件的变化并重新替换，直到close
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param listener 每个配置文件的替换结果
+	 */
+	public void watch(Listener listener) {
+		Set<String> changed = new LinkedHashSet<String>();
+		long lastEvent = 0L;
+		try {
+			while (!closed) {
+				WatchKey key;
+				if(changed.isEmpty()){
+					key = watchService.take();
+				}else{
+					long wait = lastEvent + debounceMillis - System.currentTimeMillis();
+					key = wait > 0 ? watchService.poll(wait, TimeUnit.MILLISECONDS) : null;
+				}
+				if(key == null){
+					//debounceMillis内没有新的变化
+					List<String> names = new ArrayList<String>(changed);
+					changed.clear();
+					for ( String name : names ) {
+						ApplyResult result = apply(name);
+						if(result != null){
+							listener.onResult(result);
+						}
+					}
+					continue;
+				}
+				if(collect(key, changed)){
+					lastEvent = System.currentTimeMillis();
+				}
+				if(!key.reset()){
+					projectDirs.remove(key);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ClosedWatchServiceException e) {
+			//已close
+		}
+	}
+
+	/**
+	 * 停止监视，watch随即返回
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		watchService.close();
+	}
+
+	/**
+	 * 记录需要重新替换的配置文件名
+	 * @return 是否有需要处理的变化
+	 */
+	private boolean collect(WatchKey key, Set<String> changed) {
+		boolean found = false;
+		for ( WatchEvent<?> event : key.pollEvents() ) {
+			if(event.kind() == StandardWatchEventKinds.OVERFLOW){
+				//事件丢失，重新替换所有配置文件
+				for ( File configFile : configFiles() ) {
+					changed.add(configFile.getName());
+				}
+				found = true;
+				continue;
+			}
+			String name = ((Path) event.context()).toString();
+			if(key == configKey){
+				//编辑器的备份和交换文件
+				if(name.startsWith(".") || name.endsWith("~")) continue;
+				changed.add(name);
+				found = true;
+				continue;
+			}
+			Path dir = projectDirs.get(key);
+			File target = dir == null ? null : dir.resolve(name).toFile();
+			if(target == null || !target.equals(targets.get(name)) || isOwnWrite(target)) continue;
+			for ( File configFile : configFiles() ) {
+				if(name.equals(new ConfigSource(configFile).getTargetName())){
+					changed.add(configFile.getName());
+					found = true;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * 重新解析配置文件并替换到记住的项目文件
+	 * @return 配置文件已不存在（如编辑器的临时文件）时返回null
+	 */
+	private ApplyResult apply(String configName) {
+		long start = System.currentTimeMillis();
+		File configFile = new File(configDir, configName);
+		if(!configFile.isFile()){
+			return null;
+		}
+		ConfigSource source = new ConfigSource(configFile);
+		String targetName = source.getTargetName();
+		File target = targets.get(targetName);
+		if(target == null || !target.isFile()){
+			FindResult found = util.findTargets(project.getPath(), Collections.singletonList(targetName)).get(targetName);
+			if(!found.isSuccess()){
+				return new ApplyResult(configFile, null, ApplyResult.Status.NOT_FOUND, found.getMsg(),
+						System.currentTimeMillis() - start);
+			}
+			target = found.getTargetFile();
+			targets.put(targetName, target);
+		}
+		String targetPath = target.getPath();
+		if(!source.canPatch(util, targetName)){
+			return new ApplyResult(configFile, targetPath, ApplyResult.Status.UNKNOWN_TYPE,
+					"未知的配置文件类型：不处理", System.currentTimeMillis() - start);
+		}
+		//与ApplyEngine相同：修改先暂存到临时文件，fsync后再替换，出错时原文件不变
+		StagedWrites staged = util.isStagedWrites() ? new StagedWrites() : null;
+		try {
+			ApplyResult.Status status;
+			if(staged == null){
+				status = source.applyTo(util, targetPath);
+			}else{
+				status = source.applyTo(util, target, staged);
+				try {
+					staged.commit();
+				}
+				catch (IOException e) {
+					return new ApplyResult(configFile, targetPath, ApplyResult.Status.FAILED,
+							"提交出错，原文件已恢复：" + e.getMessage(), System.currentTimeMillis() - start);
+				}
+			}
+			wrote(target);
+			if(status == ApplyResult.Status.UNCHANGED){
+				return new ApplyResult(configFile, targetPath, status, "内容未变化，未修改文件",
+						System.currentTimeMillis() - start);
+			}
+			return new ApplyResult(configFile, targetPath, status, "替换成功", System.currentTimeMillis() - start);
+		}
+		catch (IOException e) {
+			return new ApplyResult(configFile, targetPath, ApplyResult.Status.FAILED,
+					"替换出错：" + e.getMessage(), System.currentTimeMillis() - start);
+		}
+		catch (RuntimeException e) {
+			e.printStackTrace();
+			return new ApplyResult(configFile, targetPath, ApplyResult.Status.FAILED,
+					"替换出错：" + e, System.currentTimeMillis() - start);
+		}
+		finally {
+			//已提交时不做任何事
+			if(staged != null){
+				staged.rollback();
+			}
+		}
+	}
+
+	/**
+	 * 记住项目文件当前的状态，需要时监视其所在目录
+	 */
+	private void wrote(File target) {
+		written.put(target, new long[] { target.lastModified(), target.length() });
+		if(!watchProject) return;
+		Path dir = target.getParentFile().toPath();
+		if(projectDirs.containsValue(dir)) return;
+		try {
+			WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+			projectDirs.put(key, dir);
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private boolean isOwnWrite(File target) {
+		long[] state = written.get(target);
+		return state != null && state[0] == target.lastModified() && state[1] == target.length();
+	}
+
+	private File[] configFiles() {
+		File[] files = configDir.listFiles();
+		if(files == null) return new File[0];
+		List<File> result = new ArrayList<File>();
+		for ( File file : files ) {
+			if(file.isFile()){
+				result.add(file);
+			}
+		}
+		return result.toArray(new File[result.size()]);
+	}
+
+}
@@ -0,0 +1,273 @@
+package com.bolin.patch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * JarPruner
+ * 按规则删除项目lib目录中的jar包
+ *
+ * 查找项目的WEB-INF/lib和BOOT-INF/lib目录（项目目录本身为lib目录时直接使用），
+ * 所有jar包在固定大小的线程池中并行检查：先按文件名匹配，不匹配且有Maven坐标规则时
+ * 再读取jar包中的pom.properties。一个jar包中有多个pom.properties时（如shade打包的jar），
+ * 只使用artifactId与文件名一致的那个，避免误删。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class JarPruner {
+
+	/**
+	 * 检查进度回调，可能在多个线程中同时调用
+	 */
+	public interface Listener {
+
+		void onJar(PruneReport.JarResult result, int done, int total);
+
+	}
+
+	private static final String[] LIB_DIRS = { "WEB-INF" + File.separator + "lib", "BOOT-INF" + File.separator + "lib" };
+
+	private static final String POM_PREFIX = "META-INF/maven/";
+
+	private static final String POM_SUFFIX = "/pom.properties";
+
+	private final JarRules rules;
+
+	private final int threads;
+
+	private volatile boolean cancelled = false;
+
+	/**
+	 * 线程数默认为CPU核数
+	 * @param rules
+	 */
+	public JarPruner(JarRules rules) {
+		this(rules, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param rules 删除规则
+	 * @param threads 同时检查的jar包数
+	 */
+	public JarPruner(JarRules rules, int threads) {
+		super();
+		this.rules = rules;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * 项目中存在的lib目录
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param project 项目目录或lib目录
+	 * @return
+	 */
+	public static List<File> libDirs(File project) {
+		List<File> dirs = new ArrayList<File>();
+		if(project == null || !project.isDirectory()) return dirs;
+		if("lib".equals(project.getName())){
+			dirs.add(project);
+			return dirs;
+		}
+		for ( String libDir : LIB_DIRS ) {
+			File dir = new File(project, libDir);
+			if(dir.isDirectory()){
+				dirs.add(dir);
+			}
+		}
+		return dirs;
+	}
+
+	/**
+	 * 检查并删除匹配规则的jar包
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param project 项目目录或lib目录
+	 * @param dryRun 为true时只检查，不删除
+	 * @param listener 进度回调，可为null
+	 * @return
+	 */
+	public PruneReport prune(File project, final boolean dryRun, final Listener listener) {
+		long start = System.currentTimeMillis();
+		final List<File> jars = new ArrayList<File>();
+		for ( File dir : libDirs(project) ) {
+			File[] files = dir.listFiles();
+			if(files == null) continue;
+			Arrays.sort(files);
+			for ( File file : files ) {
+				if(file.isFile() && file.getName().toLowerCase().endsWith(".jar")){
+					jars.add(file);
+				}
+			}
+		}
+		final int total = jars.size();
+		final PruneReport.JarResult[] ordered = new PruneReport.JarResult[total];
+		if(total == 0){
+			return new PruneReport(new ArrayList<PruneReport.JarResult>(), dryRun, System.currentTimeMillis() - start);
+		}
+
+		final AtomicInteger done = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, total));
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(total);
+			for ( int i = 0; i < total; i++ ) {
+				final int index = i;
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						File jar = jars.get(index);
+						try {
+							ordered[index] = cancelled ? cancelledResult(jar) : inspect(jar, dryRun);
+						}
+						catch (RuntimeException e) {
+							e.printStackTrace();
+							ordered[index] = new PruneReport.JarResult(jar, jar.length(), PruneReport.Status.FAILED, null, null, "检查出错：" + e);
+						}
+						if(listener != null){
+							listener.onJar(ordered[index], done.incrementAndGet(), total);
+						}
+						return null;
+					}
+				}));
+			}
+			for ( Future<?> future : futures ) {
+				try {
+					future.get();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					cancel();
+				}
+				catch (ExecutionException e) {
+					e.getCause().printStackTrace();
+				}
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		List<PruneReport.JarResult> results = new ArrayList<PruneReport.JarResult>(total);
+		for ( int i = 0; i < total; i++ ) {
+			results.add(ordered[i] == null ? cancelledResult(jars.get(i)) : ordered[i]);
+		}
+		return new PruneReport(results, dryRun, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * 取消，已开始检查的jar包会执行完
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	private PruneReport.JarResult inspect(File jar, boolean dryRun) {
+		long bytes = jar.length();
+		String coordinate = null;
+		JarRules.Rule rule = rules.matchName(jar.getName());
+		if(rule == null && rules.hasMavenRules()){
+			String[] pom;
+			try {
+				pom = readCoordinate(jar);
+			}
+			catch (IOException e) {
+				return new PruneReport.JarResult(jar, bytes, PruneReport.Status.FAILED, null, null, "读取出错：" + e.getMessage());
+			}
+			if(pom != null){
+				coordinate = pom[0] + ":" + pom[1] + ":" + pom[2];
+				rule = rules.matchCoordinate(pom[0], pom[1]);
+			}
+		}
+		if(rule == null){
+			return new PruneReport.JarResult(jar, bytes, PruneReport.Status.KEPT, null, coordinate, "保留");
+		}
+		if(dryRun){
+			return new PruneReport.JarResult(jar, bytes, PruneReport.Status.MATCHED, rule.toString(), coordinate, "将删除，匹配规则：" + rule);
+		}
+		try {
+			Files.delete(jar.toPath());
+		}
+		catch (IOException e) {
+			return new PruneReport.JarResult(jar, bytes, PruneReport.Status.FAILED, rule.toString(), coordinate, "删除失败：" + e);
+		}
+		return new PruneReport.JarResult(jar, bytes, PruneReport.Status.REMOVED, rule.toString(), coordinate, "已删除，匹配规则：" + rule);
+	}
+
+	private static PruneReport.JarResult cancelledResult(File jar) {
+		return new PruneReport.JarResult(jar, jar.length(), PruneReport.Status.CANCELLED, null, null, "已取消");
+	}
+
+	/**
+	 * 读取jar包自身的Maven坐标 {groupId, artifactId, version}，没有或无法确定时返回null
+	 */
+	static String[] readCoordinate(File jar) throws IOException {
+		List<String[]> poms = new ArrayList<String[]>(1);
+		ZipFile zipFile = new ZipFile(jar);
+		try {
+			for ( Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements(); ) {
+				ZipEntry entry = entries.nextElement();
+				String name = entry.getName();
+				if(!name.startsWith(POM_PREFIX) || !name.endsWith(POM_SUFFIX)) continue;
+				Properties properties = new Properties();
+				InputStream in = zipFile.getInputStream(entry);
+				try {
+					properties.load(in);
+				}
+				catch (IllegalArgumentException e) {
+					//Unicode转义格式错误
+					throw new IOException("pom.properties格式错误：" + name, e);
+				}
+				finally {
+					in.close();
+				}
+				String groupId = properties.getProperty("groupId");
+				String artifactId = properties.getProperty("artifactId");
+				if(groupId != null && artifactId != null){
+					poms.add(new String[] { groupId.trim(), artifactId.trim(), properties.getProperty("version", "").trim() });
+				}
+			}
+		}
+		finally {
+			zipFile.close();
+		}
+		if(poms.size() == 1) return poms.get(0);
+		//shade打包的jar中有依赖的pom.properties，取与文件名一致且artifactId最长的，有多个时无法确定
+		String fileName = jar.getName();
+		String[] found = null;
+		boolean ambiguous = false;
+		for ( String[] pom : poms ) {
+			if(!fileName.startsWith(pom[1] + "-") && !fileName.equals(pom[1] + ".jar")) continue;
+			if(found == null || pom[1].length() > found[1].length()){
+				found = pom;
+				ambiguous = false;
+			}else if(pom[1].length() == found[1].length()){
+				ambiguous = true;
+			}
+		}
+		return ambiguous ? null : found;
+	}
+
+}
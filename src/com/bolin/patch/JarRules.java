@@ -0,0 +1,244 @@
+package com.bolin.patch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * JarRules
+ * 删除jar包的规则
+ *
+ * 每条规则为一行文本：
+ *   不含:的规则为jar文件名的glob，不区分大小写，如servlet-api*.jar、*jsp-api*
+ *   含:的规则为Maven坐标groupId:artifactId，各部分可以使用glob，如javax.servlet:*，
+ *   与jar包中META-INF/maven/&#42;&#42;/pom.properties的groupId、artifactId比较
+ * 规则文件中#开头的行和空行忽略。
+ *
+ * container列出容器已提供、不应打进war包的jar包规则。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class JarRules {
+
+	/**
+	 * Tomcat已提供的jar包：Servlet、JSP、EL、WebSocket API和Tomcat自身的jar包
+	 */
+	private static final List<String> TOMCAT = Collections.unmodifiableList(Arrays.asList(
+			"javax.servlet:servlet-api", "javax.servlet:javax.servlet-api",
+			"javax.servlet.jsp:jsp-api", "javax.servlet.jsp:javax.servlet.jsp-api",
+			"javax.el:el-api", "javax.el:javax.el-api",
+			"javax.websocket:javax.websocket-api",
+			"jakarta.servlet:jakarta.servlet-api", "jakarta.servlet.jsp:jakarta.servlet.jsp-api",
+			"jakarta.el:jakarta.el-api", "jakarta.websocket:jakarta.websocket-api",
+			"org.apache.tomcat:*", "org.apache.tomcat.embed:*",
+			"servlet-api*.jar", "jsp-api*.jar", "el-api*.jar"));
+
+	/**
+	 * 一条规则
+	 */
+	public static class Rule {
+
+		private final String text;
+
+		private final Pattern name;
+
+		private final Pattern groupId;
+
+		private final Pattern artifactId;
+
+		Rule(String text) {
+			this.text = text;
+			int colon = text.indexOf(':');
+			if(colon < 0){
+				this.name = compile(text, true);
+				this.groupId = null;
+				this.artifactId = null;
+			}else{
+				this.name = null;
+				this.groupId = compile(text.substring(0, colon), false);
+				this.artifactId = compile(text.substring(colon + 1), false);
+			}
+		}
+
+		/**
+		 * 是否为Maven坐标规则
+		 * @return
+		 */
+		public boolean isMaven() {
+			return name == null;
+		}
+
+		public boolean matchesName(String fileName) {
+			return name != null && name.matcher(fileName).matches();
+		}
+
+		public boolean matchesCoordinate(String group, String artifact) {
+			return name == null && group != null && artifact != null
+					&& groupId.matcher(group).matches() && artifactId.matcher(artifact).matches();
+		}
+
+		@Override
+		public String toString() {
+			return text;
+		}
+
+		/**
+		 * glob转为正则：*匹配任意字符，?匹配一个字符
+		 */
+		private static Pattern compile(String glob, boolean ignoreCase) {
+			StringBuilder regex = new StringBuilder(glob.length() + 8);
+			StringBuilder literal = new StringBuilder();
+			for ( int i = 0; i < glob.length(); i++ ) {
+				char c = glob.charAt(i);
+				if(c == '*' || c == '?'){
+					if(literal.length() > 0){
+						regex.append(Pattern.quote(literal.toString()));
+						literal.setLength(0);
+					}
+					regex.append(c == '*' ? ".*" : ".");
+				}else{
+					literal.append(c);
+				}
+			}
+			if(literal.length() > 0){
+				regex.append(Pattern.quote(literal.toString()));
+			}
+			return Pattern.compile(regex.toString(), ignoreCase ? Pattern.CASE_INSENSITIVE : 0);
+		}
+	}
+
+	private final List<Rule> rules = new ArrayList<Rule>();
+
+	private boolean hasMavenRules = false;
+
+	public JarRules() {
+		super();
+	}
+
+	/**
+	 * @param rules 规则文本
+	 */
+	public JarRules(String... rules) {
+		this();
+		addAll(Arrays.asList(rules));
+	}
+
+	/**
+	 * 容器已提供的jar包规则
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param container 容器名称，目前支持tomcat
+	 * @return
+	 * @throws IllegalArgumentException 未知的容器
+	 */
+	public static JarRules container(String container) {
+		if("tomcat".equalsIgnoreCase(container)){
+			JarRules jarRules = new JarRules();
+			jarRules.addAll(TOMCAT);
+			return jarRules;
+		}
+		throw new IllegalArgumentException("未知的容器：" + container);
+	}
+
+	/**
+	 * 读取规则文件，UTF-8编码
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static JarRules load(File file) throws IOException {
+		JarRules jarRules = new JarRules();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				jarRules.add(line);
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return jarRules;
+	}
+
+	/**
+	 * 添加一条规则，空行和#开头的行忽略
+	 * @param rule
+	 */
+	public void add(String rule) {
+		if(rule == null) return;
+		String text = rule.trim();
+		if(text.isEmpty() || text.startsWith("#")) return;
+		Rule compiled = new Rule(text);
+		rules.add(compiled);
+		if(compiled.isMaven()){
+			hasMavenRules = true;
+		}
+	}
+
+	public void addAll(Iterable<String> rules) {
+		for ( String rule : rules ) {
+			add(rule);
+		}
+	}
+
+	public void addAll(JarRules other) {
+		rules.addAll(other.rules);
+		hasMavenRules |= other.hasMavenRules;
+	}
+
+	/**
+	 * 匹配jar文件名的第一条规则，没有则返回null
+	 * @param fileName
+	 * @return
+	 */
+	public Rule matchName(String fileName) {
+		for ( Rule rule : rules ) {
+			if(rule.matchesName(fileName)) return rule;
+		}
+		return null;
+	}
+
+	/**
+	 * 匹配Maven坐标的第一条规则，没有则返回null
+	 * @param groupId
+	 * @param artifactId
+	 * @return
+	 */
+	public Rule matchCoordinate(String groupId, String artifactId) {
+		for ( Rule rule : rules ) {
+			if(rule.matchesCoordinate(groupId, artifactId)) return rule;
+		}
+		return null;
+	}
+
+	/**
+	 * 是否有Maven坐标规则，没有时不需要读取jar包内容
+	 * @return
+	 */
+	public boolean hasMavenRules() {
+		return hasMavenRules;
+	}
+
+	public List<Rule> getRules() {
+		return Collections.unmodifiableList(rules);
+	}
+
+	public boolean isEmpty() {
+		return rules.isEmpty();
+	}
+
+}
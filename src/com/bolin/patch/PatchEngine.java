@@ -0,0 +1,183 @@
+package com.bolin.patch;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.bolin.utils.ConfigFileUtil;
+import com.bolin.utils.FindResult;
+
+/**
+ * PatchEngine
+ * 供其他程序嵌入使用的替换接口，不依赖界面，输入输出都是类型化的对象
+ *
+ * 一个实例可以在多个线程中同时使用，也应当在多次调用之间复用：
+ * 解析过的配置文件按路径缓存，文件的修改时间和大小不变时直接使用上次的解析结果；
+ * 项目目录的遍历结果由ProjectScanCache持久化缓存。
+ * 构造时复制ConfigFileUtil的设置，之后修改原来的ConfigFileUtil不影响本实例。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class PatchEngine {
+
+	private final ConfigFileUtil util;
+
+	private final int threads;
+
+	private final ConcurrentMap<String, CachedSource> sources = new ConcurrentHashMap<String, CachedSource>();
+
+	/**
+	 * 使用默认设置，线程数为CPU核数
+	 */
+	public PatchEngine() {
+		this(new ConfigFileUtil());
+	}
+
+	/**
+	 * 线程数默认为CPU核数
+	 * @param settings
+	 */
+	public PatchEngine(ConfigFileUtil settings) {
+		this(settings, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param settings 查找和替换的设置
+	 * @param threads 单个项目内的最大并发数
+	 */
+	public PatchEngine(ConfigFileUtil settings, int threads) {
+		super();
+		this.util = new ConfigFileUtil(settings);
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * 查找配置文件对应的项目文件
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param project 项目目录
+	 * @param fileName 配置文件名称
+	 * @return
+	 */
+	public FindResult find(File project, String fileName) {
+		return util.findTarget(project == null ? null : project.getAbsolutePath(), fileName);
+	}
+
+	/**
+	 * 批量查找配置文件对应的项目文件，项目目录只遍历一次
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param project 项目目录
+	 * @param configFiles 配置文件
+	 * @return 配置文件名 -> 查找结果
+	 */
+	public Map<String, FindResult> findAll(File project, File[] configFiles) {
+		return util.findTargets(project == null ? null : project.getAbsolutePath(), configFiles);
+	}
+
+	/**
+	 * 执行替换请求，不抛出异常，出错原因见结果
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param request
+	 * @return
+	 */
+	public PatchResult patch(PatchRequest request) {
+		long start = System.currentTimeMillis();
+		File project = request.getProject();
+		boolean dryRun = request.isDryRun();
+		if(project == null || !project.exists()){
+			return new PatchResult(project, dryRun, null, null, null,
+					"项目不存在：" + (project == null ? "" : project.getAbsolutePath()), 0L);
+		}
+		ConfigSource[] configSources = sources(request.getConfigFiles());
+		try {
+			List<PlannedChange> changes = null;
+			String diff = null;
+			if(dryRun || request.isCollectChanges()){
+				if(!util.isStreamingProperties() || !util.isStreamingXml()){
+					return new PatchResult(project, dryRun, null, null, null,
+							"预览和修改清单只支持流式替换，不能与legacy方式一起使用", System.currentTimeMillis() - start);
+				}
+				PatchPlan plan = new PatchPlanner(util, threads).plan(project, configSources);
+				changes = plan.getChanges();
+				diff = plan.toUnifiedDiff();
+				if(dryRun){
+					return new PatchResult(project, true, plan.getReport(), changes, diff, null,
+							System.currentTimeMillis() - start);
+				}
+			}
+			ApplyReport report;
+			if(project.isFile() && ArchivePatcher.isArchive(project.getName())){
+				report = new ArchivePatcher(util).patch(project, configSources);
+			}else{
+				report = new ApplyEngine(util, threads).apply(project.getAbsolutePath(), configSources, request.getListener());
+			}
+			return new PatchResult(project, false, report, changes, diff, null, System.currentTimeMillis() - start);
+		}
+		catch (Exception e) {
+			return new PatchResult(project, dryRun, null, null, null,
+					e.getMessage() == null ? e.toString() : e.getMessage(), System.currentTimeMillis() - start);
+		}
+	}
+
+	/**
+	 * 已缓存的配置文件数量
+	 * @return
+	 */
+	public int getCachedSources() {
+		return sources.size();
+	}
+
+	/**
+	 * 清空配置文件缓存，配置文件目录很多或已删除时调用
+	 */
+	public void clearCache() {
+		sources.clear();
+	}
+
+	/**
+	 * 配置文件的修改时间和大小都未变化时使用缓存的解析结果
+	 */
+	private ConfigSource[] sources(File[] configFiles) {
+		ConfigSource[] result = new ConfigSource[configFiles.length];
+		for ( int i = 0; i < configFiles.length; i++ ) {
+			File file = configFiles[i].getAbsoluteFile();
+			String key = file.getPath();
+			long lastModified = file.lastModified();
+			long length = file.length();
+			CachedSource cached = sources.get(key);
+			if(cached == null || cached.lastModified != lastModified || cached.length != length){
+				//多个线程同时放入同一个文件时各自创建，内容相同，保留最后放入的一个
+				cached = new CachedSource(new ConfigSource(file), lastModified, length);
+				sources.put(key, cached);
+			}
+			result[i] = cached.source;
+		}
+		return result;
+	}
+
+	private static class CachedSource {
+
+		final ConfigSource source;
+
+		final long lastModified;
+
+		final long length;
+
+		CachedSource(ConfigSource source, long lastModified, long length) {
+			this.source = source;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+
+	}
+
+}
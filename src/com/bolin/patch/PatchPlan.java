@@ -0,0 +1,88 @@
+package com.bolin.patch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+
+/**
+ * PatchPlan
+ * 预览替换的结果：每个配置文件的结果、所有项目文件的unified diff和修改清单
+ *
+ * 结果中SUCCESS表示替换时会修改文件，UNCHANGED表示内容不会变化。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class PatchPlan {
+
+	private final ApplyReport report;
+
+	private final List<String> diffs;
+
+	private final List<PlannedChange> changes;
+
+	public PatchPlan(ApplyReport report, List<String> diffs, List<PlannedChange> changes) {
+		super();
+		this.report = report;
+		this.diffs = Collections.unmodifiableList(new ArrayList<String>(diffs));
+		this.changes = Collections.unmodifiableList(new ArrayList<PlannedChange>(changes));
+	}
+
+	public ApplyReport getReport() {
+		return report;
+	}
+
+	/**
+	 * 每个会被修改的项目文件的diff，顺序与配置文件顺序一致
+	 * @return
+	 */
+	public List<String> getDiffs() {
+		return diffs;
+	}
+
+	public List<PlannedChange> getChanges() {
+		return changes;
+	}
+
+	public boolean hasChanges() {
+		return !diffs.isEmpty();
+	}
+
+	/**
+	 * 所有项目文件的unified diff，可用patch -p1或git apply应用
+	 * @return
+	 */
+	public String toUnifiedDiff() {
+		StringBuilder text = new StringBuilder();
+		for ( String diff : diffs ) {
+			text.append(diff);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * 修改清单的json数组，每项包含file、configFile、type、key、oldValue、newValue
+	 * @return
+	 */
+	public String toJson() {
+		JSONArray array = new JSONArray();
+		for ( PlannedChange change : changes ) {
+			JSONObject item = new JSONObject(true);
+			item.put("file", change.getTargetFile());
+			item.put("configFile", change.getConfigFile().getName());
+			item.put("type", change.getType().name().toLowerCase());
+			item.put("key", change.getKey());
+			item.put("oldValue", change.getOldValue());
+			item.put("newValue", change.getNewValue());
+			array.add(item);
+		}
+		return JSON.toJSONString(array, SerializerFeature.PrettyFormat, SerializerFeature.WriteMapNullValue);
+	}
+
+}
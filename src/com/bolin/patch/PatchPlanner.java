@@ -0,0 +1,400 @@
+package com.bolin.patch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.bolin.utils.CharsetSniffer;
+import com.bolin.utils.CommentedProperties;
+import com.bolin.utils.ConfigFileUtil;
+import com.bolin.utils.FindResult;
+import com.bolin.utils.FormatChange;
+import com.bolin.utils.FormatHandler;
+import com.bolin.utils.UnifiedDiff;
+import com.bolin.xml.XmlRules;
+
+/**
+ * PatchPlanner
+ * 预览替换：查找所有项目文件，在内存中计算替换后的内容，生成unified diff和修改清单，不写任何文件
+ *
+ * 项目文件之间在固定大小的线程池中并行计算；多个配置文件对应同一个项目文件时，
+ * 在同一个任务中按配置文件顺序依次替换，与实际替换的结果一致。
+ * 项目可以是目录，也可以是war包。替换方式与流式替换相同，legacy方式写出的内容不同，
+ * Cli和PatchEngine不允许与legacy选项一起预览。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class PatchPlanner {
+
+	/** diff的上下文行数 */
+	private static final int CONTEXT = 3;
+
+	private final ConfigFileUtil util;
+
+	private final int threads;
+
+	/**
+	 * 线程数默认为CPU核数
+	 * @param util
+	 */
+	public PatchPlanner(ConfigFileUtil util) {
+		this(util, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param util
+	 * @param threads 同时计算的项目文件数
+	 */
+	public PatchPlanner(ConfigFileUtil util, int threads) {
+		super();
+		this.util = util;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * 预览替换
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param project 项目目录或war包
+	 * @param configFiles 配置文件
+	 * @return
+	 * @throws IOException war包读取出错
+	 */
+	public PatchPlan plan(File project, File[] configFiles) throws IOException {
+		return plan(project, ConfigSource.of(configFiles));
+	}
+
+	/**
+	 * 预览替换，配置文件可以是已解析的
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param project 项目目录或war包
+	 * @param sources 配置文件
+	 * @return
+	 * @throws IOException war包读取出错
+	 */
+	public PatchPlan plan(File project, final ConfigSource[] sources) throws IOException {
+		long start = System.currentTimeMillis();
+		final ApplyResult[] ordered = new ApplyResult[sources.length];
+		ZipFile zipFile = null;
+		try {
+			List<Target> targets;
+			if(project.isFile() && ArchivePatcher.isArchive(project.getName())){
+				zipFile = new ZipFile(project);
+				targets = archiveTargets(project, zipFile, sources, ordered);
+			}else{
+				targets = directoryTargets(project, sources, ordered);
+			}
+
+			List<TargetPlan> plans = new ArrayList<TargetPlan>(targets.size());
+			if(threads == 1 || targets.size() < 2){
+				for ( Target target : targets ) {
+					plans.add(planTarget(target, sources));
+				}
+			}else{
+				ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, targets.size()));
+				try {
+					List<Future<TargetPlan>> futures = new ArrayList<Future<TargetPlan>>();
+					for ( final Target target : targets ) {
+						futures.add(executor.submit(new Callable<TargetPlan>() {
+							@Override
+							public TargetPlan call() throws Exception {
+								return planTarget(target, sources);
+							}
+						}));
+					}
+					for ( int i = 0; i < futures.size(); i++ ) {
+						try {
+							plans.add(futures.get(i).get());
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							plans.add(failed(targets.get(i), sources, "已取消"));
+						}
+						catch (ExecutionException e) {
+							e.getCause().printStackTrace();
+							plans.add(failed(targets.get(i), sources, "预览出错：" + e.getCause()));
+						}
+					}
+				}
+				finally {
+					executor.shutdownNow();
+				}
+			}
+
+			List<String> diffs = new ArrayList<String>();
+			List<PlannedChange> changes = new ArrayList<PlannedChange>();
+			for ( TargetPlan plan : plans ) {
+				for ( int i = 0; i < plan.target.indexes.size(); i++ ) {
+					ordered[plan.target.indexes.get(i)] = plan.results.get(i);
+				}
+				if(plan.diff.length() > 0){
+					diffs.add(plan.diff);
+				}
+				changes.addAll(plan.changes);
+			}
+			List<ApplyResult> results = new ArrayList<ApplyResult>(ordered.length);
+			for ( ApplyResult result : ordered ) {
+				results.add(result);
+			}
+			return new PatchPlan(new ApplyReport(results, System.currentTimeMillis() - start), diffs, changes);
+		}
+		finally {
+			if(zipFile != null){
+				zipFile.close();
+			}
+		}
+	}
+
+	/**
+	 * 用ConfigFileUtil.findTargets查找项目目录中的文件，同一文件的配置文件合并为一个任务
+	 */
+	private List<Target> directoryTargets(File project, ConfigSource[] sources, ApplyResult[] ordered) {
+		File[] configFiles = new File[sources.length];
+		List<String> targetNames = new ArrayList<String>(sources.length);
+		for ( int i = 0; i < sources.length; i++ ) {
+			configFiles[i] = sources[i].getFile();
+			targetNames.add(sources[i].getTargetName());
+		}
+		String projectDir = project.getAbsolutePath();
+		Map<String, FindResult> findResults = util.findTargets(projectDir, targetNames);
+		Map<String, Target> targets = new LinkedHashMap<String, Target>();
+		for ( int i = 0; i < sources.length; i++ ) {
+			File configFile = configFiles[i];
+			FindResult findResult = findResults.get(sources[i].getTargetName());
+			if(!findResult.isSuccess()){
+				ordered[i] = new ApplyResult(configFile, null, ApplyResult.Status.NOT_FOUND, findResult.getMsg(), 0L);
+				continue;
+			}
+			String targetFile = findResult.getTargetFile().getPath();
+			if(!isKnownType(targetFile, sources[i], ordered, i)) continue;
+			Target target = targets.get(targetFile);
+			if(target == null){
+				String path = targetFile.startsWith(projectDir + File.separator)
+						? targetFile.substring(projectDir.length() + 1) : targetFile;
+				target = new Target(path.replace(File.separatorChar, '/'), targetFile, new File(targetFile), null, null);
+				targets.put(targetFile, target);
+			}
+			target.indexes.add(i);
+		}
+		return new ArrayList<Target>(targets.values());
+	}
+
+	/**
+	 * 与ArchivePatcher相同，按文件名匹配war包中第一个同名条目
+	 */
+	private List<Target> archiveTargets(File archive, ZipFile zipFile, ConfigSource[] sources, ApplyResult[] ordered) {
+		Map<String, ZipEntry> nameIndex = new LinkedHashMap<String, ZipEntry>();
+		for ( Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements(); ) {
+			ZipEntry entry = entries.nextElement();
+			String name = entry.getName();
+			if(name.endsWith("/")) continue;
+			String fileName = name.substring(name.lastIndexOf('/') + 1);
+			if(!nameIndex.containsKey(fileName)){
+				nameIndex.put(fileName, entry);
+			}
+		}
+		Map<String, Target> targets = new LinkedHashMap<String, Target>();
+		for ( int i = 0; i < sources.length; i++ ) {
+			File configFile = sources[i].getFile();
+			ZipEntry entry = nameIndex.get(sources[i].getTargetName());
+			if(entry == null){
+				ordered[i] = new ApplyResult(configFile, null, ApplyResult.Status.NOT_FOUND, "未找到同名配置文件！", 0L);
+				continue;
+			}
+			String entryPath = ArchivePatcher.entryPath(archive, entry.getName());
+			if(!isKnownType(entryPath, sources[i], ordered, i)) continue;
+			Target target = targets.get(entry.getName());
+			if(target == null){
+				target = new Target(entry.getName(), entryPath, null, zipFile, entry);
+				targets.put(entry.getName(), target);
+			}
+			target.indexes.add(i);
+		}
+		return new ArrayList<Target>(targets.values());
+	}
+
+	private boolean isKnownType(String targetFile, ConfigSource source, ApplyResult[] ordered, int index) {
+		if(source.canPatch(util, targetFile)){
+			return true;
+		}
+		ordered[index] = new ApplyResult(source.getFile(), targetFile, ApplyResult.Status.UNKNOWN_TYPE, "未知的配置文件类型：不处理", 0L);
+		return false;
+	}
+
+	/**
+	 * 依次用各配置文件替换同一个项目文件的内容，比较替换前后的内容
+	 */
+	private TargetPlan planTarget(Target target, ConfigSource[] sources) {
+		TargetPlan plan = new TargetPlan(target);
+		byte[] original;
+		try {
+			original = target.read();
+		}
+		catch (IOException e) {
+			return failed(target, sources, "读取出错：" + e.getMessage());
+		}
+		byte[] current = original;
+		String name = target.path.substring(target.path.lastIndexOf('/') + 1);
+		for ( int index : target.indexes ) {
+			ConfigSource source = sources[index];
+			long start = System.currentTimeMillis();
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream(current.length + 1024);
+				source.applyTo(util, name, new ByteArrayInputStream(current), out);
+				byte[] patched = out.toByteArray();
+				if(Arrays.equals(current, patched)){
+					plan.results.add(new ApplyResult(source.getFile(), target.resultPath, ApplyResult.Status.UNCHANGED,
+							"内容未变化", System.currentTimeMillis() - start));
+					continue;
+				}
+				collectChanges(source, target.path, current, patched, plan.changes);
+				current = patched;
+				plan.results.add(new ApplyResult(source.getFile(), target.resultPath, ApplyResult.Status.SUCCESS,
+						"将被修改", System.currentTimeMillis() - start));
+			}
+			catch (IOException e) {
+				plan.results.add(new ApplyResult(source.getFile(), target.resultPath, ApplyResult.Status.FAILED,
+						"替换出错：" + e.getMessage(), System.currentTimeMillis() - start));
+			}
+			catch (RuntimeException e) {
+				e.printStackTrace();
+				plan.results.add(new ApplyResult(source.getFile(), target.resultPath, ApplyResult.Status.FAILED,
+						"替换出错：" + e, System.currentTimeMillis() - start));
+			}
+		}
+		if(current != original){
+			plan.diff = UnifiedDiff.diff("a/" + target.path, "b/" + target.path, decode(original), decode(current), CONTEXT);
+		}
+		return plan;
+	}
+
+	/**
+	 * properties比较配置文件中每个配置项替换前后的值；xml比较被替换的元素，
+	 * xml规则文件列出每条规则的每次生效及被匹配的原值；其他格式列出替换和追加的路径
+	 */
+	private void collectChanges(ConfigSource source, String targetPath, byte[] before, byte[] after, List<PlannedChange> changes) throws IOException {
+		if(source.isRules()){
+			List<XmlRules.Hit> matches = new ArrayList<XmlRules.Hit>();
+			util.replaceXml(source.xmlRules(), new ByteArrayInputStream(before), new ByteArrayOutputStream(before.length + 1024), matches);
+			for ( XmlRules.Hit match : matches ) {
+				XmlRules.Rule rule = match.getRule();
+				changes.add(new PlannedChange(source.getFile(), targetPath, PlannedChange.Type.ELEMENT,
+						rule.toString(), match.getOldValue(), rule.getValue()));
+			}
+			return;
+		}
+		FormatHandler handler = util.getFormatHandler(targetPath);
+		if(handler != null){
+			List<FormatChange> formatChanges = util.replaceFormat(handler, source.formatConfig(handler),
+					new ByteArrayInputStream(before), new ByteArrayOutputStream(before.length + 1024));
+			for ( FormatChange change : formatChanges ) {
+				changes.add(new PlannedChange(source.getFile(), targetPath, PlannedChange.Type.PROPERTY,
+						change.getPath(), change.getOldValue(), change.getNewValue()));
+			}
+			return;
+		}
+		if(util.isXmlFile(targetPath)){
+			String oldValue = util.findXmlElement(new ByteArrayInputStream(before));
+			String newValue = util.findXmlElement(new ByteArrayInputStream(after));
+			changes.add(new PlannedChange(source.getFile(), targetPath, PlannedChange.Type.ELEMENT,
+					util.getXmlElementKey(), oldValue, newValue));
+			return;
+		}
+		CommentedProperties oldProperties = new CommentedProperties();
+		oldProperties.load(new ByteArrayInputStream(before), CharsetSniffer.sniff(before, 0, before.length).name());
+		CommentedProperties newProperties = new CommentedProperties();
+		newProperties.load(new ByteArrayInputStream(after), CharsetSniffer.sniff(after, 0, after.length).name());
+		for ( String key : source.properties().keySet() ) {
+			String oldValue = oldProperties.getProperty(key);
+			String newValue = newProperties.getProperty(key);
+			if(oldValue == null ? newValue != null : !oldValue.equals(newValue)){
+				changes.add(new PlannedChange(source.getFile(), targetPath, PlannedChange.Type.PROPERTY, key, oldValue, newValue));
+			}
+		}
+	}
+
+	/**
+	 * 按文件内容判断的字符集解码（见CharsetSniffer），GBK文件的diff不会乱码
+	 */
+	private static String decode(byte[] bytes) {
+		return new String(bytes, CharsetSniffer.sniff(bytes, 0, bytes.length));
+	}
+
+	private static TargetPlan failed(Target target, ConfigSource[] sources, String msg) {
+		TargetPlan plan = new TargetPlan(target);
+		for ( int index : target.indexes ) {
+			plan.results.add(new ApplyResult(sources[index].getFile(), target.resultPath, ApplyResult.Status.FAILED, msg, 0L));
+		}
+		return plan;
+	}
+
+	private static class Target {
+		/** 相对项目目录或war包的路径，用于diff */
+		final String path;
+		final String resultPath;
+		final File file;
+		final ZipFile zipFile;
+		final ZipEntry entry;
+		final List<Integer> indexes = new ArrayList<Integer>();
+
+		Target(String path, String resultPath, File file, ZipFile zipFile, ZipEntry entry) {
+			this.path = path;
+			this.resultPath = resultPath;
+			this.file = file;
+			this.zipFile = zipFile;
+			this.entry = entry;
+		}
+
+		byte[] read() throws IOException {
+			if(file != null){
+				return Files.readAllBytes(file.toPath());
+			}
+			InputStream in = zipFile.getInputStream(entry);
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(32, (int) entry.getSize()));
+				byte[] buf = new byte[8192];
+				int n;
+				while ((n = in.read(buf)) > 0) {
+					out.write(buf, 0, n);
+				}
+				return out.toByteArray();
+			}
+			finally {
+				in.close();
+			}
+		}
+	}
+
+	private static class TargetPlan {
+		final Target target;
+		final List<ApplyResult> results = new ArrayList<ApplyResult>();
+		final List<PlannedChange> changes = new ArrayList<PlannedChange>();
+		String diff = "";
+
+		TargetPlan(Target target) {
+			this.target = target;
+		}
+	}
+
+}
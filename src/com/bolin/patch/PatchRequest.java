@@ -0,0 +1,105 @@
+package com.bolin.patch;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * PatchRequest
+ * PatchEngine的一次替换请求
+ *
+ * 请求只在提交给PatchEngine之前修改，不在多个线程中共享。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class PatchRequest {
+
+	private final File project;
+
+	private final File[] configFiles;
+
+	private boolean dryRun = false;
+
+	private boolean collectChanges = false;
+
+	private ApplyEngine.Listener listener;
+
+	/**
+	 * @param project 项目目录或war包
+	 * @param configFiles 配置文件
+	 */
+	public PatchRequest(File project, File[] configFiles) {
+		super();
+		this.project = project;
+		this.configFiles = configFiles == null ? new File[0] : configFiles.clone();
+	}
+
+	/**
+	 * 使用配置文件目录中的所有文件，按文件名排序
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param project 项目目录或war包
+	 * @param configDir 配置文件目录
+	 * @return
+	 */
+	public static PatchRequest forConfigDir(File project, File configDir) {
+		File[] files = configDir.listFiles();
+		if(files != null){
+			Arrays.sort(files);
+		}
+		return new PatchRequest(project, files);
+	}
+
+	public File getProject() {
+		return project;
+	}
+
+	public File[] getConfigFiles() {
+		return configFiles.clone();
+	}
+
+	public boolean isDryRun() {
+		return dryRun;
+	}
+
+	/**
+	 * 只预览，不修改项目，结果中包含修改清单和diff
+	 * @param dryRun
+	 * @return
+	 */
+	public PatchRequest setDryRun(boolean dryRun) {
+		this.dryRun = dryRun;
+		return this;
+	}
+
+	public boolean isCollectChanges() {
+		return collectChanges;
+	}
+
+	/**
+	 * 替换前先在内存中计算修改清单和diff，放到结果中，需要多读一遍项目文件
+	 * @param collectChanges
+	 * @return
+	 */
+	public PatchRequest setCollectChanges(boolean collectChanges) {
+		this.collectChanges = collectChanges;
+		return this;
+	}
+
+	public ApplyEngine.Listener getListener() {
+		return listener;
+	}
+
+	/**
+	 * 替换进度回调，只用于项目目录，可为null
+	 * @param listener
+	 * @return
+	 */
+	public PatchRequest setListener(ApplyEngine.Listener listener) {
+		this.listener = listener;
+		return this;
+	}
+
+}
@@ -0,0 +1,139 @@
+package com.bolin.patch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * PatchResult
+ * PatchEngine一次替换的结果
+ *
+ * 每个配置文件的结果（找到的项目文件、状态、耗时、出错原因）见getResults；
+ * 请求了修改清单或只预览时，getChanges和getDiff为替换会产生的修改。
+ * 整个项目无法处理（如war包读取出错）时getError不为null，getResults为空。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class PatchResult {
+
+	private final File project;
+
+	private final boolean dryRun;
+
+	private final ApplyReport report;
+
+	private final List<PlannedChange> changes;
+
+	private final String diff;
+
+	private final String error;
+
+	private final long millis;
+
+	public PatchResult(File project, boolean dryRun, ApplyReport report, List<PlannedChange> changes,
+			String diff, String error, long millis) {
+		super();
+		this.project = project;
+		this.dryRun = dryRun;
+		this.report = report;
+		this.changes = changes == null ? Collections.<PlannedChange>emptyList()
+				: Collections.unmodifiableList(new ArrayList<PlannedChange>(changes));
+		this.diff = diff;
+		this.error = error;
+		this.millis = millis;
+	}
+
+	public File getProject() {
+		return project;
+	}
+
+	/**
+	 * 是否只是预览，项目未被修改
+	 * @return
+	 */
+	public boolean isDryRun() {
+		return dryRun;
+	}
+
+	/**
+	 * 汇总结果，出错时为null
+	 * @return
+	 */
+	public ApplyReport getReport() {
+		return report;
+	}
+
+	/**
+	 * 每个配置文件的结果，顺序与请求中的配置文件一致
+	 * @return
+	 */
+	public List<ApplyResult> getResults() {
+		if(report == null){
+			return Collections.emptyList();
+		}
+		return report.getResults();
+	}
+
+	/**
+	 * 修改清单，未请求时为空
+	 * @return
+	 */
+	public List<PlannedChange> getChanges() {
+		return changes;
+	}
+
+	/**
+	 * 所有项目文件的unified diff，未请求时为null
+	 * @return
+	 */
+	public String getDiff() {
+		return diff;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * 项目级错误和所有未成功的配置文件的原因
+	 * @return
+	 */
+	public List<String> getErrors() {
+		List<String> errors = new ArrayList<String>();
+		if(error != null){
+			errors.add(error);
+		}
+		for ( ApplyResult result : getResults() ) {
+			if(!result.isSuccess()){
+				errors.add(result.getConfigFile().getName() + "：" + result.getStatus()
+						+ (result.getMsg() == null ? "" : "，" + result.getMsg()));
+			}
+		}
+		return errors;
+	}
+
+	/**
+	 * 总耗时（毫秒），包括查找和计算修改清单
+	 * @return
+	 */
+	public long getMillis() {
+		return millis;
+	}
+
+	public boolean isSuccess() {
+		return error == null && report != null && report.isSuccess();
+	}
+
+	@Override
+	public String toString() {
+		String name = project == null ? "" : project.getName();
+		if(error != null){
+			return name + "：出错，" + error;
+		}
+		return name + "：" + (dryRun ? "预览，" : "") + report + "，修改项" + changes.size() + "，总耗时" + millis + "ms";
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.bolin.patch;
+
+import java.io.File;
+
+/**
+ * PlannedChange
+ * 预览替换时的一处修改：properties的一个配置项，或xml的一个元素
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class PlannedChange {
+
+	public enum Type {
+		/** properties配置项 */
+		PROPERTY,
+		/** xml元素 */
+		ELEMENT
+	}
+
+	private final File configFile;
+
+	private final String targetFile;
+
+	private final Type type;
+
+	private final String key;
+
+	private final String oldValue;
+
+	private final String newValue;
+
+	public PlannedChange(File configFile, String targetFile, Type type, String key, String oldValue, String newValue) {
+		super();
+		this.configFile = configFile;
+		this.targetFile = targetFile;
+		this.type = type;
+		this.key = key;
+		this.oldValue = oldValue;
+		this.newValue = newValue;
+	}
+
+	public File getConfigFile() {
+		return configFile;
+	}
+
+	/**
+	 * 要修改的项目文件，相对项目目录或war包
+	 * @return
+	 */
+	public String getTargetFile() {
+		return targetFile;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * 配置项名称，或元素描述如filter[filter-name=CASFilter]
+	 * @return
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * 原来的值，新增时为null
+	 * @return
+	 */
+	public String getOldValue() {
+		return oldValue;
+	}
+
+	public String getNewValue() {
+		return newValue;
+	}
+
+	@Override
+	public String toString() {
+		return targetFile + " " + key + ": " + oldValue + " -> " + newValue;
+	}
+
+}
@@ -0,0 +1,188 @@
+package com.bolin.patch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * PruneReport
+ * 删除jar包的结果，顺序与jar包的文件名顺序一致
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class PruneReport {
+
+	public enum Status {
+		/** 已删除 */
+		REMOVED,
+		/** 匹配规则，预览时未删除 */
+		MATCHED,
+		/** 不匹配任何规则，保留 */
+		KEPT,
+		/** 读取或删除出错 */
+		FAILED,
+		/** 已取消，未检查 */
+		CANCELLED
+	}
+
+	/**
+	 * 单个jar包的结果
+	 */
+	public static class JarResult {
+
+		private final File jar;
+
+		private final long bytes;
+
+		private final Status status;
+
+		private final String rule;
+
+		private final String coordinate;
+
+		private final String msg;
+
+		public JarResult(File jar, long bytes, Status status, String rule, String coordinate, String msg) {
+			super();
+			this.jar = jar;
+			this.bytes = bytes;
+			this.status = status;
+			this.rule = rule;
+			this.coordinate = coordinate;
+			this.msg = msg;
+		}
+
+		public File getJar() {
+			return jar;
+		}
+
+		/**
+		 * jar包大小（字节）
+		 * @return
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		/**
+		 * 匹配的规则，不匹配时为null
+		 * @return
+		 */
+		public String getRule() {
+			return rule;
+		}
+
+		/**
+		 * jar包的Maven坐标groupId:artifactId:version，未读取或没有pom.properties时为null
+		 * @return
+		 */
+		public String getCoordinate() {
+			return coordinate;
+		}
+
+		public String getMsg() {
+			return msg;
+		}
+
+		@Override
+		public String toString() {
+			return jar.getName() + (coordinate != null ? "（" + coordinate + "）" : "") + " " + msg;
+		}
+	}
+
+	private final List<JarResult> results;
+
+	private final boolean dryRun;
+
+	private final long millis;
+
+	public PruneReport(List<JarResult> results, boolean dryRun, long millis) {
+		super();
+		this.results = Collections.unmodifiableList(new ArrayList<JarResult>(results));
+		this.dryRun = dryRun;
+		this.millis = millis;
+	}
+
+	public List<JarResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * 是否只预览，未删除文件
+	 * @return
+	 */
+	public boolean isDryRun() {
+		return dryRun;
+	}
+
+	public long getMillis() {
+		return millis;
+	}
+
+	public int count(Status status) {
+		int count = 0;
+		for ( JarResult result : results ) {
+			if(result.getStatus() == status) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * 已删除（预览时为将删除）的jar包总大小
+	 * @return
+	 */
+	public long getBytesRemoved() {
+		long bytes = 0L;
+		for ( JarResult result : results ) {
+			if(result.getStatus() == Status.REMOVED || result.getStatus() == Status.MATCHED){
+				bytes += result.getBytes();
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * 所有jar包的总大小
+	 * @return
+	 */
+	public long getBytesTotal() {
+		long bytes = 0L;
+		for ( JarResult result : results ) {
+			bytes += result.getBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * 没有出错或被取消的jar包
+	 * @return
+	 */
+	public boolean isSuccess() {
+		return count(Status.FAILED) == 0 && count(Status.CANCELLED) == 0;
+	}
+
+	@Override
+	public String toString() {
+		int removed = count(Status.REMOVED) + count(Status.MATCHED);
+		return "共" + results.size() + "个jar包，" + (dryRun ? "将删除" : "删除") + removed
+				+ "，保留" + count(Status.KEPT)
+				+ "，失败" + count(Status.FAILED)
+				+ (count(Status.CANCELLED) > 0 ? "，取消" + count(Status.CANCELLED) : "")
+				+ "，" + (dryRun ? "可减少" : "减少") + formatBytes(getBytesRemoved()) + "/" + formatBytes(getBytesTotal())
+				+ "，耗时" + millis + "ms";
+	}
+
+	static String formatBytes(long bytes) {
+		if(bytes < 1024L) return bytes + "B";
+		if(bytes < 1024L * 1024L) return String.format("%.1fKB", bytes / 1024.0);
+		return String.format("%.1fMB", bytes / (1024.0 * 1024.0));
+	}
+
+}
@@ -0,0 +1,153 @@
+package com.bolin.utils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * AtomicFiles
+ * 先写临时文件再改名替换原文件，避免写到一半时留下不完整的文件
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class AtomicFiles {
+
+	private AtomicFiles() {
+	}
+
+	/**
+	 * 与目标文件同目录的临时文件
+	 * @param target
+	 * @return
+	 */
+	public static File tempFileFor(File target) {
+		return new File(target.getAbsoluteFile().getParentFile(), "." + target.getName() + ".tmp");
+	}
+
+	/**
+	 * 用临时文件替换目标文件，文件系统支持时为原子操作
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param tmpFile 临时文件
+	 * @param target 目标文件
+	 * @throws IOException
+	 */
+	public static void replace(File tmpFile, File target) throws IOException {
+		try {
+			Files.move(tmpFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmpFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * 用临时文件替换目标文件，并把临时文件的大小记录为COMMIT阶段写入的字节数
+	 * 用于不经过StagedWrites直接替换的文件
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param tmpFile 临时文件
+	 * @param target 目标文件
+	 * @throws IOException
+	 */
+	public static void commit(File tmpFile, File target) throws IOException {
+		long start = PatchMetrics.start();
+		long bytes = tmpFile.length();
+		replace(tmpFile, target);
+		PatchMetrics.record(PatchMetrics.Phase.COMMIT, start, 0L, bytes, 1L);
+	}
+
+	/**
+	 * 用临时文件替换目标文件，内容相同时只删除临时文件，目标文件不变
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param tmpFile 临时文件
+	 * @param target 目标文件
+	 * @return 是否替换了目标文件
+	 * @throws IOException
+	 */
+	public static boolean replaceIfChanged(File tmpFile, File target) throws IOException {
+		if(sameContent(tmpFile, target)){
+			tmpFile.delete();
+			return false;
+		}
+		replace(tmpFile, target);
+		return true;
+	}
+
+	/**
+	 * 两个文件的内容是否相同
+	 * @param a
+	 * @param b
+	 * @return
+	 * @throws IOException
+	 */
+	public static boolean sameContent(File a, File b) throws IOException {
+		if(a.length() != b.length()) return false;
+		InputStream in = new BufferedInputStream(new FileInputStream(a), 65536);
+		try {
+			InputStream other = new BufferedInputStream(new FileInputStream(b), 65536);
+			try {
+				int c;
+				do {
+					c = in.read();
+					if(c != other.read()) return false;
+				} while (c >= 0);
+				return true;
+			}
+			finally {
+				other.close();
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * 将文件内容刷到磁盘
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void fsync(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+		try {
+			channel.force(true);
+		}
+		finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * 将目录项（改名、新建）刷到磁盘，不支持打开目录的平台（如Windows）上忽略
+	 * @param dir
+	 */
+	public static void fsyncDirectory(File dir) {
+		try {
+			FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ);
+			try {
+				channel.force(true);
+			}
+			finally {
+				channel.close();
+			}
+		}
+		catch (IOException e) {
+			//不支持
+		}
+	}
+
+}
@@ -0,0 +1,226 @@
+package com.bolin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * BytePropertiesReader
+ * 把properties文件一次读入内存，在原始字节上查找行和分隔符
+ *
+ * 不使用内存映射：映射在被回收前一直占用文件，Windows上此时无法改名替换该文件，
+ * 而读取的文件往往随后就要被替换。
+ *
+ * 与CommentedProperties.LineReader的规则相同：跳过空行和行首空白，行尾奇数个反斜杠时续行。
+ * 逻辑行以字节形式保存在lineBuf中，只有key、value和注释的片段才按字符集解码，
+ * 纯ASCII且没有转义的片段直接生成字符串。
+ *
+ * 只适用于ASCII字符不会出现在多字节字符中的字符集（UTF-8、ISO-8859-1等），
+ * GBK等字符集的第二个字节可能是反斜杠，需使用LineReader。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+final class BytePropertiesReader {
+
+	private final byte[] in;
+
+	/**
+	 * 一次读入内存的最大文件大小，更大的文件逐行读取
+	 */
+	static final int MAX_SIZE = 256 * 1024 * 1024;
+
+	private final int inLimit;
+
+	private int inOff = 0;
+
+	private final CharsetDecoder decoder;
+
+	private final PropertiesCodec codec = new PropertiesCodec();
+
+	byte[] lineBuf = new byte[1024];
+
+	private ByteBuffer lineBytes = ByteBuffer.wrap(lineBuf);
+
+	private CharBuffer chars = CharBuffer.allocate(1024);
+
+	private BytePropertiesReader(byte[] in, int inLimit, Charset charset) {
+		this.in = in;
+		this.inLimit = inLimit;
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * 是否可以按字节查找行和分隔符
+	 * @param charset
+	 * @return
+	 */
+	static boolean supports(Charset charset) {
+		String name = charset.name();
+		return "UTF-8".equals(name) || "ISO-8859-1".equals(name) || "US-ASCII".equals(name);
+	}
+
+	/**
+	 * 读取文件，超过MAX_SIZE时返回null，由调用方逐行读取
+	 * @param file
+	 * @param charset
+	 * @return
+	 * @throws IOException
+	 */
+	static BytePropertiesReader open(File file, Charset charset) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if(size > MAX_SIZE) return null;
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining()) {
+				if(channel.read(buffer) < 0) break;
+			}
+			return new BytePropertiesReader(buffer.array(), buffer.position(), charset);
+		}
+		finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * 读取一个逻辑行到lineBuf中
+	 * @return 行长度，文件结束时返回-1
+	 */
+	int readLine() {
+		int len = 0;
+		byte c;
+
+		boolean skipWhiteSpace = true;
+		boolean appendedLineBegin = false;
+		boolean precedingBackslash = false;
+		boolean skipLF = false;
+
+		while (true) {
+			if (inOff >= inLimit) {
+				return len == 0 ? -1 : len;
+			}
+			c = in[inOff++];
+			if (skipLF) {
+				skipLF = false;
+				if (c == '\n') {
+					continue;
+				}
+			}
+			if (skipWhiteSpace) {
+				if (c == ' ' || c == '\t' || c == '\f') {
+					continue;
+				}
+				if (!appendedLineBegin && (c == '\r' || c == '\n')) {
+					continue;
+				}
+				skipWhiteSpace = false;
+				appendedLineBegin = false;
+			}
+
+			if (c != '\n' && c != '\r') {
+				if (len == lineBuf.length) {
+					grow();
+				}
+				lineBuf[len++] = c;
+				//flip the preceding backslash flag
+				if (c == '\\') {
+					precedingBackslash = !precedingBackslash;
+				} else {
+					precedingBackslash = false;
+				}
+			}
+			else {
+				// reached EOL
+				if (len == 0) {
+					skipWhiteSpace = true;
+					continue;
+				}
+				if (inOff >= inLimit) {
+					return len;
+				}
+				if (precedingBackslash) {
+					len -= 1;
+					//skip the leading whitespace characters in following line
+					skipWhiteSpace = true;
+					appendedLineBegin = true;
+					precedingBackslash = false;
+					if (c == '\r') {
+						skipLF = true;
+					}
+				} else {
+					return len;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 解码并反转义lineBuf中的片段
+	 * @param off
+	 * @param len
+	 * @return
+	 */
+	String decode(int off, int len) {
+		if(isPlainAscii(off, len)){
+			return new String(lineBuf, off, len, PropertiesCodec.ISO_8859_1);
+		}
+		CharBuffer decoded = decodeChars(off, len);
+		return codec.decode(decoded.array(), 0, decoded.limit());
+	}
+
+	/**
+	 * 解码并反转义lineBuf中的片段，结果追加到sb
+	 * @param off
+	 * @param len
+	 * @param sb
+	 */
+	void decode(int off, int len, StringBuilder sb) {
+		CharBuffer decoded = decodeChars(off, len);
+		codec.decode(decoded.array(), 0, decoded.limit(), sb);
+	}
+
+	private boolean isPlainAscii(int off, int len) {
+		byte[] buf = lineBuf;
+		for ( int i = off, end = off + len; i < end; i++ ) {
+			byte b = buf[i];
+			if(b < 0 || b == '\\') return false;
+		}
+		return true;
+	}
+
+	private CharBuffer decodeChars(int off, int len) {
+		int maxChars = (int) Math.ceil(len * (double) decoder.maxCharsPerByte());
+		if(chars.capacity() < maxChars){
+			chars = CharBuffer.allocate(Math.max(maxChars, chars.capacity() * 2));
+		}
+		lineBytes.limit(off + len).position(off);
+		chars.clear();
+		decoder.reset();
+		decoder.decode(lineBytes, chars, true);
+		decoder.flush(chars);
+		chars.flip();
+		return chars;
+	}
+
+	private void grow() {
+		int newLength = lineBuf.length * 2;
+		if (newLength < 0) {
+			newLength = Integer.MAX_VALUE;
+		}
+		byte[] buf = new byte[newLength];
+		System.arraycopy(lineBuf, 0, buf, 0, lineBuf.length);
+		lineBuf = buf;
+		lineBytes = ByteBuffer.wrap(lineBuf);
+	}
+
+}
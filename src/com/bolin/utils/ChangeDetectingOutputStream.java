@@ -0,0 +1,195 @@
+package com.bolin.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * ChangeDetectingOutputStream
+ * 写出的同时与原内容逐字节比较，判断内容是否有变化
+ *
+ * 构造时给定输出流时，所有内容照常写出；
+ * 使用forFile时，在出现第一个不同的字节之前不创建输出文件，出现不同后先复制原文件中相同的部分，
+ * 内容完全相同时不产生任何写操作。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class ChangeDetectingOutputStream extends OutputStream {
+
+	private final InputStream original;
+
+	private final byte[] compareBuf = new byte[8192];
+
+	private OutputStream out;
+
+	/** 与原内容相同的字节数 */
+	private long matched = 0;
+
+	private boolean changed = false;
+
+	private boolean finished = false;
+
+	/**
+	 * @param original 原内容，由调用方关闭
+	 * @param out 输出流，为null时出现变化后调用openOutput
+	 */
+	public ChangeDetectingOutputStream(InputStream original, OutputStream out) {
+		super();
+		this.original = original;
+		this.out = out;
+	}
+
+	/**
+	 * 与原文件比较，有变化时才写出到output
+	 * @param originalFile 原文件
+	 * @param output 输出文件，内容不变时不会创建
+	 * @return
+	 * @throws IOException
+	 */
+	public static ChangeDetectingOutputStream forFile(final File originalFile, final File output) throws IOException {
+		final InputStream in = new BufferedInputStream(new FileInputStream(originalFile), 65536);
+		return new ChangeDetectingOutputStream(in, null) {
+
+			@Override
+			protected OutputStream openOutput(long prefixLength) throws IOException {
+				FileOutputStream fileOut = new FileOutputStream(output);
+				if(prefixLength > 0){
+					copyPrefix(originalFile, fileOut.getChannel(), prefixLength);
+				}
+				return new BufferedOutputStream(fileOut, 65536);
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				}
+				finally {
+					in.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * 出现变化时打开输出流，并写入原内容中前prefixLength个相同的字节
+	 * @param prefixLength
+	 * @return
+	 * @throws IOException
+	 */
+	protected OutputStream openOutput(long prefixLength) throws IOException {
+		throw new IllegalStateException("未指定输出流");
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if(!changed){
+			int compared = compare(b, off, len);
+			if(changed && out == null){
+				out = openOutput(matched);
+				out.write(b, off + compared, len - compared);
+				return;
+			}
+		}
+		if(out != null){
+			out.write(b, off, len);
+		}
+	}
+
+	/**
+	 * 比较到第一个不同的字节为止，返回相同的字节数
+	 */
+	private int compare(byte[] b, int off, int len) throws IOException {
+		int compared = 0;
+		while (compared < len) {
+			int n = original.read(compareBuf, 0, Math.min(compareBuf.length, len - compared));
+			if(n < 0){
+				changed = true;
+				return compared;
+			}
+			for ( int i = 0; i < n; i++ ) {
+				if(compareBuf[i] != b[off + compared + i]){
+					changed = true;
+					matched += i;
+					return compared + i;
+				}
+			}
+			compared += n;
+			matched += n;
+		}
+		return compared;
+	}
+
+	/**
+	 * 写出结束，检查原内容是否还有剩余
+	 * @return 内容是否有变化
+	 * @throws IOException
+	 */
+	public boolean finish() throws IOException {
+		if(!finished){
+			finished = true;
+			if(!changed && original.read() >= 0){
+				//原内容更长
+				changed = true;
+				if(out == null){
+					out = openOutput(matched);
+				}
+			}
+			if(out != null){
+				out.flush();
+			}
+		}
+		return changed;
+	}
+
+	public boolean isChanged() {
+		return changed;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if(out != null){
+			out.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		finish();
+		if(out != null){
+			out.close();
+		}
+	}
+
+	private static void copyPrefix(File file, FileChannel target, long length) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			long position = 0;
+			while (position < length) {
+				long transferred = channel.transferTo(position, length - position, target);
+				if(transferred <= 0){
+					throw new IOException("文件读取不完整：" + file);
+				}
+				position += transferred;
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+
+}
@@ -0,0 +1,165 @@
+package com.bolin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * ChannelWriter
+ * 字符直接编码到直接内存ByteBuffer中，满了再用FileChannel写出
+ *
+ * 写入的字符先复制到固定大小的字符缓冲区，不为每次write生成包装对象；
+ * 直接内存缓冲区打开时从共享的缓冲池取出，关闭时放回，与写出所在的线程无关，
+ * 线程池每次新建或使用虚拟线程时也能重复使用；缓冲池已满时多出的缓冲区直接丢弃。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+final class ChannelWriter extends Writer {
+
+	private static final int BUFFER_SIZE = 65536;
+
+	/** 缓冲池最多保留的缓冲区数，同时写出的文件数一般不超过CPU核数 */
+	private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+	private static final BlockingQueue<ByteBuffer> BUFFERS = new ArrayBlockingQueue<ByteBuffer>(POOL_SIZE);
+
+	private final FileChannel channel;
+
+	private final CharsetEncoder encoder;
+
+	private ByteBuffer bytes;
+
+	private final char[] charBuf = new char[8192];
+
+	private final CharBuffer chars = CharBuffer.wrap(charBuf);
+
+	private boolean closed = false;
+
+	/**
+	 * 创建或清空文件
+	 * @param file
+	 * @param charset
+	 * @throws IOException
+	 */
+	ChannelWriter(File file, Charset charset) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		this.encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		ByteBuffer buffer = BUFFERS.poll();
+		if(buffer == null){
+			buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+		buffer.clear();
+		this.bytes = buffer;
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		ensureOpen();
+		if(!chars.hasRemaining()){
+			encode(false);
+		}
+		chars.put((char) c);
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			if(!chars.hasRemaining()){
+				encode(false);
+			}
+			int n = Math.min(len, chars.remaining());
+			chars.put(cbuf, off, n);
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			if(!chars.hasRemaining()){
+				encode(false);
+			}
+			int n = Math.min(len, chars.remaining());
+			int position = chars.position();
+			str.getChars(off, off + n, charBuf, position);
+			chars.position(position + n);
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		encode(false);
+		writeBytes();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(closed) return;
+		try {
+			encode(true);
+			while (encoder.flush(bytes) == CoderResult.OVERFLOW) {
+				writeBytes();
+			}
+			writeBytes();
+		}
+		finally {
+			closed = true;
+			//放回缓冲池，之后不能再使用
+			BUFFERS.offer(bytes);
+			bytes = null;
+			channel.close();
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if(closed){
+			throw new IOException("文件已关闭");
+		}
+	}
+
+	/**
+	 * 编码字符缓冲区中的内容，不完整的代理对留到下一次
+	 */
+	private void encode(boolean endOfInput) throws IOException {
+		chars.flip();
+		while (true) {
+			CoderResult result = encoder.encode(chars, bytes, endOfInput);
+			if(result.isOverflow()){
+				writeBytes();
+			}else{
+				break;
+			}
+		}
+		chars.compact();
+	}
+
+	private void writeBytes() throws IOException {
+		bytes.flip();
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+		bytes.clear();
+	}
+
+}
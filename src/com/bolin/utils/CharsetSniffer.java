@@ -0,0 +1,178 @@
+package com.bolin.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * CharsetSniffer
+ * 判断文件的字符集：有BOM时按BOM，全部是合法的UTF-8（包括纯ASCII）时为UTF-8，否则为GBK
+ *
+ * 只检查字节不解码，可以分块调用update边读边判断，不需要把整个文件读入内存。
+ * 一个实例只能判断一个文件，只能在一个线程中使用。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public final class CharsetSniffer {
+
+	public static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	public static final Charset GBK = Charset.forName("GBK");
+
+	public static final Charset UTF_16BE = Charset.forName("UTF-16BE");
+
+	public static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+
+	private final byte[] head = new byte[3];
+
+	private int headLen = 0;
+
+	private boolean ascii = true;
+
+	private boolean utf8 = true;
+
+	/**
+	 * 当前字符还需要的后续字节数
+	 */
+	private int pending = 0;
+
+	/**
+	 * 下一个后续字节的范围，排除超长编码、代理区和超过U+10FFFF的字符
+	 */
+	private int lower = 0x80;
+
+	private int upper = 0xBF;
+
+	/**
+	 * 检查下一块内容
+	 * @param b
+	 * @param off
+	 * @param len
+	 */
+	public void update(byte[] b, int off, int len) {
+		for ( int i = off; i < off + len && headLen < head.length; i++ ) {
+			head[headLen++] = b[i];
+		}
+		if(!utf8) return;
+		int end = off + len;
+		for ( int i = off; i < end; i++ ) {
+			int c = b[i] & 0xff;
+			if(pending > 0){
+				if(c < lower || c > upper){
+					utf8 = false;
+					return;
+				}
+				lower = 0x80;
+				upper = 0xBF;
+				pending--;
+				continue;
+			}
+			if(c < 0x80) continue;
+			ascii = false;
+			if(c >= 0xC2 && c <= 0xDF){
+				pending = 1;
+			}else if(c >= 0xE0 && c <= 0xEF){
+				pending = 2;
+				if(c == 0xE0){
+					lower = 0xA0;
+				}else if(c == 0xED){
+					upper = 0x9F;
+				}
+			}else if(c >= 0xF0 && c <= 0xF4){
+				pending = 3;
+				if(c == 0xF0){
+					lower = 0x90;
+				}else if(c == 0xF4){
+					upper = 0x8F;
+				}
+			}else{
+				utf8 = false;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 目前为止是否都是ASCII字符
+	 * @return
+	 */
+	public boolean isAscii() {
+		return ascii;
+	}
+
+	/**
+	 * 判断结果，调用时视为已到文件末尾
+	 * @return
+	 */
+	public Charset getCharset() {
+		int bom = bomLength(head, headLen);
+		if(bom > 0){
+			return bomCharset(head);
+		}
+		return utf8 && pending == 0 ? UTF_8 : GBK;
+	}
+
+	/**
+	 * 文件开头的BOM长度，没有时为0
+	 * @param b 文件开头的内容
+	 * @param len 长度
+	 * @return
+	 */
+	public static int bomLength(byte[] b, int len) {
+		if(len >= 3 && (b[0] & 0xff) == 0xEF && (b[1] & 0xff) == 0xBB && (b[2] & 0xff) == 0xBF){
+			return 3;
+		}
+		if(len >= 2 && (((b[0] & 0xff) == 0xFE && (b[1] & 0xff) == 0xFF) || ((b[0] & 0xff) == 0xFF && (b[1] & 0xff) == 0xFE))){
+			return 2;
+		}
+		return 0;
+	}
+
+	/**
+	 * BOM对应的字符集，b以BOM开头
+	 */
+	private static Charset bomCharset(byte[] b) {
+		if((b[0] & 0xff) == 0xEF) return UTF_8;
+		return (b[0] & 0xff) == 0xFE ? UTF_16BE : UTF_16LE;
+	}
+
+	/**
+	 * 判断内容的字符集
+	 * @param b
+	 * @param off
+	 * @param len
+	 * @return
+	 */
+	public static Charset sniff(byte[] b, int off, int len) {
+		CharsetSniffer sniffer = new CharsetSniffer();
+		sniffer.update(b, off, len);
+		return sniffer.getCharset();
+	}
+
+	/**
+	 * 判断文件的字符集，读取整个文件，遇到非UTF-8的内容即停止
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static Charset sniff(File file) throws IOException {
+		CharsetSniffer sniffer = new CharsetSniffer();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buf = new byte[65536];
+			int n;
+			while ((n = in.read(buf)) >= 0 && sniffer.utf8) {
+				sniffer.update(buf, 0, n);
+			}
+		}
+		finally {
+			in.close();
+		}
+		return sniffer.getCharset();
+	}
+
+}
@@ -10,13 +10,15 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.AbstractSet;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Properties;
 import java.util.Set;
 
@@ -42,27 +44,29 @@ import java.util.Set;
 public class CommentedProperties{
 
 	/**
-	 * 内部属性表
+	 * 内部属性表，key、value和comment保存在同一个表中，
+	 * 按插入顺序排列，同时利用这个顺序来保证key的顺序。
 	 */
-	private final Properties props;
+	private final EntryTable table = new EntryTable();
 
 	/**
-	 * 保存key与comment的映射，
-	 * 同时利用这个映射来保证key的顺序。
+	 * 默认属性表，getProperty在属性表中找不到时使用
 	 */
-	private final LinkedHashMap<String, String> keyCommentMap = new LinkedHashMap<String, String>();
-	private final LinkedHashSet<Object> keys = new LinkedHashSet<Object>();
+	private final Properties defaults;
+
+	private final Set<Object> keys = new KeySet();
 
 	private static final String BLANK = "";
 
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
 	public CommentedProperties() {
-		super();
-		props = new Properties();
+		this(null);
 	}
 
 	public CommentedProperties(Properties defaults) {
 		super();
-		props = new Properties(defaults);
+		this.defaults = defaults;
 	}
 	
 	public Enumeration<Object> keys() {
@@ -77,10 +81,10 @@ public class CommentedProperties{
         return keys;
     }
 	
-	public Set<String> stringPropertyNames() {
+	public synchronized Set<String> stringPropertyNames() {
         Set<String> set = new LinkedHashSet<String>();
-        for (Object key : this.keys) {
-            set.add((String) key);
+        for (int i = 0; i < table.size; i++) {
+            set.add(table.key(i));
         }
         return set;
     }
@@ -104,17 +108,11 @@ public class CommentedProperties{
 	 * @return
 	 */
 	public synchronized String setProperty(String key, String value, String comment){
-		Object oldValue = props.setProperty(key, value);
-		if(BLANK.equals(comment)){
-			if(!keyCommentMap.containsKey(key)){
-				keyCommentMap.put(key, comment);
-				keys.add(key);
-			}
-		}else{
-			keyCommentMap.put(key, comment);
-			keys.add(key);
+		if(key == null || value == null){
+			throw new NullPointerException();
 		}
-		return (String)oldValue;
+		//comment为空时保留原来的注释
+		return table.put(key, value, comment, !BLANK.equals(comment));
 	}
 	
 	/**
@@ -123,8 +121,12 @@ public class CommentedProperties{
 	 * @param key
 	 * @return
 	 */
-	public String getProperty(String key) {
-		return props.getProperty(key);
+	public synchronized String getProperty(String key) {
+		int i = table.indexOf(key);
+		if(i >= 0){
+			return table.value(i);
+		}
+		return defaults == null ? null : defaults.getProperty(key);
 	}
 
 	/**
@@ -136,7 +138,8 @@ public class CommentedProperties{
 	 * @return
 	 */
 	public String getProperty(String key, String defaultValue) {
-		return props.getProperty(key, defaultValue);
+		String value = getProperty(key);
+		return value == null ? defaultValue : value;
 	}
 
 	/**
@@ -179,9 +182,27 @@ public class CommentedProperties{
 	 * @throws IOException
 	 */
 	public synchronized void load(File file, String charset) throws IOException {
-		FileInputStream inputStream = new FileInputStream(file);
-		InputStreamReader reader = new InputStreamReader(inputStream, charset);
-		load0(new LineReader(reader));
+		long start = PatchMetrics.start();
+		try {
+			Charset cs = Charset.forName(charset);
+			if(BytePropertiesReader.supports(cs)){
+				BytePropertiesReader reader = BytePropertiesReader.open(file, cs);
+				if(reader != null){
+					load0(reader);
+					return;
+				}
+			}
+			FileInputStream inputStream = new FileInputStream(file);
+			try {
+				load0(new LineReader(new InputStreamReader(inputStream, cs)));
+			}
+			finally {
+				inputStream.close();
+			}
+		}
+		finally {
+			PatchMetrics.record(PatchMetrics.Phase.LOAD_PROPERTIES, start, file.length(), 0L, 1L);
+		}
 	}
 
 	/**
@@ -192,9 +213,7 @@ public class CommentedProperties{
 	 * @throws IOException
 	 */
 	public synchronized void load(File file) throws IOException {
-		FileInputStream inputStream = new FileInputStream(file);
-		InputStreamReader reader = new InputStreamReader(inputStream, "utf-8");
-		load0(new LineReader(reader));
+		load(file, "utf-8");
 	}
 	
 	/**
@@ -228,6 +247,26 @@ public class CommentedProperties{
 		store0(new BufferedWriter(new OutputStreamWriter(out, charset)),comment, true);
 	}
 
+	/**
+	 * 将属性表中的属性写到文件中，文件已存在时覆盖。
+	 * 编码结果直接写入FileChannel，不经过OutputStream和BufferedWriter。
+	 * @param file
+	 * @param charset
+	 * @param comment 属性表说明
+	 * @throws IOException
+	 */
+	public void store(File file, String charset, String comment) throws IOException {
+		long start = PatchMetrics.start();
+		ChannelWriter writer = new ChannelWriter(file, Charset.forName(charset));
+		try {
+			store0(writer, comment, true);
+		}
+		finally {
+			writer.close();
+			PatchMetrics.record(PatchMetrics.Phase.STORE_PROPERTIES, start, 0L, file.length(), 1L);
+		}
+	}
+
 	/**
 	 * 如果属性表中某个key对应的value值和参数value相同
 	 * 那么返回true，否则返回false。
@@ -235,8 +274,16 @@ public class CommentedProperties{
 	 * @param value
 	 * @return
 	 */
-	public boolean containsValue(String value) {
-		return props.containsValue(value);
+	public synchronized boolean containsValue(String value) {
+		if(value == null){
+			throw new NullPointerException();
+		}
+		for (int i = 0; i < table.size; i++) {
+			if(value.equals(table.value(i))){
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -245,33 +292,31 @@ public class CommentedProperties{
 	 * @param key
 	 * @return
 	 */
-	public boolean containsKey(String key) {
-		return props.containsKey(key);
+	public synchronized boolean containsKey(String key) {
+		return table.indexOf(key) >= 0;
 	}
 	
 	/**
 	 * 获取属性表中键值对数量
 	 * @return
 	 */
-	public int size() {
-		return props.size();
+	public synchronized int size() {
+		return table.size;
 	}
 
 	/**
 	 * 检查属性表是否为空
 	 * @return
 	 */
-	public boolean isEmpty() {
-		return props.isEmpty();
+	public synchronized boolean isEmpty() {
+		return table.size == 0;
 	}
 
 	/**
 	 * 清空属性表
 	 */
 	public synchronized void clear() {
-		props.clear();
-		keyCommentMap.clear();
-		keys.clear();
+		table.clear();
 	}
 
 	/**
@@ -305,13 +350,12 @@ public class CommentedProperties{
 	@Override
 	public synchronized String toString() {
 		StringBuffer buffer = new StringBuffer();
-		Iterator kvIter = keys.iterator();
 		buffer.append("[");
-		while(kvIter.hasNext()){
+		for (int i = 0; i < table.size; i++) {
 			buffer.append("{");
-			String key = (String) kvIter.next();
-			String val = getProperty(key);
-			String comment = keyCommentMap.get(key);
+			String key = table.key(i);
+			String val = table.value(i);
+			String comment = table.comment(i);
 			buffer.append("key="+key+",value="+val+",comment="+comment);
 			buffer.append("}");
 		}
@@ -320,25 +364,210 @@ public class CommentedProperties{
 	}
 
 	@Override
-	public boolean equals(Object o) {
+	public synchronized boolean equals(Object o) {
 		//不考虑注释说明是否相同
-		return props.equals(o);
+		if(o == this) return true;
+		if(o instanceof CommentedProperties){
+			CommentedProperties other = (CommentedProperties) o;
+			if(other.size() != table.size) return false;
+			for (int i = 0; i < table.size; i++) {
+				if(!table.value(i).equals(other.table.valueOf(table.key(i)))) return false;
+			}
+			return true;
+		}
+		if(o instanceof Map){
+			Map<?, ?> other = (Map<?, ?>) o;
+			if(other.size() != table.size) return false;
+			for (int i = 0; i < table.size; i++) {
+				if(!table.value(i).equals(other.get(table.key(i)))) return false;
+			}
+			return true;
+		}
+		return false;
 	}
 
 	@Override
-	public int hashCode() {
-		return props.hashCode();
+	public synchronized int hashCode() {
+		//与Hashtable相同
+		int h = 0;
+		for (int i = 0; i < table.size; i++) {
+			h += table.key(i).hashCode() ^ table.value(i).hashCode();
+		}
+		return h;
+	}
+
+	/*
+	 * key的只读视图，按插入顺序迭代
+	 */
+	private class KeySet extends AbstractSet<Object> {
+
+		@Override
+		public Iterator<Object> iterator() {
+			return new Iterator<Object>() {
+				private int next = 0;
+
+				@Override
+				public boolean hasNext() {
+					synchronized (CommentedProperties.this) {
+						return next < table.size;
+					}
+				}
+
+				@Override
+				public Object next() {
+					synchronized (CommentedProperties.this) {
+						if(next >= table.size){
+							throw new NoSuchElementException();
+						}
+						return table.key(next++);
+					}
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof String && containsKey((String) o);
+		}
+
+		@Override
+		public int size() {
+			return CommentedProperties.this.size();
+		}
+
+	}
+
+	/*
+	 * 按插入顺序保存key、value、comment的开放寻址表
+	 *
+	 * entries中每3个元素为一项（key, value, comment），按插入顺序连续存放；
+	 * slots为线性探测的散列表，保存项的序号加1，0表示空位。
+	 * 不支持删除单项，因此不需要删除标记。
+	 */
+	private static final class EntryTable {
+
+		private static final int STRIDE = 3;
+
+		private static final String[] EMPTY_ENTRIES = {};
+
+		private static final int[] EMPTY_SLOTS = {};
+
+		private String[] entries = EMPTY_ENTRIES;
+
+		private int[] slots = EMPTY_SLOTS;
+
+		int size;
+
+		String key(int i) {
+			return entries[i * STRIDE];
+		}
+
+		String value(int i) {
+			return entries[i * STRIDE + 1];
+		}
+
+		String comment(int i) {
+			return entries[i * STRIDE + 2];
+		}
+
+		String valueOf(String key) {
+			int i = indexOf(key);
+			return i < 0 ? null : value(i);
+		}
+
+		int indexOf(String key) {
+			if(size == 0 || key == null) return -1;
+			int mask = slots.length - 1;
+			int slot = spread(key.hashCode()) & mask;
+			while (true) {
+				int index = slots[slot] - 1;
+				if(index < 0) return -1;
+				if(key.equals(entries[index * STRIDE])) return index;
+				slot = (slot + 1) & mask;
+			}
+		}
+
+		/**
+		 * 新增或覆盖一项，新增的项放在最后
+		 * @param setComment 覆盖已有项时是否同时覆盖注释
+		 * @return 原来的value
+		 */
+		String put(String key, String value, String comment, boolean setComment) {
+			if((size + 1) * 3 > slots.length * 2){
+				resize();
+			}
+			int mask = slots.length - 1;
+			int slot = spread(key.hashCode()) & mask;
+			while (true) {
+				int index = slots[slot] - 1;
+				if(index < 0) break;
+				int base = index * STRIDE;
+				if(key.equals(entries[base])){
+					String oldValue = entries[base + 1];
+					entries[base + 1] = value;
+					if(setComment){
+						entries[base + 2] = comment;
+					}
+					return oldValue;
+				}
+				slot = (slot + 1) & mask;
+			}
+			int base = size * STRIDE;
+			if(base == entries.length){
+				int newLength = Math.max(8, size + (size >> 1)) * STRIDE;
+				String[] newEntries = new String[newLength];
+				System.arraycopy(entries, 0, newEntries, 0, entries.length);
+				entries = newEntries;
+			}
+			entries[base] = key;
+			entries[base + 1] = value;
+			entries[base + 2] = comment;
+			slots[slot] = ++size;
+			return null;
+		}
+
+		void clear() {
+			entries = EMPTY_ENTRIES;
+			slots = EMPTY_SLOTS;
+			size = 0;
+		}
+
+		/*
+		 * 散列表扩大一倍，装载因子不超过2/3
+		 */
+		private void resize() {
+			int[] newSlots = new int[Math.max(16, slots.length * 2)];
+			int mask = newSlots.length - 1;
+			for (int i = 0; i < size; i++) {
+				int slot = spread(entries[i * STRIDE].hashCode()) & mask;
+				while (newSlots[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				newSlots[slot] = i + 1;
+			}
+			slots = newSlots;
+		}
+
+		private static int spread(int h) {
+			return h ^ (h >>> 16);
+		}
+
 	}
 	
 	private void load0(LineReader lr) throws IOException {
-		char[] convtBuf = new char[1024];
+		PropertiesCodec codec = new PropertiesCodec();
 		int limit;
 		int keyLen;
 		int valueStart;
 		char c;
 		boolean hasSep;
 		boolean precedingBackslash;
-		StringBuffer buffer = new StringBuffer();
+		StringBuilder buffer = new StringBuilder();
 
 		while ((limit = lr.readLine()) >= 0) {
 			c = 0;
@@ -348,11 +577,10 @@ public class CommentedProperties{
 			//获取注释
 			c = lr.lineBuf[keyLen];
 			if(c == '#' || c == '!'){
-				String comment = loadConvert(lr.lineBuf, 1, limit - 1, convtBuf);
 				if(buffer.length() > 0){
-					buffer.append("\n");
+					buffer.append('\n');
 				}
-				buffer.append(comment);
+				codec.decode(lr.lineBuf, 1, limit - 1, buffer);
 				continue;
 			}
 			precedingBackslash = false;
@@ -385,12 +613,74 @@ public class CommentedProperties{
 				}
 				valueStart++;
 			}
-			String key = loadConvert(lr.lineBuf, 0, keyLen, convtBuf);
-			String value = loadConvert(lr.lineBuf, valueStart, limit - valueStart, convtBuf);
+			String key = codec.decode(lr.lineBuf, 0, keyLen);
+			String value = codec.decode(lr.lineBuf, valueStart, limit - valueStart);
 			//System.out.println(key + ":" + value);
-			setProperty(key, value, buffer.toString());
+			setProperty(key, value, buffer.length() == 0 ? BLANK : buffer.toString());
 			//reset buffer
-			buffer = new StringBuffer();
+			buffer.setLength(0);
+		}
+	}
+
+	/*
+	 * 与load0(LineReader)相同，在原始字节上查找分隔符，只解码key、value和注释
+	 */
+	private void load0(BytePropertiesReader lr) throws IOException {
+		int limit;
+		int keyLen;
+		int valueStart;
+		byte c;
+		boolean hasSep;
+		boolean precedingBackslash;
+		StringBuilder buffer = new StringBuilder();
+
+		while ((limit = lr.readLine()) >= 0) {
+			keyLen = 0;
+			valueStart = limit;
+			hasSep = false;
+			//获取注释
+			c = lr.lineBuf[keyLen];
+			if(c == '#' || c == '!'){
+				if(buffer.length() > 0){
+					buffer.append('\n');
+				}
+				lr.decode(1, limit - 1, buffer);
+				continue;
+			}
+			precedingBackslash = false;
+			while (keyLen < limit) {
+				c = lr.lineBuf[keyLen];
+				//need check if escaped.
+				if ((c == '=' ||  c == ':') && !precedingBackslash) {
+					valueStart = keyLen + 1;
+					hasSep = true;
+					break;
+				} else if ((c == ' ' || c == '\t' ||  c == '\f') && !precedingBackslash) {
+					valueStart = keyLen + 1;
+					break;
+				} 
+				if (c == '\\') {
+					precedingBackslash = !precedingBackslash;
+				} else {
+					precedingBackslash = false;
+				}
+				keyLen++;
+			}
+			while (valueStart < limit) {
+				c = lr.lineBuf[valueStart];
+				if (c != ' ' && c != '\t' &&  c != '\f') {
+					if (!hasSep && (c == '=' ||  c == ':')) {
+						hasSep = true;
+					} else {
+						break;
+					}
+				}
+				valueStart++;
+			}
+			String key = lr.decode(0, keyLen);
+			String value = lr.decode(valueStart, limit - valueStart);
+			setProperty(key, value, buffer.length() == 0 ? BLANK : buffer.toString());
+			buffer.setLength(0);
 		}
 	}
 
@@ -527,7 +817,7 @@ public class CommentedProperties{
 	 * Converts encoded &#92;uxxxx to unicode chars
 	 * and changes special saved chars to their original forms
 	 */
-	private String loadConvert (char[] in, int off, int len, char[] convtBuf) {
+	static String loadConvert (char[] in, int off, int len, char[] convtBuf) {
 		if (convtBuf.length < len) {
 			int newLen = len * 2;
 			if (newLen < 0) {
@@ -535,107 +825,55 @@ public class CommentedProperties{
 			} 
 			convtBuf = new char[newLen];
 		}
-		char aChar;
-		char[] out = convtBuf; 
-		int outLen = 0;
-		int end = off + len;
-
-		while (off < end) {
-			aChar = in[off++];
-			if (aChar == '\\') {
-				aChar = in[off++];   
-				if(aChar == 'u') {
-					// Read the xxxx
-					int value=0;
-					for (int i=0; i<4; i++) {
-						aChar = in[off++];  
-						switch (aChar) {
-						case '0': case '1': case '2': case '3': case '4':
-						case '5': case '6': case '7': case '8': case '9':
-							value = (value << 4) + aChar - '0';
-							break;
-						case 'a': case 'b': case 'c':
-						case 'd': case 'e': case 'f':
-							value = (value << 4) + 10 + aChar - 'a';
-							break;
-						case 'A': case 'B': case 'C':
-						case 'D': case 'E': case 'F':
-							value = (value << 4) + 10 + aChar - 'A';
-							break;
-						default:
-							throw new IllegalArgumentException(
-									"Malformed \\uxxxx encoding.");
-						}
-					}
-					out[outLen++] = (char)value;
-				} else {
-					if (aChar == 't') aChar = '\t'; 
-					else if (aChar == 'r') aChar = '\r';
-					else if (aChar == 'n') aChar = '\n';
-					else if (aChar == 'f') aChar = '\f'; 
-					out[outLen++] = aChar;
-				}
-			} else {
-				out[outLen++] = aChar;
-			}
-		}
-		return new String (out, 0, outLen);
+		int outLen = PropertiesCodec.decode(in, off, len, convtBuf);
+		return new String (convtBuf, 0, outLen);
 	}
 
 	private void store0(BufferedWriter bw, boolean escUnicode)
 			throws IOException{
 		synchronized (this) {
-			Iterator<Map.Entry<String, String>> kvIter = keyCommentMap.entrySet().iterator();
-			while(kvIter.hasNext()){
-				Map.Entry<String, String> entry = kvIter.next();
-				String key = entry.getKey();
-				String val = getProperty(key);
-				String comment = entry.getValue();
-				key = saveConvert(key, true, escUnicode);
-				/* No need to escape embedded and trailing spaces for value, hence
-				 * pass false to flag.
-				 */
-				val = saveConvert(val, false, escUnicode);
-				if(comment != null && !comment.equals(BLANK))
-					writeComments(bw, comment);
-				bw.write(key + "=" + val);
-				bw.newLine();
-			}
+			storeEntries(bw, escUnicode);
 		}
 		bw.flush();
 	}
 	
-	private void store0(BufferedWriter bw, String fileComment, boolean escUnicode) throws IOException{
+	private void store0(Writer bw, String fileComment, boolean escUnicode) throws IOException{
 		if (fileComment != null) {
             writeComments(bw, fileComment);
         }
-        bw.write("#" + new Date().toString());
-        bw.newLine();
+        bw.write('#');
+        bw.write(new Date().toString());
+        bw.write(LINE_SEPARATOR);
 		synchronized (this) {
-			Iterator<Map.Entry<String, String>> kvIter = keyCommentMap.entrySet().iterator();
-			while(kvIter.hasNext()){
-				Map.Entry<String, String> entry = kvIter.next();
-				String key = entry.getKey();
-				String val = getProperty(key);
-				String comment = entry.getValue();
-				key = saveConvert(key, true, escUnicode);
-				/* No need to escape embedded and trailing spaces for value, hence
-				 * pass false to flag.
-				 */
-				val = saveConvert(val, false, escUnicode);
-				if(comment != null && !comment.equals(BLANK))
-					writeComments(bw, comment);
-				//System.out.println(key + ":" + val);
-				bw.write(key + "=" + val);
-				bw.newLine();
-			}
+			storeEntries(bw, escUnicode);
 		}
 		bw.flush();
 	}
 
-	private static void writeComments(BufferedWriter bw, String comments) 
+	/*
+	 * key和value转义后直接写入bw，不拼接中间字符串
+	 */
+	private void storeEntries(Writer bw, boolean escUnicode) throws IOException {
+		PropertiesCodec codec = new PropertiesCodec();
+		for (int i = 0; i < table.size; i++) {
+			String key = table.key(i);
+			String val = table.value(i);
+			String comment = table.comment(i);
+			if(comment != null && !comment.equals(BLANK))
+				writeComments(bw, comment);
+			codec.encode(bw, key, true, escUnicode);
+			bw.write('=');
+			/* No need to escape embedded and trailing spaces for value, hence
+			 * pass false to flag.
+			 */
+			codec.encode(bw, val, false, escUnicode);
+			bw.write(LINE_SEPARATOR);
+		}
+	}
+
+	private static void writeComments(Writer bw, String comments) 
 			throws IOException {
-		bw.write("#");
+		bw.write('#');
 		int len = comments.length();  
 		int current = 0;
 		int last = 0;
@@ -643,11 +881,11 @@ public class CommentedProperties{
 			char c = comments.charAt(current);
 			if (c > '\u00ff' || c == '\n' || c == '\r') {
 				if (last != current) 
-					bw.write(comments.substring(last, current));
+					bw.write(comments, last, current - last);
 				if (c > '\u00ff') {
 					bw.write(c);
 				} else {
-					bw.newLine();
+					bw.write(LINE_SEPARATOR);
 					if (c == '\r' && 
 							current != len - 1 && 
 							comments.charAt(current + 1) == '\n') {
@@ -656,90 +894,35 @@ public class CommentedProperties{
 					if (current == len - 1 ||
 							(comments.charAt(current + 1) != '#' &&
 							comments.charAt(current + 1) != '!'))
-						bw.write("#");
+						bw.write('#');
 				}
 				last = current + 1;
 			} 
 			current++;
 		}
 		if (last != current) 
-			bw.write(comments.substring(last, current));
-		bw.newLine();
+			bw.write(comments, last, current - last);
+		bw.write(LINE_SEPARATOR);
 	}
 
 	/*
 	 * Converts unicodes to encoded &#92;uxxxx and escapes
 	 * special characters with a preceding slash
 	 */
-	private String saveConvert(String theString,
+	static String saveConvert(String theString,
 			boolean escapeSpace,
 			boolean escapeUnicode) {
 		int len = theString.length();
-		int bufLen = len * 2;
+		int bufLen = len * 6;
 		if (bufLen < 0) {
 			bufLen = Integer.MAX_VALUE;
 		}
-		StringBuffer outBuffer = new StringBuffer(bufLen);
-
+		char[] out = new char[bufLen];
+		int pos = 0;
 		for(int x=0; x<len; x++) {
-			char aChar = theString.charAt(x);
-			// Handle common case first, selecting largest block that
-			// avoids the specials below
-			if ((aChar > 61) && (aChar < 127)) {
-				if (aChar == '\\') {
-					outBuffer.append('\\'); outBuffer.append('\\');
-					continue;
-				}
-				outBuffer.append(aChar);
-				continue;
-			}
-			switch(aChar) {
-			case ' ':
-				if (x == 0 || escapeSpace) 
-					outBuffer.append('\\');
-				outBuffer.append(' ');
-				break;
-			case '\t':outBuffer.append('\\'); outBuffer.append('t');
-			break;
-			case '\n':outBuffer.append('\\'); outBuffer.append('n');
-			break;
-			case '\r':outBuffer.append('\\'); outBuffer.append('r');
-			break;
-			case '\f':outBuffer.append('\\'); outBuffer.append('f');
-			break;
-			case '=': // Fall through
-			case ':': // Fall through
-			case '#': // Fall through
-			case '!':
-				outBuffer.append('\\'); outBuffer.append(aChar);
-				break;
-			default:
-				if (((aChar < 0x0020) || (aChar > 0x007e)) & escapeUnicode ) {
-					outBuffer.append('\\');
-					outBuffer.append('u');
-					outBuffer.append(toHex((aChar >> 12) & 0xF));
-					outBuffer.append(toHex((aChar >>  8) & 0xF));
-					outBuffer.append(toHex((aChar >>  4) & 0xF));
-					outBuffer.append(toHex( aChar        & 0xF));
-				} else {
-					outBuffer.append(aChar);
-				}
-			}
+			pos = PropertiesCodec.escape(theString.charAt(x), x == 0 || escapeSpace, escapeUnicode, out, pos);
 		}
-		return outBuffer.toString();
+		return new String(out, 0, pos);
 	}
 
-	/**
-	 * Convert a nibble to a hex character
-	 * @param	nibble	the nibble to convert.
-	 */
-	private static char toHex(int nibble) {
-		return hexDigit[(nibble & 0xF)];
-	}
-
-	/** A table of hex digits */
-	private static final char[] hexDigit = {
-		'0','1','2','3','4','5','6','7','8','9','A','B','C','D','E','F'
-	};
-
 }
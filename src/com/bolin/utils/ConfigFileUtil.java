@@ -1,21 +1,30 @@
 package com.bolin.utils;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Iterator;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
 
 import org.apache.commons.lang.StringUtils;
-import org.dom4j.Attribute;
-import org.dom4j.Document;
-import org.dom4j.Element;
 
 import com.alibaba.fastjson.JSONObject;
 import com.bolin.xml.Dom4jXmlDocument;
+import com.bolin.xml.StaxXmlDocument;
 import com.bolin.xml.XmlDocument;
+import com.bolin.xml.XmlRules;
 
 /**
  * @author bolin
@@ -24,24 +33,294 @@ import com.bolin.xml.XmlDocument;
  */
 public class ConfigFileUtil {
 	
+	/**
+	 * replaceXml替换的元素：filter-name为CASFilter的filter
+	 */
+	private static final String XML_ELEMENT = "filter";
+	private static final String XML_NAME_ELEMENT = "filter-name";
+	private static final String XML_NAME = "CASFilter";
+	
+	/**
+	 * 遍历项目目录时的并行度，默认为CPU核数
+	 */
+	private int scanParallelism = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * 是否使用项目目录遍历结果的持久化缓存
+	 */
+	private boolean useScanCache = true;
+	
+	/**
+	 * 是否逐行替换properties文件，保留原文件格式和注释
+	 * 为false时读取整个文件后重新写出
+	 */
+	private boolean streamingProperties = true;
+	
+	/**
+	 * 是否以StAX流式替换xml文件，保留原文件格式
+	 * 为false时使用dom4j读取整个文件后重新写出
+	 */
+	private boolean streamingXml = true;
+	
+	/**
+	 * 是否先将所有修改写到临时文件，全部成功后再统一替换原文件（见StagedWrites）
+	 * 为false时逐个文件直接替换
+	 */
+	private boolean stagedWrites = true;
+	
+	/**
+	 * 遍历项目目录时的包含、排除规则和最大深度，默认排除ScanFilter.DEFAULT_EXCLUDES中的目录
+	 */
+	private ScanFilter scanFilter = ScanFilter.defaults();
+	
+	/**
+	 * xml、properties以外的格式，按顺序选择第一个接受文件名的
+	 */
+	private List<FormatHandler> formatHandlers = defaultFormatHandlers();
+	
 	public ConfigFileUtil() {
 		super();
 	}
 	
+	public int getScanParallelism() {
+		return scanParallelism;
+	}
+
+	public void setScanParallelism(int scanParallelism) {
+		this.scanParallelism = scanParallelism;
+	}
+
+	public boolean isUseScanCache() {
+		return useScanCache;
+	}
+
+	public void setUseScanCache(boolean useScanCache) {
+		this.useScanCache = useScanCache;
+	}
+
+	public boolean isStreamingProperties() {
+		return streamingProperties;
+	}
+
+	public void setStreamingProperties(boolean streamingProperties) {
+		this.streamingProperties = streamingProperties;
+	}
+
+	public boolean isStreamingXml() {
+		return streamingXml;
+	}
+
+	public void setStreamingXml(boolean streamingXml) {
+		this.streamingXml = streamingXml;
+	}
+
+	public boolean isStagedWrites() {
+		return stagedWrites;
+	}
+
+	public void setStagedWrites(boolean stagedWrites) {
+		this.stagedWrites = stagedWrites;
+	}
+	
+	public ScanFilter getScanFilter() {
+		return scanFilter;
+	}
+
+	public void setScanFilter(ScanFilter scanFilter) {
+		this.scanFilter = scanFilter == null ? ScanFilter.NONE : scanFilter;
+	}
+	
+	/**
+	 * 复制另一个实例的所有设置
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param other
+	 */
+	public ConfigFileUtil(ConfigFileUtil other) {
+		super();
+		this.scanParallelism = other.scanParallelism;
+		this.useScanCache = other.useScanCache;
+		this.streamingProperties = other.streamingProperties;
+		this.streamingXml = other.streamingXml;
+		this.stagedWrites = other.stagedWrites;
+		this.scanFilter = other.scanFilter;
+		this.formatHandlers = new ArrayList<FormatHandler>(other.formatHandlers);
+	}
+	
+	/**
+	 * 内置的json、yaml，以及META-INF/services中登记的格式
+	 */
+	private static List<FormatHandler> defaultFormatHandlers() {
+		List<FormatHandler> handlers = new ArrayList<FormatHandler>();
+		try {
+			for ( FormatHandler handler : ServiceLoader.load(FormatHandler.class) ) {
+				handlers.add(handler);
+			}
+		}
+		catch (ServiceConfigurationError e) {
+			e.printStackTrace();
+		}
+		handlers.add(new JsonFormatHandler());
+		handlers.add(new YamlFormatHandler());
+		return handlers;
+	}
+	
+	/**
+	 * 添加格式，优先于已有的格式
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param handler
+	 */
+	public void addFormatHandler(FormatHandler handler) {
+		formatHandlers.add(0, handler);
+	}
+	
+	/**
+	 * 处理此文件的格式，xml和properties文件返回null
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param name 文件名称
+	 * @return 没有格式接受此文件时返回null
+	 */
+	public FormatHandler getFormatHandler(String name) {
+		if(StringUtils.isBlank(name) || isXmlFile(name) || isPropertyFile(name)) return null;
+		for ( FormatHandler handler : formatHandlers ) {
+			if(handler.accepts(name)){
+				return handler;
+			}
+		}
+		return null;
+	}
+	
 	public String find(String fileDir, String fileName){
+		return jsonResult(findTarget(fileDir, fileName));
+	}
+	
+	/**
+	 * 查找配置文件对应的项目文件
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param fileDir 项目目录
+	 * @param fileName 配置文件名称
+	 * @return
+	 */
+	public FindResult findTarget(String fileDir, String fileName){
 		if(StringUtils.isBlank(fileDir)){
-			return jsonResult(false, "文件目录为空！");
+			return FindResult.notFound("文件目录为空！");
 		}
 		if(StringUtils.isBlank(fileName)){
-			return jsonResult(false, "配置文件名称为空！");
+			return FindResult.notFound("配置文件名称为空！");
 		}
 		
 		File projectDir = new File(fileDir);
-		File targetFile = this.findTargetFile(projectDir, fileName);
+		long start = PatchMetrics.start();
+		File targetFile = projectDir.isDirectory() ? this.findTargetFile(projectDir, "", 0, fileName)
+				: this.findTargetFile(projectDir, fileName);
+		PatchMetrics.record(PatchMetrics.Phase.FIND, start, 0L, 0L, 0L);
 		if(targetFile == null){
-			return jsonResult(false, "未找到同名配置文件！");
+			return FindResult.notFound("未找到同名配置文件！");
+		}
+		return FindResult.found(targetFile);
+	}
+	
+	/**
+	 * 批量查找配置文件对应的项目文件
+	 * 项目目录只遍历一次，所有配置文件在文件名索引中查找
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param fileDir 项目目录
+	 * @param configFiles 配置文件
+	 * @return 配置文件名 -> 查找结果（格式同find）
+	 */
+	public Map<String, String> findAll(String fileDir, File[] configFiles){
+		Map<String, String> results = new LinkedHashMap<String, String>();
+		for ( Map.Entry<String, FindResult> entry : findTargets(fileDir, configFiles).entrySet() ) {
+			results.put(entry.getKey(), jsonResult(entry.getValue()));
+		}
+		return results;
+	}
+	
+	/**
+	 * 批量查找配置文件对应的项目文件，与findAll相同，返回类型化的结果
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param fileDir 项目目录
+	 * @param configFiles 配置文件
+	 * @return 配置文件名 -> 查找结果
+	 */
+	public Map<String, FindResult> findTargets(String fileDir, File[] configFiles){
+		List<String> fileNames = new ArrayList<String>();
+		if(configFiles != null){
+			for ( File configFile : configFiles ) {
+				fileNames.add(configFile.getName());
+			}
 		}
-		return jsonResult(true, targetFile.getAbsolutePath());
+		return findTargets(fileDir, fileNames);
+	}
+	
+	/**
+	 * 按文件名批量查找项目文件，项目目录只遍历一次
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param fileDir 项目目录
+	 * @param fileNames 要查找的文件名
+	 * @return 文件名 -> 查找结果
+	 */
+	public Map<String, FindResult> findTargets(String fileDir, Collection<String> fileNames){
+		Map<String, FindResult> results = new LinkedHashMap<String, FindResult>();
+		if(fileNames == null || fileNames.isEmpty()){
+			return results;
+		}
+		if(StringUtils.isBlank(fileDir)){
+			for ( String fileName : fileNames ) {
+				results.put(fileName, FindResult.notFound("文件目录为空！"));
+			}
+			return results;
+		}
+		
+		ProjectFileIndex index = scanProject(new File(fileDir));
+		for ( String fileName : fileNames ) {
+			File targetFile = index.first(fileName);
+			if(targetFile == null){
+				results.put(fileName, FindResult.notFound("未找到同名配置文件！"));
+			}else{
+				results.put(fileName, FindResult.found(targetFile));
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * 遍历项目目录建立文件名索引，启用缓存时只重新列出有变化的目录
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param projectDir 项目目录
+	 * @return
+	 */
+	private ProjectFileIndex scanProject(File projectDir) {
+		long start = PatchMetrics.start();
+		ProjectFileIndex index;
+		if(useScanCache){
+			index = new ProjectScanCache(ProjectScanCache.defaultCacheDir(), scanParallelism, scanFilter).scan(projectDir);
+		}else{
+			ParallelFileWalker walker = new ParallelFileWalker(scanParallelism, scanFilter);
+			try {
+				index = ProjectFileIndex.scan(projectDir, walker);
+			}
+			finally {
+				walker.shutdown();
+			}
+		}
+		PatchMetrics.record(PatchMetrics.Phase.FIND, start, 0L, 0L, index.getVisitedCount());
+		return index;
 	}
 	
 	/**
@@ -59,7 +338,6 @@ public class ConfigFileUtil {
 			File[] files = projectDir.listFiles();
 			if(files != null && files.length > 0){
 				for ( File file : files ) {
-					System.out.println("file:"+ file.getAbsolutePath());
 					File targetFile = findTargetFile(file, fileName);
 					if(targetFile != null){
 						return targetFile;
@@ -77,10 +355,41 @@ public class ConfigFileUtil {
 		return null;
 	}
 
-	private String jsonResult(boolean success, String msg){
+	/**
+	 * 按scanFilter遍历目录，被排除或超过最大深度的子目录不进入
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param dir 目录
+	 * @param relativePath 相对项目目录的路径，项目目录为空字符串
+	 * @param depth 目录深度，项目目录为0
+	 * @param fileName
+	 * @return
+	 */
+	private File findTargetFile(File dir, String relativePath, int depth, String fileName) {
+		File[] files = dir.listFiles();
+		if(files == null) return null;
+		for ( File file : files ) {
+			String name = file.getName();
+			String path = ScanFilter.childPath(relativePath, name);
+			if(file.isDirectory()){
+				if(scanFilter.enterDirectory(path, name, depth + 1)){
+					File targetFile = findTargetFile(file, path, depth + 1, fileName);
+					if(targetFile != null){
+						return targetFile;
+					}
+				}
+			}else if(name.equals(fileName) && scanFilter.acceptFile(path, name)){
+				return file;
+			}
+		}
+		return null;
+	}
+
+	private String jsonResult(FindResult result){
 		JSONObject json = new JSONObject();
-		json.put("success", success);
-		json.put("msg", msg);
+		json.put("success", result.isSuccess());
+		json.put("msg", result.getMsg());
 		return json.toJSONString();
 	}
 
@@ -115,34 +424,192 @@ public class ConfigFileUtil {
 	 * 
 	 * @param sourceXml 配置文件
 	 * @param targetXml	要修改的web.xml
-	 * @return
+	 * @return 是否修改了文件，替换后内容不变时返回false，不写文件
+	 * @throws IOException 读取、解析或写入出错，要修改的xml保持不变
 	 */
-	@SuppressWarnings("rawtypes")
-	public void replaceXml(String sourceXml, String targetXml) {
-		XmlDocument document = new Dom4jXmlDocument();
-		Document sourceXmlDocument = document.parseXml(sourceXml);
-		Document targetXmlDocument = document.parseXml(targetXml);
-		
-		Element sourceXmlDocumentRoot = sourceXmlDocument.getRootElement();
-		Element targetXmlDocumentRoot = targetXmlDocument.getRootElement();
-		
-		for ( Iterator iterator = targetXmlDocumentRoot.elementIterator("filter"); iterator.hasNext(); ) {
-			Element filterEle = (Element) iterator.next();
-			String fileterName = filterEle.elementText("filter-name");
-			System.out.println("当前filter:"+ fileterName);
-			if("CASFilter".equals(fileterName)){
-				filterEle.detach();
-				Element casFileterEle = sourceXmlDocumentRoot.createCopy();
-				Attribute attribute = casFileterEle.attribute("xmlns");
-				casFileterEle.remove(attribute);
-				targetXmlDocumentRoot.add(casFileterEle);
+	public boolean replaceXml(String sourceXml, String targetXml) throws IOException {
+		if(streamingXml){
+			List<XMLEvent> sourceEvents;
+			try {
+				sourceEvents = StaxXmlDocument.readRootElement(new File(sourceXml));
 			}
+			catch (XMLStreamException e) {
+				throw new IOException("xml解析出错：" + new File(sourceXml).getName(), e);
+			}
+			return replaceXml(sourceEvents, targetXml);
+		}
+		XmlDocument document = new Dom4jXmlDocument();
+		return document.replaceElement(sourceXml, targetXml, XML_ELEMENT, XML_NAME_ELEMENT, XML_NAME);
+	}
+	
+	/**
+	 * 替换xml内容，用于不能直接修改文件的场景（如war包中的文件）
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param sourceXml 配置文件
+	 * @param target 要修改的xml内容
+	 * @param out 替换后的内容
+	 * @throws IOException
+	 */
+	public void replaceXml(File sourceXml, InputStream target, OutputStream out) throws IOException {
+		List<XMLEvent> sourceEvents;
+		try {
+			sourceEvents = StaxXmlDocument.readRootElement(sourceXml);
 		}
-		File targetXmlFile = new File(targetXml);
-		if(targetXmlFile.exists()){
-			targetXmlFile.delete();
+		catch (XMLStreamException e) {
+			throw new IOException("xml解析出错：" + sourceXml.getName(), e);
 		}
-		document.createXml(targetXml, targetXmlDocument);
+		replaceXml(sourceEvents, target, out);
+	}
+	
+	/**
+	 * 用已解析的配置文件替换xml内容
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param sourceEvents 配置文件根元素事件，见StaxXmlDocument.readRootElement
+	 * @param target 要修改的xml内容
+	 * @param out 替换后的内容
+	 * @throws IOException
+	 */
+	public void replaceXml(List<XMLEvent> sourceEvents, InputStream target, OutputStream out) throws IOException {
+		try {
+			new StaxXmlDocument().replaceElement(target, out, sourceEvents, XML_ELEMENT, XML_NAME_ELEMENT, XML_NAME);
+		}
+		catch (XMLStreamException e) {
+			throw new IOException("xml解析出错", e);
+		}
+	}
+	
+	/**
+	 * 读取xml内容中要替换的元素，用于预览替换前的内容
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param target xml内容
+	 * @return 元素的xml文本，未找到时返回null
+	 * @throws IOException
+	 */
+	public String findXmlElement(InputStream target) throws IOException {
+		try {
+			return new StaxXmlDocument().findElement(target, XML_ELEMENT, XML_NAME_ELEMENT, XML_NAME);
+		}
+		catch (XMLStreamException e) {
+			throw new IOException("xml解析出错", e);
+		}
+	}
+	
+	/**
+	 * 要替换的xml元素的描述，如filter[filter-name=CASFilter]
+	 * @return
+	 */
+	public String getXmlElementKey() {
+		return XML_ELEMENT + "[" + XML_NAME_ELEMENT + "=" + XML_NAME + "]";
+	}
+	
+	/**
+	 * 用已解析的配置文件替换xml文件，配置文件只需解析一次即可用于多个项目
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param sourceEvents 配置文件根元素事件，见StaxXmlDocument.readRootElement
+	 * @param targetXml 要修改的xml
+	 * @return 是否修改了文件，替换后内容不变时返回false
+	 * @throws IOException
+	 */
+	public boolean replaceXml(List<XMLEvent> sourceEvents, String targetXml) throws IOException {
+		return new StaxXmlDocument().replaceElement(sourceEvents, targetXml, XML_ELEMENT, XML_NAME_ELEMENT, XML_NAME);
+	}
+	
+	/**
+	 * 按xml规则修改xml文件，所有规则在一次遍历中应用
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param rules 已编译的规则，见XmlRules
+	 * @param targetXml 要修改的xml
+	 * @return 是否修改了文件，修改后内容不变时返回false
+	 * @throws IOException
+	 */
+	public boolean replaceXml(XmlRules rules, String targetXml) throws IOException {
+		return new StaxXmlDocument().replaceElement(rules, targetXml);
+	}
+	
+	/**
+	 * 按xml规则修改xml内容
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param rules 已编译的规则，见XmlRules
+	 * @param target 要修改的xml内容
+	 * @param out 修改后的内容
+	 * @return 每条规则生效的次数
+	 * @throws IOException
+	 */
+	public int[] replaceXml(XmlRules rules, InputStream target, OutputStream out) throws IOException {
+		return replaceXml(rules, target, out, null);
+	}
+	
+	/**
+	 * 按xml规则修改xml内容，并记录每次生效的规则和原来的值
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param rules 已编译的规则，见XmlRules
+	 * @param target 要修改的xml内容
+	 * @param out 修改后的内容
+	 * @param matches 生效的规则，为null时不记录
+	 * @return 每条规则生效的次数
+	 * @throws IOException
+	 */
+	public int[] replaceXml(XmlRules rules, InputStream target, OutputStream out, List<XmlRules.Hit> matches) throws IOException {
+		try {
+			return rules.apply(target, out, matches);
+		}
+		catch (XMLStreamException e) {
+			throw new IOException("xml解析出错", e);
+		}
+	}
+	
+	/**
+	 * xml配置文件对应的规则：用配置文件的根元素替换filter-name为CASFilter的filter
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param sourceEvents 配置文件根元素事件，见StaxXmlDocument.readRootElement
+	 * @return
+	 */
+	public static XmlRules xmlRules(List<XMLEvent> sourceEvents) {
+		return XmlRules.replace(XML_ELEMENT + "[" + XML_NAME_ELEMENT + "=" + XmlRules.quote(XML_NAME) + "]", sourceEvents);
+	}
+	
+	/**
+	 * 替换properties内容，用于不能直接修改文件的场景（如war包中的文件）
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param sourceProperties 配置文件
+	 * @param target 要修改的properties内容
+	 * @param out 替换后的内容
+	 * @throws IOException
+	 */
+	public void replaceProperties(File sourceProperties, InputStream target, OutputStream out) throws IOException {
+		replaceProperties(StreamingPropertiesPatcher.loadReplacements(sourceProperties), target, out);
+	}
+	
+	/**
+	 * 用已读取的配置项替换properties内容
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param replacements 配置项
+	 * @param target 要修改的properties内容
+	 * @param out 替换后的内容
+	 * @throws IOException
+	 */
+	public void replaceProperties(Map<String, String> replacements, InputStream target, OutputStream out) throws IOException {
+		new StreamingPropertiesPatcher(replacements).patch(target, out);
 	}
 	
 	/**
@@ -152,57 +619,119 @@ public class ConfigFileUtil {
 	 * 
 	 * @param sourceProperties	配置文件
 	 * @param targetProperties	要修改配置的properties文件
-	 * @return
+	 * @return 是否修改了文件
+	 * @throws IOException 读取或写入出错，要修改的文件保持不变
 	 */
-	@SuppressWarnings({ "rawtypes"})
-	public void replaceProperties(String sourceProperties, String targetProperties) {
-		//配置文件
-		CommentedProperties sourcePropertiesFile = new CommentedProperties();
-		try {
-			InputStream in = new FileInputStream(new File(sourceProperties));
-			sourcePropertiesFile.load(in, "utf-8");
-			in.close();
-		}
-		catch (Exception e) {
-			e.printStackTrace();
+	public boolean replaceProperties(String sourceProperties, String targetProperties) throws IOException {
+		return replaceProperties(StreamingPropertiesPatcher.loadReplacements(new File(sourceProperties)), targetProperties);
+	}
+	
+	/**
+	 * 用已读取的配置项替换properties文件，配置文件只需读取一次即可用于多个项目
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param replacements 配置项
+	 * @param targetProperties 要修改配置的properties文件
+	 * @return 是否修改了文件，替换后内容不变时返回false
+	 * @throws IOException 读取或写入出错，要修改的文件保持不变
+	 */
+	public boolean replaceProperties(Map<String, String> replacements, String targetProperties) throws IOException {
+		if(streamingProperties){
+			return new StreamingPropertiesPatcher(replacements).patch(new File(targetProperties));
 		}
-		//替换文件
+		//替换文件，按原文件的字符集读写；读取出错时不能写出，否则会丢掉原文件的内容
 		CommentedProperties targetPropertiesFile = new CommentedProperties();
-		try {
-			InputStream in = new FileInputStream(new File(targetProperties));
-			targetPropertiesFile.load(in, "utf-8");
-			in.close();
-		}
-		catch (Exception e) {
-			e.printStackTrace();
+		Charset sniffed = CharsetSniffer.sniff(new File(targetProperties));
+		if(sniffed != CharsetSniffer.UTF_8 && sniffed != CharsetSniffer.GBK){
+			throw new IOException("不支持" + sniffed.name() + "编码的properties文件：" + new File(targetProperties).getName());
 		}
+		String charset = sniffed.name();
+		targetPropertiesFile.load(new File(targetProperties), charset);
 		
-		if(!sourcePropertiesFile.isEmpty()){
-			for ( Iterator iterator = sourcePropertiesFile.keySet().iterator(); iterator.hasNext(); ) {
-				String key = (String) iterator.next();
-				String value = sourcePropertiesFile.getProperty(key);
-				targetPropertiesFile.setProperty(key, value);
+		//写出时会加上当前时间的注释，所有配置项都已是要替换的值时不再写出
+		boolean changed = false;
+		for ( Map.Entry<String, String> entry : replacements.entrySet() ) {
+			if(!entry.getValue().equals(targetPropertiesFile.getProperty(entry.getKey()))){
+				targetPropertiesFile.setProperty(entry.getKey(), entry.getValue());
+				changed = true;
 			}
 		}
-		File targetFile = new File(targetProperties);
-		if(targetFile.exists()){
-			targetFile.delete();
+		if(!changed){
+			return false;
 		}
+		File targetFile = new File(targetProperties);
+		File tmpFile = AtomicFiles.tempFileFor(targetFile);
 		try {
-			targetFile.createNewFile();
+			targetPropertiesFile.store(tmpFile, charset, null);
+			return AtomicFiles.replaceIfChanged(tmpFile, targetFile);
 		}
 		catch (IOException e) {
-			e.printStackTrace();
+			tmpFile.delete();
+			throw e;
 		}
-		
+	}
+
+	/**
+	 * 用已读取的配置替换其他格式的文件，内容不变时不写文件
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param handler 格式
+	 * @param config handler.load的返回值
+	 * @param targetFile 要修改的文件
+	 * @return 是否修改了文件
+	 * @throws IOException
+	 */
+	public boolean replaceFormat(FormatHandler handler, Object config, String targetFile) throws IOException {
+		File target = new File(targetFile);
+		File tmpFile = AtomicFiles.tempFileFor(target);
+		boolean changed;
+		InputStream in = new BufferedInputStream(new FileInputStream(target), 65536);
 		try {
-			OutputStream out = new FileOutputStream(targetFile);
-			targetPropertiesFile.store(out, "utf-8", null);
-			out.flush();
-			out.close();
+			ChangeDetectingOutputStream out = ChangeDetectingOutputStream.forFile(target, tmpFile);
+			try {
+				replaceFormat(handler, config, in, out);
+			}
+			finally {
+				out.close();
+			}
+			changed = out.isChanged();
 		}
 		catch (IOException e) {
-			e.printStackTrace();
+			tmpFile.delete();
+			throw e;
+		}
+		finally {
+			in.close();
+		}
+		if(changed){
+			AtomicFiles.commit(tmpFile, target);
+		}
+		return changed;
+	}
+	
+	/**
+	 * 用已读取的配置替换其他格式的内容
+	 * @author bolin
+	 * @create 2026年10月18日
+	 * 
+	 * @param handler 格式
+	 * @param config handler.load的返回值
+	 * @param target 要修改的内容
+	 * @param out 替换后的内容
+	 * @return 替换和追加的路径
+	 * @throws IOException
+	 */
+	public List<FormatChange> replaceFormat(FormatHandler handler, Object config, InputStream target, OutputStream out) throws IOException {
+		long start = PatchMetrics.start();
+		PatchMetrics.CountingInputStream countingIn = new PatchMetrics.CountingInputStream(target);
+		try {
+			return handler.patch(config, countingIn, out);
+		}
+		finally {
+			//out可能只用于比较或在内存中，实际写入文件的字节数在替换文件时记录
+			PatchMetrics.record(PatchMetrics.Phase.PATCH_FORMAT, start, countingIn.getCount(), 0L, 1L);
 		}
 	}
 
@@ -0,0 +1,61 @@
+package com.bolin.utils;
+
+import java.io.File;
+
+/**
+ * FindResult
+ * 查找配置文件对应项目文件的结果
+ *
+ * 找到时targetFile为项目文件，未找到时为null，msg为原因。
+ * ConfigFileUtil.find/findAll返回的json字符串由此生成，格式不变。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public final class FindResult {
+
+	private final File targetFile;
+
+	private final String msg;
+
+	private FindResult(File targetFile, String msg) {
+		super();
+		this.targetFile = targetFile;
+		this.msg = msg;
+	}
+
+	public static FindResult found(File targetFile) {
+		return new FindResult(targetFile.getAbsoluteFile(), targetFile.getAbsolutePath());
+	}
+
+	public static FindResult notFound(String msg) {
+		return new FindResult(null, msg);
+	}
+
+	public boolean isSuccess() {
+		return targetFile != null;
+	}
+
+	/**
+	 * 要修改的项目文件，未找到时为null
+	 * @return
+	 */
+	public File getTargetFile() {
+		return targetFile;
+	}
+
+	/**
+	 * 找到时为项目文件的绝对路径，未找到时为原因
+	 * @return
+	 */
+	public String getMsg() {
+		return msg;
+	}
+
+	@Override
+	public String toString() {
+		return isSuccess() ? "找到：" + msg : "未找到：" + msg;
+	}
+
+}
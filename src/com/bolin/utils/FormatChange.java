@@ -0,0 +1,48 @@
+package com.bolin.utils;
+
+/**
+ * FormatChange
+ * FormatHandler替换或追加的一个值
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public final class FormatChange {
+
+	private final String path;
+
+	private final String oldValue;
+
+	private final String newValue;
+
+	/**
+	 * @param path 以.分隔的路径，如server.port
+	 * @param oldValue 原来的值（文件中的原文），追加时为null
+	 * @param newValue 新的值
+	 */
+	public FormatChange(String path, String oldValue, String newValue) {
+		super();
+		this.path = path;
+		this.oldValue = oldValue;
+		this.newValue = newValue;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public String getOldValue() {
+		return oldValue;
+	}
+
+	public String getNewValue() {
+		return newValue;
+	}
+
+	@Override
+	public String toString() {
+		return path + "：" + (oldValue == null ? "追加 " : oldValue + " -> ") + newValue;
+	}
+
+}
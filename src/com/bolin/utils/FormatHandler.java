@@ -0,0 +1,57 @@
+package com.bolin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * FormatHandler
+ * xml、properties以外的配置文件格式，按扩展名选择
+ *
+ * 内置json（JsonFormatHandler）和yaml（YamlFormatHandler），
+ * 其他格式实现此接口后在META-INF/services/com.bolin.utils.FormatHandler中登记，
+ * 或用ConfigFileUtil.addFormatHandler添加。
+ *
+ * 配置文件由load读取一次，结果在多个项目、多个线程之间共享，patch不能修改它。
+ * patch应当流式处理，只改写配置文件中出现的路径，其余内容原样写出。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public interface FormatHandler {
+
+	/**
+	 * 格式名称，如json、yaml
+	 * @return
+	 */
+	String getName();
+
+	/**
+	 * 是否处理此文件，一般按扩展名判断
+	 * @param fileName 文件名称
+	 * @return
+	 */
+	boolean accepts(String fileName);
+
+	/**
+	 * 读取配置文件中要替换的内容
+	 * @param configFile 配置文件
+	 * @return 传给patch的配置，只读
+	 * @throws IOException 配置文件格式错误
+	 */
+	Object load(File configFile) throws IOException;
+
+	/**
+	 * 替换项目文件内容
+	 * @param config load的返回值
+	 * @param in 要修改的内容
+	 * @param out 替换后的内容，不关闭
+	 * @return 替换和追加的路径
+	 * @throws IOException
+	 */
+	List<FormatChange> patch(Object config, InputStream in, OutputStream out) throws IOException;
+
+}
@@ -0,0 +1,379 @@
+package com.bolin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.parser.Feature;
+
+/**
+ * JsonFormatHandler
+ * 流式替换json文件
+ *
+ * 配置文件为json对象，其中的值替换项目文件中相同路径的值，嵌套对象按层级匹配，如
+ *   {"datasource": {"url": "jdbc:mysql://db/app"}}
+ * 只替换datasource.url，datasource的其他成员不变。项目文件中没有的成员追加到所在对象的末尾，
+ * 缩进与前一个成员相同。
+ *
+ * 项目文件逐个字符扫描，不建立对象树，配置文件以外的内容（空白、成员顺序、数组等）原样写出，
+ * 耗时与文件大小成正比。fastjson只用于读取配置文件和生成写入的值：
+ * 它的JSONReader/JSONWriter写出时会重新格式化，无法保留原文件的内容。
+ *
+ * 文件为UTF-8编码，可以有BOM。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class JsonFormatHandler implements FormatHandler {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Override
+	public String getName() {
+		return "json";
+	}
+
+	@Override
+	public boolean accepts(String fileName) {
+		return fileName != null && fileName.endsWith(".json");
+	}
+
+	/**
+	 * @return 成员名称 -> 值的json文本，嵌套对象为Map
+	 */
+	@Override
+	public Object load(File configFile) throws IOException {
+		String text = newDecoder().decode(ByteBuffer.wrap(Files.readAllBytes(configFile.toPath()))).toString();
+		if(text.startsWith("\uFEFF")){
+			text = text.substring(1);
+		}
+		Object parsed;
+		try {
+			parsed = JSON.parse(text, Feature.OrderedField);
+		}
+		catch (JSONException e) {
+			throw new IOException("json解析出错：" + configFile.getName(), e);
+		}
+		if(!(parsed instanceof Map)){
+			throw new IOException("json配置文件的根必须是对象：" + configFile.getName());
+		}
+		return tree((Map<?, ?>) parsed);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<FormatChange> patch(Object config, InputStream in, OutputStream out) throws IOException {
+		JsonPatch patch = new JsonPatch((Map<String, Object>) config, new InputStreamReader(in, newDecoder()),
+				new OutputStreamWriter(out, UTF_8));
+		patch.run();
+		return patch.changes;
+	}
+
+	private static CharsetDecoder newDecoder() {
+		return UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+	}
+
+	private static Map<String, Object> tree(Map<?, ?> object) {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		for ( Map.Entry<?, ?> entry : object.entrySet() ) {
+			Object value = entry.getValue();
+			result.put(String.valueOf(entry.getKey()), value instanceof Map ? tree((Map<?, ?>) value) : JSON.toJSONString(value));
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * 值的json文本，嵌套对象写成一行
+	 */
+	@SuppressWarnings("unchecked")
+	private static String toJson(Object value) {
+		if(!(value instanceof Map)){
+			return (String) value;
+		}
+		StringBuilder sb = new StringBuilder("{");
+		for ( Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet() ) {
+			if(sb.length() > 1){
+				sb.append(',');
+			}
+			sb.append(JSON.toJSONString(entry.getKey())).append(':').append(toJson(entry.getValue()));
+		}
+		return sb.append('}').toString();
+	}
+
+	private static boolean isWhitespace(int c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+	}
+
+	/**
+	 * 一次替换，输入输出各有自己的缓冲区
+	 */
+	private static final class JsonPatch {
+
+		private final Map<String, Object> config;
+
+		private final Reader in;
+
+		private final Writer out;
+
+		private final char[] inBuf = new char[8192];
+
+		private int inPos = 0;
+
+		private int inLimit = 0;
+
+		private final char[] outBuf = new char[8192];
+
+		private int outPos = 0;
+
+		/**
+		 * 不为null时读到的内容记录在这里，不写出
+		 */
+		private StringBuilder capture;
+
+		private int line = 1;
+
+		final List<FormatChange> changes = new ArrayList<FormatChange>();
+
+		JsonPatch(Map<String, Object> config, Reader in, Writer out) {
+			this.config = config;
+			this.in = in;
+			this.out = out;
+		}
+
+		void run() throws IOException {
+			if(peek() == '\uFEFF'){
+				emit(next());
+			}
+			emit(readWhitespace());
+			if(peek() == '{'){
+				patchObject(config, "");
+			}
+			//根不是对象时原样写出
+			while (peek() >= 0) {
+				emit(next());
+			}
+			out.write(outBuf, 0, outPos);
+			out.flush();
+		}
+
+		private void patchObject(Map<String, Object> node, String path) throws IOException {
+			emit(next());
+			Set<String> seen = new HashSet<String>();
+			String indent = null;
+			String colon = null;
+			boolean hasMembers = false;
+			while (true) {
+				String ws = readWhitespace();
+				int c = peek();
+				if(c == '}'){
+					appendMissing(node, path, seen, hasMembers, indent, colon);
+					emit(ws);
+					emit(next());
+					return;
+				}
+				if(c == ','){
+					emit(ws);
+					emit(next());
+					continue;
+				}
+				if(c != '"'){
+					throw error("应为成员名称");
+				}
+				indent = ws;
+				emit(ws);
+				capture = new StringBuilder();
+				scanString();
+				String rawKey = capture.toString();
+				capture = null;
+				emit(rawKey);
+				emit(readWhitespace());
+				if(peek() != ':'){
+					throw error("应为:");
+				}
+				emit(next());
+				String after = readWhitespace();
+				emit(after);
+				colon = ":" + after;
+				hasMembers = true;
+				String key = rawKey.indexOf('\\') < 0 ? rawKey.substring(1, rawKey.length() - 1) : (String) JSON.parse(rawKey);
+				Object value = node.get(key);
+				if(value == null){
+					scanValue();
+					continue;
+				}
+				seen.add(key);
+				String childPath = path.length() == 0 ? key : path + "." + key;
+				if(value instanceof Map && peek() == '{'){
+					@SuppressWarnings("unchecked")
+					Map<String, Object> child = (Map<String, Object>) value;
+					patchObject(child, childPath);
+					continue;
+				}
+				capture = new StringBuilder();
+				scanValue();
+				String old = capture.toString();
+				capture = null;
+				String text = toJson(value);
+				emit(text);
+				if(!old.equals(text)){
+					changes.add(new FormatChange(childPath, old, text));
+				}
+			}
+		}
+
+		/**
+		 * 项目文件中没有的成员追加到对象末尾
+		 */
+		private void appendMissing(Map<String, Object> node, String path, Set<String> seen, boolean hasMembers,
+				String indent, String colon) throws IOException {
+			for ( Map.Entry<String, Object> entry : node.entrySet() ) {
+				String key = entry.getKey();
+				if(seen.contains(key)) continue;
+				String text = toJson(entry.getValue());
+				if(hasMembers){
+					emit(",");
+				}
+				emit(indent == null ? "" : indent);
+				emit(JSON.toJSONString(key));
+				emit(colon == null ? ":" : colon);
+				emit(text);
+				hasMembers = true;
+				changes.add(new FormatChange(path.length() == 0 ? key : path + "." + key, null, text));
+			}
+		}
+
+		/**
+		 * 读过一个值，写出或记录到capture
+		 */
+		private void scanValue() throws IOException {
+			int c = peek();
+			if(c == '"'){
+				scanString();
+				return;
+			}
+			if(c == '{' || c == '['){
+				int depth = 0;
+				do {
+					char ch = next();
+					emit(ch);
+					if(ch == '"'){
+						scanStringContent();
+					}else if(ch == '{' || ch == '['){
+						depth++;
+					}else if(ch == '}' || ch == ']'){
+						depth--;
+					}
+				} while (depth > 0);
+				return;
+			}
+			//数字、true、false、null
+			if(c < 0 || c == ',' || c == '}' || c == ']'){
+				throw error("应为值");
+			}
+			while (c >= 0 && c != ',' && c != '}' && c != ']' && !isWhitespace(c)) {
+				emit(next());
+				c = peek();
+			}
+		}
+
+		private void scanString() throws IOException {
+			emit(next());
+			scanStringContent();
+		}
+
+		/**
+		 * 开始的引号之后到结束的引号
+		 */
+		private void scanStringContent() throws IOException {
+			while (true) {
+				char ch = next();
+				emit(ch);
+				if(ch == '\\'){
+					emit(next());
+				}else if(ch == '"'){
+					return;
+				}
+			}
+		}
+
+		private String readWhitespace() throws IOException {
+			int c = peek();
+			if(!isWhitespace(c)) return "";
+			StringBuilder sb = new StringBuilder();
+			while (isWhitespace(c)) {
+				sb.append(next());
+				c = peek();
+			}
+			return sb.toString();
+		}
+
+		private int peek() throws IOException {
+			if(inPos >= inLimit){
+				inLimit = in.read(inBuf, 0, inBuf.length);
+				inPos = 0;
+				if(inLimit <= 0){
+					inLimit = 0;
+					return -1;
+				}
+			}
+			return inBuf[inPos];
+		}
+
+		private char next() throws IOException {
+			int c = peek();
+			if(c < 0){
+				throw error("文件意外结束");
+			}
+			inPos++;
+			if(c == '\n'){
+				line++;
+			}
+			return (char) c;
+		}
+
+		private void emit(char c) throws IOException {
+			if(capture != null){
+				capture.append(c);
+				return;
+			}
+			if(outPos == outBuf.length){
+				out.write(outBuf, 0, outPos);
+				outPos = 0;
+			}
+			outBuf[outPos++] = c;
+		}
+
+		private void emit(String s) throws IOException {
+			for ( int i = 0; i < s.length(); i++ ) {
+				emit(s.charAt(i));
+			}
+		}
+
+		private IOException error(String msg) {
+			return new IOException("json格式错误，第" + line + "行：" + msg);
+		}
+
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.bolin.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * LineSource
+ * 按原始字节读取物理行，行结束符为\n、\r\n或\r
+ *
+ * 读出的行保留原始字节，不需要修改的行可以原样写出。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+class LineSource {
+	private final InputStream in;
+	private final byte[] inBuf = new byte[8192];
+	private int inOff = 0;
+	private int inLimit = 0;
+
+	byte[] buf = new byte[1024];
+	int contentLen;
+	int termLen;
+
+	LineSource(InputStream in) {
+		this.in = in;
+	}
+
+	private int read() throws IOException {
+		if(inOff >= inLimit){
+			inLimit = in.read(inBuf);
+			inOff = 0;
+			if(inLimit <= 0) return -1;
+		}
+		return inBuf[inOff++] & 0xff;
+	}
+
+	private int peek() throws IOException {
+		if(inOff >= inLimit){
+			inLimit = in.read(inBuf);
+			inOff = 0;
+			if(inLimit <= 0) return -1;
+		}
+		return inBuf[inOff] & 0xff;
+	}
+
+	private void append(int b) {
+		if(contentLen + termLen == buf.length){
+			byte[] newBuf = new byte[buf.length * 2];
+			System.arraycopy(buf, 0, newBuf, 0, buf.length);
+			buf = newBuf;
+		}
+		buf[contentLen + termLen] = (byte) b;
+	}
+
+	/**
+	 * 读取下一行，内容在buf[0, contentLen)，行结束符紧随其后
+	 */
+	boolean next() throws IOException {
+		contentLen = 0;
+		termLen = 0;
+		int b;
+		while ((b = read()) >= 0) {
+			if(b == '\n'){
+				append(b);
+				termLen = 1;
+				return true;
+			}
+			if(b == '\r'){
+				append(b);
+				termLen = 1;
+				if(peek() == '\n'){
+					append(read());
+					termLen = 2;
+				}
+				return true;
+			}
+			append(b);
+			contentLen++;
+		}
+		return contentLen > 0;
+	}
+
+	byte[] termBytes() {
+		byte[] term = new byte[termLen];
+		System.arraycopy(buf, contentLen, term, 0, termLen);
+		return term;
+	}
+}
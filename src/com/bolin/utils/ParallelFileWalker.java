@@ -0,0 +1,215 @@
+package com.bolin.utils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ParallelFileWalker
+ * 基于NIO DirectoryStream和Fork/Join的并行目录遍历
+ *
+ * 每个子目录作为一个子任务并行遍历，结果按深度优先的顺序合并，
+ * 与原来File.listFiles()递归得到的顺序一致（同一目录内为DirectoryStream返回的顺序）。
+ * 与File.isDirectory()相同，符号链接和Windows的目录联接按指向的目标判断，指向目录的链接也会进入；
+ * 指向当前目录或其上级目录的链接会形成循环，跳过且不作为文件。无法读取的目录直接跳过。
+ * 指定ScanFilter时，被排除或超过最大深度的目录在创建子任务前跳过，不会被列出。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class ParallelFileWalker {
+
+	private final ForkJoinPool pool;
+
+	private final ScanFilter filter;
+
+	/**
+	 * 并行度默认为CPU核数
+	 */
+	public ParallelFileWalker() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param parallelism 并行度
+	 */
+	public ParallelFileWalker(int parallelism) {
+		this(parallelism, ScanFilter.NONE);
+	}
+
+	/**
+	 * @param parallelism 并行度
+	 * @param filter 目录排除规则和最大深度
+	 */
+	public ParallelFileWalker(int parallelism, ScanFilter filter) {
+		super();
+		this.pool = new ForkJoinPool(Math.max(1, parallelism));
+		this.filter = filter == null ? ScanFilter.NONE : filter;
+	}
+
+	/**
+	 * 遍历目录，返回其中所有文件（不含目录）
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param root 根目录
+	 * @return
+	 */
+	public List<Path> walk(Path root) {
+		if(root == null) return Collections.emptyList();
+		if(!Files.isDirectory(root)){
+			if(Files.exists(root)){
+				return Collections.singletonList(root);
+			}
+			return Collections.emptyList();
+		}
+		return pool.invoke(new WalkTask(null, root, "", 0, filter));
+	}
+
+	/**
+	 * 目录项的类型：文件
+	 */
+	static final int FILE = 0;
+
+	/**
+	 * 目录项的类型：目录
+	 */
+	static final int DIRECTORY = 1;
+
+	/**
+	 * 目录项的类型：指向目录的符号链接或目录联接，进入前需用isLoop检查
+	 */
+	static final int LINKED_DIRECTORY = 2;
+
+	/**
+	 * 判断目录项的类型，只有链接才需要再读取目标的属性
+	 * @param entry
+	 * @return FILE、DIRECTORY或LINKED_DIRECTORY，无法读取时为FILE（与File.isDirectory()一致）
+	 */
+	static int entryType(Path entry) {
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			//Windows的目录联接不是符号链接，isOther为true
+			if(attrs.isSymbolicLink() || attrs.isOther()){
+				return Files.isDirectory(entry) ? LINKED_DIRECTORY : FILE;
+			}
+			return attrs.isDirectory() ? DIRECTORY : FILE;
+		}
+		catch (IOException e) {
+			return FILE;
+		}
+	}
+
+	/**
+	 * 链接指向的目录是否是dirs中某个目录本身或其上级目录，进入后会循环
+	 * @param link 指向目录的链接
+	 * @param dirs 当前目录及其所有上级目录
+	 * @return 无法解析链接时也返回true
+	 */
+	static boolean isLoop(Path link, List<Path> dirs) {
+		try {
+			Path target = link.toRealPath();
+			for ( Path dir : dirs ) {
+				if(dir.toRealPath().startsWith(target)) return true;
+			}
+			return false;
+		}
+		catch (IOException e) {
+			return true;
+		}
+	}
+
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * 关闭线程池
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	private static class WalkTask extends RecursiveTask<List<Path>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final WalkTask parent;
+
+		private final Path dir;
+
+		private final String relativePath;
+
+		private final int depth;
+
+		private final ScanFilter filter;
+
+		WalkTask(WalkTask parent, Path dir, String relativePath, int depth, ScanFilter filter) {
+			this.parent = parent;
+			this.dir = dir;
+			this.relativePath = relativePath;
+			this.depth = depth;
+			this.filter = filter;
+		}
+
+		@Override
+		protected List<Path> compute() {
+			//按目录项顺序保存：文件为Path，子目录为WalkTask
+			List<Object> entries = new ArrayList<Object>();
+			List<WalkTask> subTasks = new ArrayList<WalkTask>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for ( Path entry : stream ) {
+					String name = entry.getFileName().toString();
+					String path = ScanFilter.childPath(relativePath, name);
+					int type = entryType(entry);
+					if(type == LINKED_DIRECTORY && isLoop(entry, dirs())) continue;
+					if(type != FILE){
+						if(filter.enterDirectory(path, name, depth + 1)){
+							WalkTask task = new WalkTask(this, entry, path, depth + 1, filter);
+							subTasks.add(task);
+							entries.add(task);
+						}
+					}else if(filter.acceptFile(path, name)){
+						entries.add(entry);
+					}
+				}
+			}
+			catch (IOException e) {
+				//无法读取的目录跳过，与listFiles()返回null时的处理一致
+				return Collections.emptyList();
+			}
+			invokeAll(subTasks);
+
+			List<Path> files = new ArrayList<Path>();
+			for ( Object entry : entries ) {
+				if(entry instanceof WalkTask){
+					files.addAll(((WalkTask) entry).join());
+				}else{
+					files.add((Path) entry);
+				}
+			}
+			return files;
+		}
+
+		/**
+		 * 当前目录及其所有上级目录
+		 */
+		private List<Path> dirs() {
+			List<Path> dirs = new ArrayList<Path>();
+			for ( WalkTask task = this; task != null; task = task.parent ) {
+				dirs.add(task.dir);
+			}
+			return dirs;
+		}
+	}
+
+}
@@ -0,0 +1,442 @@
+package com.bolin.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * PatchMetrics
+ * 替换过程中各阶段的耗时、读写字节数和文件数
+ *
+ * 统计为进程内累计值，在多个线程中同时记录。第一次使用时在后台线程中注册到平台MBeanServer，
+ * 可以用jconsole等工具查看；一次替换的统计用snapshot前后相减得到，见Snapshot.since。
+ *
+ * 记录方式：
+ *   long start = PatchMetrics.start();
+ *   ...
+ *   PatchMetrics.record(PatchMetrics.Phase.FIND, start, 0L, 0L, files);
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public final class PatchMetrics implements PatchMetricsMBean {
+
+	public static final String JMX_DOMAIN = "com.bolin.patchconfig";
+
+	public enum Phase {
+		/** 遍历项目目录查找文件，文件数为实际列出的文件数，使用缓存时不包括缓存中未变化的目录 */
+		FIND("find"),
+		/** dom4j或StAX读取配置文件 */
+		PARSE_XML("parseXml"),
+		/** 读取整个properties文件 */
+		LOAD_PROPERTIES("loadProperties"),
+		/** 写出整个properties文件 */
+		STORE_PROPERTIES("storeProperties"),
+		/** dom4j写出xml文件 */
+		CREATE_XML("createXml"),
+		/** 流式替换xml */
+		PATCH_XML("patchXml"),
+		/** 逐行替换properties */
+		PATCH_PROPERTIES("patchProperties"),
+		/** 流式替换json、yaml等其他格式 */
+		PATCH_FORMAT("patchFormat"),
+		/** 暂存文件fsync并替换原文件，或直接用临时文件替换原文件；流式替换的写入字节数只在此阶段统计 */
+		COMMIT("commit");
+
+		private final String id;
+
+		private Phase(String id) {
+			this.id = id;
+		}
+
+		public String getId() {
+			return id;
+		}
+	}
+
+	private static final PatchMetrics INSTANCE = new PatchMetrics();
+
+	private final PhaseMetrics[] phases;
+
+	private final AtomicLong filesPatched = new AtomicLong();
+
+	private PatchMetrics() {
+		Phase[] values = Phase.values();
+		phases = new PhaseMetrics[values.length];
+		for ( int i = 0; i < values.length; i++ ) {
+			phases[i] = new PhaseMetrics(values[i].getId());
+		}
+		//创建平台MBeanServer需要数百毫秒，在后台线程中注册，不拖慢命令行执行
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				register();
+			}
+		}, "patchconfig-jmx");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * 注册MBean，失败时（如没有权限）只是不能通过JMX查看
+	 */
+	private void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(JMX_DOMAIN + ":type=Metrics");
+			if(!server.isRegistered(name)){
+				server.registerMBean(new StandardMBean(this, PatchMetricsMBean.class), name);
+			}
+			for ( PhaseMetrics phase : phases ) {
+				ObjectName phaseName = new ObjectName(JMX_DOMAIN + ":type=Phase,name=" + phase.getName());
+				if(!server.isRegistered(phaseName)){
+					server.registerMBean(new StandardMBean(phase, PhaseMetricsMBean.class), phaseName);
+				}
+			}
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	public static PatchMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * 阶段开始时间，传给record
+	 * @return
+	 */
+	public static long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * 记录一次阶段执行
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param phase 阶段
+	 * @param startNanos start()的返回值
+	 * @param bytesRead 读取的字节数
+	 * @param bytesWritten 写入的字节数
+	 * @param files 处理的文件数
+	 */
+	public static void record(Phase phase, long startNanos, long bytesRead, long bytesWritten, long files) {
+		INSTANCE.phases[phase.ordinal()].add(System.nanoTime() - startNanos, bytesRead, bytesWritten, files);
+	}
+
+	/**
+	 * 记录实际修改的项目文件数
+	 * @param files
+	 */
+	public static void filesPatched(long files) {
+		if(files > 0){
+			INSTANCE.filesPatched.addAndGet(files);
+		}
+	}
+
+	/**
+	 * 当前的累计统计
+	 * @return
+	 */
+	public static Snapshot snapshot() {
+		return INSTANCE.takeSnapshot();
+	}
+
+	private Snapshot takeSnapshot() {
+		long[][] values = new long[phases.length][];
+		for ( int i = 0; i < phases.length; i++ ) {
+			values[i] = phases[i].values();
+		}
+		return new Snapshot(values, filesPatched.get());
+	}
+
+	@Override
+	public long getFilesVisited() {
+		return phases[Phase.FIND.ordinal()].getFiles();
+	}
+
+	@Override
+	public long getFilesPatched() {
+		return filesPatched.get();
+	}
+
+	@Override
+	public long getBytesRead() {
+		return takeSnapshot().getBytesRead();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return takeSnapshot().getBytesWritten();
+	}
+
+	@Override
+	public long getTotalMillis() {
+		long nanos = 0L;
+		for ( PhaseMetrics phase : phases ) {
+			nanos += phase.nanos.get();
+		}
+		return nanos / 1000000L;
+	}
+
+	@Override
+	public String getSummary() {
+		return takeSnapshot().toTable();
+	}
+
+	@Override
+	public void reset() {
+		for ( PhaseMetrics phase : phases ) {
+			phase.reset();
+		}
+		filesPatched.set(0L);
+	}
+
+	/**
+	 * 单个阶段的累计值
+	 */
+	public static class PhaseMetrics implements PhaseMetricsMBean {
+
+		private final String name;
+
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong nanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final AtomicLong bytesRead = new AtomicLong();
+		private final AtomicLong bytesWritten = new AtomicLong();
+		private final AtomicLong files = new AtomicLong();
+
+		PhaseMetrics(String name) {
+			this.name = name;
+		}
+
+		void add(long elapsed, long read, long written, long fileCount) {
+			count.incrementAndGet();
+			nanos.addAndGet(elapsed);
+			long max;
+			while (elapsed > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, elapsed)) {
+				//其他线程同时更新了最大值，重试
+			}
+			if(read > 0) bytesRead.addAndGet(read);
+			if(written > 0) bytesWritten.addAndGet(written);
+			if(fileCount > 0) files.addAndGet(fileCount);
+		}
+
+		long[] values() {
+			return new long[] { count.get(), nanos.get(), maxNanos.get(), bytesRead.get(), bytesWritten.get(), files.get() };
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public long getCount() {
+			return count.get();
+		}
+
+		@Override
+		public long getTotalMillis() {
+			return nanos.get() / 1000000L;
+		}
+
+		@Override
+		public long getMaxMillis() {
+			return maxNanos.get() / 1000000L;
+		}
+
+		@Override
+		public long getBytesRead() {
+			return bytesRead.get();
+		}
+
+		@Override
+		public long getBytesWritten() {
+			return bytesWritten.get();
+		}
+
+		@Override
+		public long getFiles() {
+			return files.get();
+		}
+
+		@Override
+		public void reset() {
+			count.set(0L);
+			nanos.set(0L);
+			maxNanos.set(0L);
+			bytesRead.set(0L);
+			bytesWritten.set(0L);
+			files.set(0L);
+		}
+	}
+
+	/**
+	 * 某一时刻的统计值，不可修改
+	 */
+	public static class Snapshot {
+
+		private static final int COUNT = 0;
+		private static final int NANOS = 1;
+		private static final int MAX_NANOS = 2;
+		private static final int BYTES_READ = 3;
+		private static final int BYTES_WRITTEN = 4;
+		private static final int FILES = 5;
+
+		private final long[][] values;
+
+		private final long filesPatched;
+
+		Snapshot(long[][] values, long filesPatched) {
+			this.values = values;
+			this.filesPatched = filesPatched;
+		}
+
+		/**
+		 * 从before到现在的增量，单次最长耗时取本快照的值
+		 * @param before 之前的快照
+		 * @return
+		 */
+		public Snapshot since(Snapshot before) {
+			long[][] diff = new long[values.length][];
+			for ( int i = 0; i < values.length; i++ ) {
+				diff[i] = new long[values[i].length];
+				for ( int j = 0; j < values[i].length; j++ ) {
+					diff[i][j] = j == MAX_NANOS ? values[i][j] : values[i][j] - before.values[i][j];
+				}
+			}
+			return new Snapshot(diff, filesPatched - before.filesPatched);
+		}
+
+		public long getCount(Phase phase) {
+			return values[phase.ordinal()][COUNT];
+		}
+
+		public long getMillis(Phase phase) {
+			return values[phase.ordinal()][NANOS] / 1000000L;
+		}
+
+		public long getBytesRead(Phase phase) {
+			return values[phase.ordinal()][BYTES_READ];
+		}
+
+		public long getBytesWritten(Phase phase) {
+			return values[phase.ordinal()][BYTES_WRITTEN];
+		}
+
+		public long getFiles(Phase phase) {
+			return values[phase.ordinal()][FILES];
+		}
+
+		public long getFilesPatched() {
+			return filesPatched;
+		}
+
+		/**
+		 * 是否没有执行过任何阶段
+		 * @return
+		 */
+		public boolean isEmpty() {
+			for ( long[] phase : values ) {
+				if(phase[COUNT] > 0) return false;
+			}
+			return true;
+		}
+
+		public long getBytesRead() {
+			long bytes = 0L;
+			for ( long[] phase : values ) {
+				bytes += phase[BYTES_READ];
+			}
+			return bytes;
+		}
+
+		public long getBytesWritten() {
+			long bytes = 0L;
+			for ( long[] phase : values ) {
+				bytes += phase[BYTES_WRITTEN];
+			}
+			return bytes;
+		}
+
+		/**
+		 * 各阶段统计的表格，没有执行过的阶段不列出
+		 * @return
+		 */
+		public String toTable() {
+			StringBuilder table = new StringBuilder();
+			table.append(String.format("%-16s %8s %10s %10s %12s %12s %10s%n",
+					"phase", "count", "total(ms)", "max(ms)", "read", "written", "files"));
+			Phase[] phases = Phase.values();
+			for ( int i = 0; i < phases.length; i++ ) {
+				long[] phase = values[i];
+				if(phase[COUNT] == 0) continue;
+				table.append(String.format("%-16s %8d %10.1f %10.1f %12s %12s %10d%n", phases[i].getId(),
+						phase[COUNT], phase[NANOS] / 1e6, phase[MAX_NANOS] / 1e6,
+						formatBytes(phase[BYTES_READ]), formatBytes(phase[BYTES_WRITTEN]), phase[FILES]));
+			}
+			table.append(String.format("files patched: %d, read: %s, written: %s%n",
+					filesPatched, formatBytes(getBytesRead()), formatBytes(getBytesWritten())));
+			return table.toString();
+		}
+
+		@Override
+		public String toString() {
+			return toTable();
+		}
+
+		private static String formatBytes(long bytes) {
+			if(bytes < 1024L) return bytes + "B";
+			if(bytes < 1024L * 1024L) return String.format("%.1fKB", bytes / 1024.0);
+			return String.format("%.1fMB", bytes / (1024.0 * 1024.0));
+		}
+	}
+
+	/**
+	 * 统计读取字节数的输入流
+	 */
+	public static class CountingInputStream extends FilterInputStream {
+
+		private long count = 0L;
+
+		public CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int c = super.read();
+			if(c >= 0) count++;
+			return c;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = in.read(b, off, len);
+			if(n > 0) count += n;
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+
+		public long getCount() {
+			return count;
+		}
+	}
+
+}
@@ -0,0 +1,34 @@
+package com.bolin.utils;
+
+/**
+ * PatchMetricsMBean
+ * 所有阶段的汇总统计，通过JMX查看（com.bolin.patchconfig:type=Metrics）
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public interface PatchMetricsMBean {
+
+	/** 查找时遍历的文件数 */
+	long getFilesVisited();
+
+	/** 实际修改的项目文件数 */
+	long getFilesPatched();
+
+	/** 所有阶段读取的字节数 */
+	long getBytesRead();
+
+	/** 所有阶段写入的字节数 */
+	long getBytesWritten();
+
+	/** 所有阶段的总耗时（毫秒），并行执行时会大于实际耗时 */
+	long getTotalMillis();
+
+	/** 各阶段统计的文本表格 */
+	String getSummary();
+
+	/** 全部清零 */
+	void reset();
+
+}
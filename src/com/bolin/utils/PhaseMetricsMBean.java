@@ -0,0 +1,36 @@
+package com.bolin.utils;
+
+/**
+ * PhaseMetricsMBean
+ * 单个阶段的累计统计，通过JMX查看（com.bolin.patchconfig:type=Phase,name=阶段名）
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public interface PhaseMetricsMBean {
+
+	String getName();
+
+	/** 执行次数 */
+	long getCount();
+
+	/** 总耗时（毫秒） */
+	long getTotalMillis();
+
+	/** 单次最长耗时（毫秒） */
+	long getMaxMillis();
+
+	/** 读取的字节数 */
+	long getBytesRead();
+
+	/** 写入的字节数 */
+	long getBytesWritten();
+
+	/** 处理的文件数，查找阶段为遍历的文件数 */
+	long getFiles();
+
+	/** 清零 */
+	void reset();
+
+}
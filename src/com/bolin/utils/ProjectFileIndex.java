@@ -0,0 +1,135 @@
+package com.bolin.utils;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ProjectFileIndex
+ * 项目目录的文件名索引
+ *
+ * 对项目目录只做一次完整遍历，建立 文件名 -> 文件路径列表 的索引，
+ * 之后所有配置文件都在索引中查找，不再为每个配置文件重新遍历整个目录。
+ * 同名文件按遍历顺序保存，第一个即为原findTargetFile会返回的文件。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class ProjectFileIndex {
+
+	private final File projectDir;
+
+	private final Map<String, List<File>> nameIndex = new HashMap<String, List<File>>();
+
+	private int fileCount = 0;
+
+	private int visitedCount = -1;
+
+	ProjectFileIndex(File projectDir) {
+		super();
+		this.projectDir = projectDir;
+	}
+
+	/**
+	 * 遍历项目目录，建立文件名索引
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param projectDir 项目目录
+	 * @return
+	 */
+	public static ProjectFileIndex scan(File projectDir) {
+		ParallelFileWalker walker = new ParallelFileWalker();
+		try {
+			return scan(projectDir, walker);
+		}
+		finally {
+			walker.shutdown();
+		}
+	}
+
+	/**
+	 * 使用指定的遍历器遍历项目目录，建立文件名索引
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param projectDir 项目目录
+	 * @param walker 目录遍历器
+	 * @return
+	 */
+	public static ProjectFileIndex scan(File projectDir, ParallelFileWalker walker) {
+		ProjectFileIndex index = new ProjectFileIndex(projectDir);
+		if(projectDir == null) return index;
+		for ( Path path : walker.walk(projectDir.toPath()) ) {
+			index.add(path.toFile());
+		}
+		return index;
+	}
+
+	/**
+	 * 添加一个文件到索引中
+	 * @param file
+	 */
+	void add(File file) {
+		String name = file.getName();
+		List<File> paths = nameIndex.get(name);
+		if(paths == null){
+			paths = new ArrayList<File>(1);
+			nameIndex.put(name, paths);
+		}
+		paths.add(file);
+		fileCount++;
+	}
+
+	/**
+	 * 获取第一个同名文件，没有则返回null
+	 * @param fileName
+	 * @return
+	 */
+	public File first(String fileName) {
+		List<File> paths = nameIndex.get(fileName);
+		if(paths == null || paths.isEmpty()) return null;
+		return paths.get(0);
+	}
+
+	/**
+	 * 获取所有同名文件
+	 * @param fileName
+	 * @return
+	 */
+	public List<File> get(String fileName) {
+		List<File> paths = nameIndex.get(fileName);
+		if(paths == null) return Collections.emptyList();
+		return Collections.unmodifiableList(paths);
+	}
+
+	public File getProjectDir() {
+		return projectDir;
+	}
+
+	/**
+	 * 索引中的文件总数
+	 * @return
+	 */
+	public int getFileCount() {
+		return fileCount;
+	}
+
+	/**
+	 * 建立索引时实际列出的文件数，使用缓存时只包括重新列出的目录中的文件
+	 * @return
+	 */
+	public int getVisitedCount() {
+		return visitedCount < 0 ? fileCount : visitedCount;
+	}
+
+	void setVisitedCount(int visitedCount) {
+		this.visitedCount = visitedCount;
+	}
+
+}
@@ -0,0 +1,404 @@
+package com.bolin.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ProjectScanCache
+ * 项目目录遍历结果的持久化缓存
+ *
+ * 缓存中保存每个目录的修改时间和目录项列表，保存在用户目录下
+ * （默认 ~/.patchconfig/scan-cache，每个项目目录一个缓存文件）。
+ * 再次扫描同一项目时只检查目录的修改时间，未变化的目录直接使用缓存的目录项，
+ * 只有修改时间变化的目录才会重新列出。
+ *
+ * 目录修改时间只在目录项增删改名时变化，文件内容的修改不影响文件名索引。
+ * 修改时间与上次扫描时间过于接近的目录（文件系统时间精度不够时可能漏掉变化）
+ * 下次扫描时总是重新列出。
+ *
+ * 被ScanFilter排除的目录和文件不会列出，也不保存在缓存中；缓存文件按项目目录和规则区分，
+ * 规则变化后使用另一个缓存文件。
+ * 链接的处理与ParallelFileWalker相同：指向目录的链接会进入，形成循环的跳过。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class ProjectScanCache {
+
+	private static final int MAGIC = 0x50434944;
+
+	private static final int VERSION = 2;
+
+	/**
+	 * 修改时间在上次扫描时间之前这个范围内的目录视为不可信
+	 */
+	private static final long RACY_WINDOW_MILLIS = 2000L;
+
+	private final File cacheDir;
+
+	private final int parallelism;
+
+	private final ScanFilter filter;
+
+	/**
+	 * 缓存目录默认为 ~/.patchconfig/scan-cache，并行度默认为CPU核数
+	 */
+	public ProjectScanCache() {
+		this(defaultCacheDir(), Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param cacheDir 缓存文件目录
+	 * @param parallelism 重新列出目录时的并行度
+	 */
+	public ProjectScanCache(File cacheDir, int parallelism) {
+		this(cacheDir, parallelism, ScanFilter.NONE);
+	}
+
+	/**
+	 * @param cacheDir 缓存文件目录
+	 * @param parallelism 重新列出目录时的并行度
+	 * @param filter 目录排除规则和最大深度
+	 */
+	public ProjectScanCache(File cacheDir, int parallelism, ScanFilter filter) {
+		super();
+		this.cacheDir = cacheDir;
+		this.parallelism = Math.max(1, parallelism);
+		this.filter = filter == null ? ScanFilter.NONE : filter;
+	}
+
+	public static File defaultCacheDir() {
+		return new File(System.getProperty("user.home"), ".patchconfig" + File.separator + "scan-cache");
+	}
+
+	/**
+	 * 扫描项目目录，建立文件名索引
+	 * 优先使用缓存，只重新列出修改时间变化的目录，扫描结果有变化时写回缓存
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param projectDir 项目目录
+	 * @return
+	 */
+	public ProjectFileIndex scan(File projectDir) {
+		ProjectFileIndex index = new ProjectFileIndex(projectDir);
+		if(projectDir == null) return index;
+		if(!projectDir.isDirectory()){
+			if(projectDir.exists()){
+				index.add(projectDir);
+			}
+			return index;
+		}
+
+		File cacheFile = cacheFile(projectDir);
+		DirNode cached = null;
+		long lastScanTime = 0L;
+		if(cacheFile.isFile()){
+			try {
+				CacheContent content = read(cacheFile, projectDir);
+				if(content != null){
+					cached = content.root;
+					lastScanTime = content.scanTime;
+				}
+			}
+			catch (IOException e) {
+				//缓存损坏时重新扫描
+				cached = null;
+			}
+		}
+
+		long scanTime = System.currentTimeMillis();
+		AtomicBoolean changed = new AtomicBoolean(cached == null);
+		AtomicInteger visited = new AtomicInteger();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		DirNode root;
+		try {
+			root = pool.invoke(new RefreshTask(null, projectDir.toPath(), "", 0, filter, cached, lastScanTime, changed, visited));
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		if(changed.get() && root != null){
+			try {
+				write(cacheFile, projectDir, root, scanTime);
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		addToIndex(index, projectDir, root);
+		index.setVisitedCount(visited.get());
+		return index;
+	}
+
+	/**
+	 * 删除项目目录对应的缓存
+	 * @param projectDir
+	 * @return
+	 */
+	public boolean invalidate(File projectDir) {
+		File cacheFile = cacheFile(projectDir);
+		return !cacheFile.exists() || cacheFile.delete();
+	}
+
+	File cacheFile(File projectDir) {
+		return new File(cacheDir, digest(projectDir.getAbsolutePath() + "\n" + filter.signature()) + ".idx");
+	}
+
+	private void addToIndex(ProjectFileIndex index, File dir, DirNode node) {
+		if(node == null) return;
+		for ( int i = 0; i < node.names.length; i++ ) {
+			File file = new File(dir, node.names[i]);
+			if(node.children[i] != null){
+				addToIndex(index, file, node.children[i]);
+			}else{
+				index.add(file);
+			}
+		}
+	}
+
+	/**
+	 * 缓存中的一个目录
+	 * names为目录项名称，children中对应位置为子目录节点，文件为null
+	 */
+	private static class DirNode {
+		long mtime;
+		String[] names;
+		DirNode[] children;
+
+		Map<String, DirNode> childMap() {
+			Map<String, DirNode> map = new HashMap<String, DirNode>();
+			for ( int i = 0; i < names.length; i++ ) {
+				if(children[i] != null) map.put(names[i], children[i]);
+			}
+			return map;
+		}
+	}
+
+	private static class CacheContent {
+		long scanTime;
+		DirNode root;
+	}
+
+	private static class RefreshTask extends RecursiveTask<DirNode> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final RefreshTask parent;
+		private final Path dir;
+		private final String relativePath;
+		private final int depth;
+		private final ScanFilter filter;
+		private final DirNode cached;
+		private final long lastScanTime;
+		private final AtomicBoolean changed;
+		/** 重新列出的文件数 */
+		private final AtomicInteger visited;
+
+		RefreshTask(RefreshTask parent, Path dir, String relativePath, int depth, ScanFilter filter, DirNode cached, long lastScanTime, AtomicBoolean changed, AtomicInteger visited) {
+			this.parent = parent;
+			this.dir = dir;
+			this.relativePath = relativePath;
+			this.depth = depth;
+			this.filter = filter;
+			this.cached = cached;
+			this.lastScanTime = lastScanTime;
+			this.changed = changed;
+			this.visited = visited;
+		}
+
+		@Override
+		protected DirNode compute() {
+			long mtime;
+			try {
+				mtime = Files.getLastModifiedTime(dir).toMillis();
+			}
+			catch (IOException e) {
+				changed.set(true);
+				return null;
+			}
+
+			DirNode node = new DirNode();
+			node.mtime = mtime;
+			List<RefreshTask> subTasks = new ArrayList<RefreshTask>();
+			List<Integer> subTaskIndexes = new ArrayList<Integer>();
+
+			if(cached != null && cached.mtime == mtime && mtime < lastScanTime - RACY_WINDOW_MILLIS){
+				//目录未变化，直接使用缓存的目录项
+				node.names = cached.names;
+				node.children = new DirNode[cached.names.length];
+				for ( int i = 0; i < cached.names.length; i++ ) {
+					if(cached.children[i] != null){
+						subTasks.add(child(cached.names[i], cached.children[i]));
+						subTaskIndexes.add(i);
+					}
+				}
+			}else{
+				if(cached != null) changed.set(true);
+				List<String> names = new ArrayList<String>();
+				List<Boolean> isDirs = new ArrayList<Boolean>();
+				try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+					for ( Path entry : stream ) {
+						String name = entry.getFileName().toString();
+						String path = ScanFilter.childPath(relativePath, name);
+						int type = ParallelFileWalker.entryType(entry);
+						if(type == ParallelFileWalker.LINKED_DIRECTORY && ParallelFileWalker.isLoop(entry, dirs())) continue;
+						boolean isDir = type != ParallelFileWalker.FILE;
+						if(isDir ? filter.enterDirectory(path, name, depth + 1) : filter.acceptFile(path, name)){
+							names.add(name);
+							isDirs.add(isDir);
+							if(!isDir) visited.incrementAndGet();
+						}
+					}
+				}
+				catch (IOException e) {
+					names.clear();
+					isDirs.clear();
+				}
+				node.names = names.toArray(new String[names.size()]);
+				node.children = new DirNode[node.names.length];
+				Map<String, DirNode> oldChildren = cached == null ? new HashMap<String, DirNode>() : cached.childMap();
+				for ( int i = 0; i < node.names.length; i++ ) {
+					if(isDirs.get(i)){
+						DirNode oldChild = oldChildren.get(node.names[i]);
+						subTasks.add(child(node.names[i], oldChild));
+						subTaskIndexes.add(i);
+					}
+				}
+			}
+
+			invokeAll(subTasks);
+			for ( int i = 0; i < subTasks.size(); i++ ) {
+				DirNode child = subTasks.get(i).join();
+				//子目录读取失败时当作空目录，保持目录项结构不变
+				if(child == null){
+					child = new DirNode();
+					child.mtime = -1L;
+					child.names = new String[0];
+					child.children = new DirNode[0];
+				}
+				node.children[subTaskIndexes.get(i)] = child;
+			}
+			return node;
+		}
+
+		private RefreshTask child(String name, DirNode cachedChild) {
+			return new RefreshTask(this, dir.resolve(name), ScanFilter.childPath(relativePath, name), depth + 1,
+					filter, cachedChild, lastScanTime, changed, visited);
+		}
+
+		/**
+		 * 当前目录及其所有上级目录
+		 */
+		private List<Path> dirs() {
+			List<Path> dirs = new ArrayList<Path>();
+			for ( RefreshTask task = this; task != null; task = task.parent ) {
+				dirs.add(task.dir);
+			}
+			return dirs;
+		}
+	}
+
+	private static CacheContent read(File cacheFile, File projectDir) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile), 65536))) {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+			if(!projectDir.getAbsolutePath().equals(in.readUTF())) return null;
+			CacheContent content = new CacheContent();
+			content.scanTime = in.readLong();
+			content.root = readNode(in);
+			return content;
+		}
+	}
+
+	private static DirNode readNode(DataInputStream in) throws IOException {
+		DirNode node = new DirNode();
+		node.mtime = in.readLong();
+		int count = in.readInt();
+		node.names = new String[count];
+		node.children = new DirNode[count];
+		for ( int i = 0; i < count; i++ ) {
+			node.names[i] = in.readUTF();
+			if(in.readBoolean()){
+				node.children[i] = readNode(in);
+			}
+		}
+		return node;
+	}
+
+	private static void write(File cacheFile, File projectDir, DirNode root, long scanTime) throws IOException {
+		File dir = cacheFile.getParentFile();
+		if(!dir.isDirectory() && !dir.mkdirs()){
+			throw new IOException("无法创建缓存目录：" + dir.getAbsolutePath());
+		}
+		//同一项目可能在多个线程中同时扫描，临时文件名不能相同
+		File tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", dir);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 65536))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(projectDir.getAbsolutePath());
+				out.writeLong(scanTime);
+				writeNode(out, root);
+			}
+			Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			tmpFile.delete();
+		}
+	}
+
+	private static void writeNode(DataOutputStream out, DirNode node) throws IOException {
+		out.writeLong(node.mtime);
+		out.writeInt(node.names.length);
+		for ( int i = 0; i < node.names.length; i++ ) {
+			out.writeUTF(node.names[i]);
+			out.writeBoolean(node.children[i] != null);
+			if(node.children[i] != null){
+				writeNode(out, node.children[i]);
+			}
+		}
+	}
+
+	private static String digest(String path) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			byte[] bytes = md.digest(path.getBytes("UTF-8"));
+			StringBuilder hex = new StringBuilder(bytes.length * 2);
+			for ( byte b : bytes ) {
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+				hex.append(Character.forDigit(b & 0xF, 16));
+			}
+			return hex.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,197 @@
+package com.bolin.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * PropertiesCodec
+ * properties文件key、value和注释的转义与反转义
+ *
+ * 反转义使用的缓冲区随最长的一行扩大后保留，转义结果分块直接写入Writer，
+ * 不生成StringBuffer和中间字符串。一个实例只能在一个线程中使用。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+final class PropertiesCodec {
+
+	static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+	/** 一个字符转义后最多6个字符（&#92;uXXXX） */
+	private static final int MAX_ESCAPED = 6;
+
+	private char[] convtBuf = new char[1024];
+
+	private final char[] outBuf = new char[1024];
+
+	/**
+	 * 反转义，返回结果字符串
+	 * @param in
+	 * @param off
+	 * @param len
+	 * @return
+	 */
+	String decode(char[] in, int off, int len) {
+		ensureCapacity(len);
+		int outLen = decode(in, off, len, convtBuf);
+		return new String(convtBuf, 0, outLen);
+	}
+
+	/**
+	 * 反转义，结果追加到sb
+	 * @param in
+	 * @param off
+	 * @param len
+	 * @param sb
+	 */
+	void decode(char[] in, int off, int len, StringBuilder sb) {
+		ensureCapacity(len);
+		int outLen = decode(in, off, len, convtBuf);
+		sb.append(convtBuf, 0, outLen);
+	}
+
+	/**
+	 * 转义后直接写入writer
+	 * @param writer
+	 * @param s
+	 * @param escapeSpace 是否转义所有空格，为false时只转义开头的空格
+	 * @param escapeUnicode 是否将非ASCII字符写成&#92;uXXXX
+	 * @throws IOException
+	 */
+	void encode(Writer writer, String s, boolean escapeSpace, boolean escapeUnicode) throws IOException {
+		char[] out = outBuf;
+		int limit = out.length - MAX_ESCAPED;
+		int pos = 0;
+		int len = s.length();
+		for ( int x = 0; x < len; x++ ) {
+			if(pos > limit){
+				writer.write(out, 0, pos);
+				pos = 0;
+			}
+			pos = escape(s.charAt(x), x == 0 || escapeSpace, escapeUnicode, out, pos);
+		}
+		if(pos > 0){
+			writer.write(out, 0, pos);
+		}
+	}
+
+	private void ensureCapacity(int len) {
+		if (convtBuf.length < len) {
+			int newLen = len * 2;
+			if (newLen < 0) {
+				newLen = Integer.MAX_VALUE;
+			}
+			convtBuf = new char[newLen];
+		}
+	}
+
+	/*
+	 * Converts encoded &#92;uxxxx to unicode chars
+	 * and changes special saved chars to their original forms.
+	 * out的长度不能小于len，返回结果长度
+	 */
+	static int decode(char[] in, int off, int len, char[] out) {
+		char aChar;
+		int outLen = 0;
+		int end = off + len;
+
+		while (off < end) {
+			aChar = in[off++];
+			if (aChar == '\\') {
+				aChar = in[off++];
+				if(aChar == 'u') {
+					// Read the xxxx
+					int value=0;
+					for (int i=0; i<4; i++) {
+						aChar = in[off++];
+						switch (aChar) {
+						case '0': case '1': case '2': case '3': case '4':
+						case '5': case '6': case '7': case '8': case '9':
+							value = (value << 4) + aChar - '0';
+							break;
+						case 'a': case 'b': case 'c':
+						case 'd': case 'e': case 'f':
+							value = (value << 4) + 10 + aChar - 'a';
+							break;
+						case 'A': case 'B': case 'C':
+						case 'D': case 'E': case 'F':
+							value = (value << 4) + 10 + aChar - 'A';
+							break;
+						default:
+							throw new IllegalArgumentException(
+									"Malformed \\uxxxx encoding.");
+						}
+					}
+					out[outLen++] = (char)value;
+				} else {
+					if (aChar == 't') aChar = '\t';
+					else if (aChar == 'r') aChar = '\r';
+					else if (aChar == 'n') aChar = '\n';
+					else if (aChar == 'f') aChar = '\f';
+					out[outLen++] = aChar;
+				}
+			} else {
+				out[outLen++] = aChar;
+			}
+		}
+		return outLen;
+	}
+
+	/*
+	 * Converts unicodes to encoded &#92;uxxxx and escapes
+	 * special characters with a preceding slash.
+	 * 写入out的pos位置，out至少还有6个字符的空间，返回新的位置
+	 */
+	static int escape(char aChar, boolean escapeSpace, boolean escapeUnicode, char[] out, int pos) {
+		// Handle common case first, selecting largest block that
+		// avoids the specials below
+		if ((aChar > 61) && (aChar < 127)) {
+			if (aChar == '\\') {
+				out[pos++] = '\\';
+			}
+			out[pos++] = aChar;
+			return pos;
+		}
+		switch(aChar) {
+		case ' ':
+			if (escapeSpace)
+				out[pos++] = '\\';
+			out[pos++] = ' ';
+			break;
+		case '\t':out[pos++] = '\\'; out[pos++] = 't';
+		break;
+		case '\n':out[pos++] = '\\'; out[pos++] = 'n';
+		break;
+		case '\r':out[pos++] = '\\'; out[pos++] = 'r';
+		break;
+		case '\f':out[pos++] = '\\'; out[pos++] = 'f';
+		break;
+		case '=': // Fall through
+		case ':': // Fall through
+		case '#': // Fall through
+		case '!':
+			out[pos++] = '\\'; out[pos++] = aChar;
+			break;
+		default:
+			if (((aChar < 0x0020) || (aChar > 0x007e)) & escapeUnicode ) {
+				out[pos++] = '\\';
+				out[pos++] = 'u';
+				out[pos++] = HEX_DIGIT[(aChar >> 12) & 0xF];
+				out[pos++] = HEX_DIGIT[(aChar >>  8) & 0xF];
+				out[pos++] = HEX_DIGIT[(aChar >>  4) & 0xF];
+				out[pos++] = HEX_DIGIT[ aChar        & 0xF];
+			} else {
+				out[pos++] = aChar;
+			}
+		}
+		return pos;
+	}
+
+	/** A table of hex digits */
+	private static final char[] HEX_DIGIT = {
+		'0','1','2','3','4','5','6','7','8','9','A','B','C','D','E','F'
+	};
+
+}
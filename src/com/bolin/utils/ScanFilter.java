@@ -0,0 +1,215 @@
+package com.bolin.utils;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ScanFilter
+ * 遍历项目目录时的包含、排除规则和最大深度
+ *
+ * 规则为glob，不含/的规则匹配文件或目录名称（如node_modules、*.min.js），
+ * 含/的规则匹配相对项目目录的路径（如WEB-INF/lib、src/&#42;&#42;/static），以&#42;&#42;/开头时也匹配项目根目录下的同名路径。
+ * 排除规则对目录和文件都生效，被排除的目录在进入前判断，整个子目录不会被列出；
+ * 包含规则只对文件生效，有包含规则时只有匹配的文件会加入索引。
+ * 规则在创建时编译，不含通配符的名称规则直接按名称比较。
+ *
+ * 深度与find -maxdepth相同：项目目录下的目录项深度为1，maxDepth为n时深度为n的目录不再进入。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class ScanFilter {
+
+	/**
+	 * 默认排除的目录：版本库、IDE和构建工具目录，依赖包目录，其中不会有要替换的配置文件。
+	 * static、assets等静态资源目录中可能有json、yaml配置文件，不默认排除，需要时用--exclude指定
+	 */
+	public static final List<String> DEFAULT_EXCLUDES = Collections.unmodifiableList(Arrays.asList(
+			".git", ".svn", ".hg", ".idea", ".gradle", ".settings",
+			"node_modules", "bower_components", "**/WEB-INF/lib"));
+
+	/** 不排除任何目录，不限深度 */
+	public static final ScanFilter NONE = new ScanFilter(null, null, -1);
+
+	private static final ScanFilter DEFAULTS = new ScanFilter(null, DEFAULT_EXCLUDES, -1);
+
+	private final List<String> includes;
+
+	private final List<String> excludes;
+
+	private final int maxDepth;
+
+	private final Rules includeRules;
+
+	private final Rules excludeRules;
+
+	/**
+	 * @param includes 包含规则，为空时包含所有文件
+	 * @param excludes 排除规则
+	 * @param maxDepth 最大深度，小于0时不限
+	 */
+	public ScanFilter(Collection<String> includes, Collection<String> excludes, int maxDepth) {
+		super();
+		this.includes = copy(includes);
+		this.excludes = copy(excludes);
+		this.maxDepth = maxDepth;
+		this.includeRules = new Rules(this.includes);
+		this.excludeRules = new Rules(this.excludes);
+	}
+
+	/**
+	 * 只排除DEFAULT_EXCLUDES中的目录，不限深度
+	 * @return
+	 */
+	public static ScanFilter defaults() {
+		return DEFAULTS;
+	}
+
+	/**
+	 * 是否进入目录
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param relativePath 相对项目目录的路径，以/分隔
+	 * @param name 目录名称
+	 * @param depth 目录深度，项目目录下的目录为1
+	 * @return
+	 */
+	public boolean enterDirectory(String relativePath, String name, int depth) {
+		if(maxDepth >= 0 && depth >= maxDepth) return false;
+		return !excludeRules.matches(relativePath, name);
+	}
+
+	/**
+	 * 文件是否加入索引
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param relativePath 相对项目目录的路径，以/分隔
+	 * @param name 文件名称
+	 * @return
+	 */
+	public boolean acceptFile(String relativePath, String name) {
+		if(excludeRules.matches(relativePath, name)) return false;
+		return includeRules.isEmpty() || includeRules.matches(relativePath, name);
+	}
+
+	/**
+	 * 规则的文本描述，规则不同时遍历结果不同，用于区分遍历缓存
+	 * @return
+	 */
+	public String signature() {
+		return "include=" + includes + ";exclude=" + excludes + ";maxDepth=" + maxDepth;
+	}
+
+	public List<String> getIncludes() {
+		return includes;
+	}
+
+	public List<String> getExcludes() {
+		return excludes;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * 子目录的相对路径
+	 * @param parent 上级目录的相对路径，项目目录为空字符串
+	 * @param name
+	 * @return
+	 */
+	static String childPath(String parent, String name) {
+		return parent.isEmpty() ? name : parent + "/" + name;
+	}
+
+	@Override
+	public String toString() {
+		return signature();
+	}
+
+	private static List<String> copy(Collection<String> patterns) {
+		if(patterns == null || patterns.isEmpty()) return Collections.emptyList();
+		return Collections.unmodifiableList(new ArrayList<String>(patterns));
+	}
+
+	/**
+	 * 编译后的一组规则
+	 */
+	private static class Rules {
+
+		/** 不含通配符的名称 */
+		private final Set<String> names = new HashSet<String>();
+
+		private final List<PathMatcher> nameMatchers = new ArrayList<PathMatcher>();
+
+		private final List<PathMatcher> pathMatchers = new ArrayList<PathMatcher>();
+
+		Rules(List<String> patterns) {
+			for ( String pattern : patterns ) {
+				String glob = pattern.replace('\\', '/');
+				while (glob.endsWith("/") && glob.length() > 1) {
+					glob = glob.substring(0, glob.length() - 1);
+				}
+				if(glob.isEmpty()) continue;
+				if(glob.indexOf('/') < 0){
+					if(isLiteral(glob)){
+						names.add(glob);
+					}else{
+						nameMatchers.add(compile(glob));
+					}
+					continue;
+				}
+				pathMatchers.add(compile(glob));
+				if(glob.startsWith("**/")){
+					pathMatchers.add(compile(glob.substring(3)));
+				}
+			}
+		}
+
+		boolean isEmpty() {
+			return names.isEmpty() && nameMatchers.isEmpty() && pathMatchers.isEmpty();
+		}
+
+		boolean matches(String relativePath, String name) {
+			if(names.contains(name)) return true;
+			if(!nameMatchers.isEmpty()){
+				Path namePath = Paths.get(name);
+				for ( PathMatcher matcher : nameMatchers ) {
+					if(matcher.matches(namePath)) return true;
+				}
+			}
+			if(!pathMatchers.isEmpty()){
+				Path path = Paths.get(relativePath);
+				for ( PathMatcher matcher : pathMatchers ) {
+					if(matcher.matches(path)) return true;
+				}
+			}
+			return false;
+		}
+
+		private static boolean isLiteral(String glob) {
+			for ( int i = 0; i < glob.length(); i++ ) {
+				char c = glob.charAt(i);
+				if(c == '*' || c == '?' || c == '[' || c == '{' || c == '\\') return false;
+			}
+			return true;
+		}
+
+		private static PathMatcher compile(String glob) {
+			return FileSystems.getDefault().getPathMatcher("glob:" + glob);
+		}
+	}
+
+}
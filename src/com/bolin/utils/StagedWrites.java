@@ -0,0 +1,246 @@
+package com.bolin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * StagedWrites
+ * 一次替换中所有要修改的文件先写到同目录下的临时文件，最后统一提交
+ *
+ * 提交时先同时fsync所有临时文件，再逐个改名替换原文件，每个目录只fsync一次。
+ * 改名前为原文件建立硬链接备份（不支持硬链接时复制），任何一步出错都恢复所有原文件，
+ * 因此一次替换要么全部生效，要么原文件都保持不变。
+ * 未提交时调用rollback删除所有临时文件。
+ *
+ * 同一文件可以多次暂存，后一次读取上一次暂存的内容（见readFrom），提交时只替换一次。
+ * 可以在多个线程中使用，但同一文件的暂存需由调用方串行。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class StagedWrites {
+
+	private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+	/** 同时fsync的最大线程数 */
+	private static final int SYNC_THREADS = 8;
+
+	private final String prefix;
+
+	private final AtomicInteger counter = new AtomicInteger();
+
+	/** 目标文件 -> 已暂存的临时文件 */
+	private final Map<File, File> staged = new LinkedHashMap<File, File>();
+
+	private boolean finished = false;
+
+	public StagedWrites() {
+		super();
+		prefix = ".patchconfig-" + Long.toString(System.nanoTime(), 36) + "-" + SEQUENCE.incrementAndGet() + "-";
+	}
+
+	/**
+	 * 为目标文件分配一个新的临时文件，写完后调用stage登记；
+	 * 临时文件名保留原文件名作为后缀，扩展名不变
+	 * @param target
+	 * @return
+	 */
+	public File newTempFile(File target) {
+		File absolute = target.getAbsoluteFile();
+		return new File(absolute.getParentFile(), prefix + counter.incrementAndGet() + "-" + absolute.getName());
+	}
+
+	/**
+	 * 登记目标文件的新内容，之前暂存的内容被丢弃
+	 * @param target
+	 * @param tmpFile newTempFile返回的临时文件
+	 */
+	public void stage(File target, File tmpFile) {
+		File previous;
+		synchronized (this) {
+			if(finished){
+				throw new IllegalStateException("已提交或回滚");
+			}
+			previous = staged.put(target.getAbsoluteFile(), tmpFile);
+		}
+		if(previous != null && !previous.equals(tmpFile)){
+			previous.delete();
+		}
+	}
+
+	/**
+	 * 目标文件的当前内容：已暂存时为临时文件，否则为原文件
+	 * @param target
+	 * @return
+	 */
+	public synchronized File readFrom(File target) {
+		File tmpFile = staged.get(target.getAbsoluteFile());
+		return tmpFile == null ? target : tmpFile;
+	}
+
+	public synchronized int size() {
+		return staged.size();
+	}
+
+	/**
+	 * 提交所有暂存的文件
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @throws IOException 出错时原文件已恢复，临时文件已删除
+	 */
+	public void commit() throws IOException {
+		Map<File, File> files;
+		synchronized (this) {
+			if(finished){
+				throw new IllegalStateException("已提交或回滚");
+			}
+			finished = true;
+			files = new LinkedHashMap<File, File>(staged);
+		}
+		if(files.isEmpty()) return;
+
+		long start = PatchMetrics.start();
+		long bytes = 0L;
+		for ( File tmpFile : files.values() ) {
+			bytes += tmpFile.length();
+		}
+		Map<File, File> backups = new LinkedHashMap<File, File>();
+		List<File> replaced = new ArrayList<File>();
+		try {
+			fsyncAll(new ArrayList<File>(files.values()));
+			for ( File target : files.keySet() ) {
+				if(target.exists()){
+					File backup = new File(target.getParentFile(), prefix + "bak-" + target.getName());
+					backup(target, backup);
+					backups.put(target, backup);
+				}
+			}
+			Set<File> dirs = new LinkedHashSet<File>();
+			for ( Map.Entry<File, File> entry : files.entrySet() ) {
+				AtomicFiles.replace(entry.getValue(), entry.getKey());
+				replaced.add(entry.getKey());
+				dirs.add(entry.getKey().getParentFile());
+			}
+			for ( File dir : dirs ) {
+				AtomicFiles.fsyncDirectory(dir);
+			}
+		}
+		catch (IOException e) {
+			restore(replaced, backups);
+			for ( File tmpFile : files.values() ) {
+				tmpFile.delete();
+			}
+			throw e;
+		}
+		finally {
+			for ( File backup : backups.values() ) {
+				backup.delete();
+			}
+			PatchMetrics.record(PatchMetrics.Phase.COMMIT, start, 0L, bytes, files.size());
+		}
+	}
+
+	/**
+	 * 放弃所有暂存的文件
+	 */
+	public void rollback() {
+		List<File> tmpFiles;
+		synchronized (this) {
+			if(finished) return;
+			finished = true;
+			tmpFiles = new ArrayList<File>(staged.values());
+		}
+		for ( File tmpFile : tmpFiles ) {
+			tmpFile.delete();
+		}
+	}
+
+	private static void backup(File target, File backup) throws IOException {
+		try {
+			Files.createLink(backup.toPath(), target.toPath());
+		}
+		catch (IOException e) {
+			Files.copy(target.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+		}
+		catch (UnsupportedOperationException e) {
+			Files.copy(target.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+		}
+	}
+
+	/**
+	 * 已替换的文件用备份恢复，新建的文件删除
+	 */
+	private static void restore(List<File> replaced, Map<File, File> backups) {
+		for ( File target : replaced ) {
+			File backup = backups.get(target);
+			try {
+				if(backup == null){
+					Files.deleteIfExists(target.toPath());
+				}else{
+					AtomicFiles.replace(backup, target);
+				}
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * 同时fsync多个文件，磁盘可以合并刷新
+	 */
+	private static void fsyncAll(List<File> files) throws IOException {
+		if(files.size() == 1){
+			AtomicFiles.fsync(files.get(0));
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(SYNC_THREADS, files.size()));
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for ( final File file : files ) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						AtomicFiles.fsync(file);
+						return null;
+					}
+				}));
+			}
+			for ( Future<Void> future : futures ) {
+				try {
+					future.get();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("fsync被中断", e);
+				}
+				catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,501 @@
+package com.bolin.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * StreamingPropertiesPatcher
+ * 逐行替换properties文件中的配置项
+ *
+ * 按行读取要修改的文件，只重写配置文件中存在的key所在的行，
+ * 其它行（注释、空行、其它配置项）按原始字节原样写出；
+ * 要修改的文件中没有的key追加到文件末尾。
+ * 只需一次读写，内存占用只与最长的一行有关，与文件大小无关。
+ *
+ * 替换后的value和追加的配置项与CommentedProperties.store一样转义。
+ * 指定字符集时非ASCII字符写成&#92;uXXXX，不依赖读取方使用的字符集。
+ * 不指定字符集时逐行判断文件的字符集（见CharsetSniffer）：UTF-8的BOM、
+ * 第一个含非ASCII字节的行是合法的UTF-8时为UTF-8，否则为GBK；文件中已有未转义的非ASCII字符时，
+ * 替换的值也按文件的字符集直接写出（该字符集无法表示的字符仍写成&#92;uXXXX），
+ * 未替换的行始终按原始字节写出，不会因为字符集判断错误而损坏。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class StreamingPropertiesPatcher {
+
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private final Map<String, String> replacements;
+
+	/**
+	 * 要修改的文件的字符集，为null时按文件内容判断
+	 */
+	private final Charset charset;
+
+	/**
+	 * 按文件内容判断字符集
+	 * @param replacements 要替换的配置项，按顺序追加未找到的key
+	 */
+	public StreamingPropertiesPatcher(Map<String, String> replacements) {
+		super();
+		this.replacements = replacements;
+		this.charset = null;
+	}
+
+	/**
+	 * @param replacements 要替换的配置项，按顺序追加未找到的key
+	 * @param charset 要修改的文件的字符集
+	 */
+	public StreamingPropertiesPatcher(Map<String, String> replacements, String charset) {
+		super();
+		this.replacements = replacements;
+		this.charset = Charset.forName(charset);
+	}
+
+	/**
+	 * 读取配置文件中的所有配置项，字符集按文件内容判断
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param source 配置文件
+	 * @return
+	 * @throws IOException
+	 */
+	public static Map<String, String> loadReplacements(File source) throws IOException {
+		Charset sourceCharset = CharsetSniffer.sniff(source);
+		if(sourceCharset != CharsetSniffer.UTF_8 && sourceCharset != CharsetSniffer.GBK){
+			throw new IOException("不支持" + sourceCharset.name() + "编码的properties文件：" + source.getName());
+		}
+		return loadReplacements(source, sourceCharset.name());
+	}
+
+	/**
+	 * 读取配置文件中的所有配置项
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param source 配置文件
+	 * @param charset 字符集
+	 * @return
+	 * @throws IOException
+	 */
+	@SuppressWarnings("rawtypes")
+	public static Map<String, String> loadReplacements(File source, String charset) throws IOException {
+		CommentedProperties sourceProperties = new CommentedProperties();
+		long start = PatchMetrics.start();
+		InputStream in = new FileInputStream(source);
+		try {
+			sourceProperties.load(in, charset);
+		}
+		finally {
+			in.close();
+			PatchMetrics.record(PatchMetrics.Phase.LOAD_PROPERTIES, start, source.length(), 0L, 1L);
+		}
+		Map<String, String> replacements = new LinkedHashMap<String, String>();
+		for ( Iterator iterator = sourceProperties.keySet().iterator(); iterator.hasNext(); ) {
+			String key = (String) iterator.next();
+			//UTF-8的BOM解码后在第一个key的开头
+			replacements.put(key.startsWith("\uFEFF") ? key.substring(1) : key, sourceProperties.getProperty(key));
+		}
+		return replacements;
+	}
+
+	/**
+	 * 替换文件中的配置项
+	 * 先写到同目录下的临时文件，完成后再替换原文件；替换后内容与原文件相同时不写文件
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param target 要修改的properties文件
+	 * @return 是否修改了文件
+	 * @throws IOException
+	 */
+	public boolean patch(File target) throws IOException {
+		File tmpFile = AtomicFiles.tempFileFor(target);
+		boolean changed;
+		InputStream in = new FileInputStream(target);
+		try {
+			ChangeDetectingOutputStream out = ChangeDetectingOutputStream.forFile(target, tmpFile);
+			try {
+				patch(in, out);
+			}
+			finally {
+				out.close();
+			}
+			changed = out.isChanged();
+		}
+		catch (IOException e) {
+			tmpFile.delete();
+			throw e;
+		}
+		finally {
+			in.close();
+		}
+		if(changed){
+			AtomicFiles.commit(tmpFile, target);
+		}
+		return changed;
+	}
+
+	/**
+	 * 从输入流读取properties内容，替换后写到输出流
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param in 要修改的properties内容
+	 * @param out 替换后的内容
+	 * @return 替换和追加的配置项数量
+	 * @throws IOException
+	 */
+	public int patch(InputStream in, OutputStream out) throws IOException {
+		long start = PatchMetrics.start();
+		PatchMetrics.CountingInputStream countingIn = new PatchMetrics.CountingInputStream(in);
+		try {
+			return patch0(countingIn, out);
+		}
+		finally {
+			//out可能只用于比较或在内存中，实际写入文件的字节数在替换文件时记录
+			PatchMetrics.record(PatchMetrics.Phase.PATCH_PROPERTIES, start, countingIn.getCount(), 0L, 1L);
+		}
+	}
+
+	private int patch0(InputStream in, OutputStream out) throws IOException {
+		LineSource lines = new LineSource(in);
+		LogicalLine logical = new LogicalLine();
+		Set<String> found = new HashSet<String>();
+		char[] convtBuf = new char[1024];
+		byte[] lineSeparator = null;
+		boolean endsWithNewLine = true;
+		int changed = 0;
+		Encoding encoding = new Encoding(charset);
+		boolean first = true;
+
+		while (lines.next()) {
+			if(lineSeparator == null && lines.termLen > 0){
+				lineSeparator = lines.termBytes();
+			}
+			int bom = first ? encoding.firstLine(lines.buf, lines.contentLen) : 0;
+			first = false;
+			encoding.line(lines.buf, bom, lines.contentLen - bom);
+			String text = new String(lines.buf, bom, lines.contentLen - bom, encoding.charset);
+			logical.add(lines, text, bom);
+			if(logical.count == 1 && logical.isCommentOrBlank()){
+				//注释和空行不能续行
+				logical.writeRaw(out);
+				endsWithNewLine = lines.termLen > 0;
+				logical.clear();
+				continue;
+			}
+			if(lines.termLen > 0 && endsWithContinuation(text)){
+				continue;
+			}
+			endsWithNewLine = lines.termLen > 0;
+			if(processLogicalLine(logical, out, found, convtBuf, encoding)){
+				changed++;
+			}
+			logical.clear();
+		}
+		if(logical.count > 0){
+			//文件以续行符结束
+			if(processLogicalLine(logical, out, found, convtBuf, encoding)){
+				changed++;
+			}
+			endsWithNewLine = false;
+		}
+
+		if(lineSeparator == null){
+			lineSeparator = LINE_SEPARATOR.getBytes(encoding.charset);
+		}
+		for ( Map.Entry<String, String> entry : replacements.entrySet() ) {
+			if(found.contains(entry.getKey())) continue;
+			if(!endsWithNewLine){
+				out.write(lineSeparator);
+				endsWithNewLine = true;
+			}
+			String line = encoding.convert(entry.getKey(), true) + "=" + encoding.convert(entry.getValue(), false);
+			out.write(line.getBytes(encoding.charset));
+			out.write(lineSeparator);
+			changed++;
+		}
+		out.flush();
+		return changed;
+	}
+
+	/**
+	 * 处理一个完整的逻辑行，key需要替换时写出新行，否则原样写出
+	 * @return 是否替换
+	 */
+	private boolean processLogicalLine(LogicalLine logical, OutputStream out, Set<String> found, char[] convtBuf,
+			Encoding encoding) throws IOException {
+		char[] line = logical.toChars();
+		int limit = line.length;
+		int keyLen = 0;
+		int valueStart = limit;
+		boolean hasSep = false;
+		boolean precedingBackslash = false;
+		char c;
+		while (keyLen < limit) {
+			c = line[keyLen];
+			if ((c == '=' ||  c == ':') && !precedingBackslash) {
+				valueStart = keyLen + 1;
+				hasSep = true;
+				break;
+			} else if ((c == ' ' || c == '\t' ||  c == '\f') && !precedingBackslash) {
+				valueStart = keyLen + 1;
+				break;
+			}
+			if (c == '\\') {
+				precedingBackslash = !precedingBackslash;
+			} else {
+				precedingBackslash = false;
+			}
+			keyLen++;
+		}
+		while (valueStart < limit) {
+			c = line[valueStart];
+			if (c != ' ' && c != '\t' &&  c != '\f') {
+				if (!hasSep && (c == '=' ||  c == ':')) {
+					hasSep = true;
+				} else {
+					break;
+				}
+			}
+			valueStart++;
+		}
+		String key = CommentedProperties.loadConvert(line, 0, keyLen, convtBuf);
+		String value = replacements.get(key);
+		if(value == null){
+			logical.writeRaw(out);
+			return false;
+		}
+		found.add(key);
+
+		StringBuilder newLine = new StringBuilder(valueStart + value.length() + 16);
+		newLine.append(logical.leadingWhitespace());
+		newLine.append(line, 0, valueStart);
+		if(valueStart == keyLen){
+			//只有key没有分隔符
+			newLine.append('=');
+		}
+		newLine.append(encoding.convert(value, false));
+		out.write(logical.bom());
+		out.write(newLine.toString().getBytes(encoding.charset));
+		out.write(logical.lastTerminator());
+		return true;
+	}
+
+	/**
+	 * 行尾是否有奇数个反斜杠
+	 */
+	private static boolean endsWithContinuation(String text) {
+		int count = 0;
+		for ( int i = text.length() - 1; i >= 0 && text.charAt(i) == '\\'; i-- ) {
+			count++;
+		}
+		return (count & 1) == 1;
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\f';
+	}
+
+	/**
+	 * 一次替换中文件的字符集，未指定时逐行判断
+	 */
+	private static class Encoding {
+		/** 解码和写出使用的字符集，判断出来之前按UTF-8解码，对ASCII行结果相同 */
+		Charset charset;
+		private final boolean detect;
+		private boolean detected;
+		/** 文件中有未转义的非ASCII字符，写出的值不需要转义 */
+		private boolean raw = false;
+		private CharsetEncoder encoder;
+		private boolean utf8;
+
+		Encoding(Charset charset) {
+			this.detect = charset == null;
+			this.detected = !detect;
+			this.charset = detect ? CharsetSniffer.UTF_8 : charset;
+		}
+
+		/**
+		 * 检查文件开头的BOM
+		 * @return BOM长度，指定了字符集且不是UTF-8时为0
+		 */
+		int firstLine(byte[] b, int len) throws IOException {
+			int bom = CharsetSniffer.bomLength(b, len);
+			if(bom == 0) return 0;
+			if(bom == 2){
+				if(detect){
+					throw new IOException("不支持UTF-16编码的properties文件");
+				}
+				return 0;
+			}
+			if(detect){
+				detected = true;
+				raw = true;
+				return bom;
+			}
+			return charset.equals(CharsetSniffer.UTF_8) ? bom : 0;
+		}
+
+		/**
+		 * 第一个含非ASCII字节的行决定文件的字符集
+		 */
+		void line(byte[] b, int off, int len) {
+			if(detected) return;
+			int end = off + len;
+			while (off < end && b[off] >= 0) {
+				off++;
+			}
+			if(off == end) return;
+			charset = CharsetSniffer.sniff(b, off, end - off);
+			detected = true;
+			raw = true;
+		}
+
+		/**
+		 * 转义key或value，文件中有未转义的非ASCII字符时只转义字符集无法表示的字符
+		 */
+		String convert(String s, boolean escapeSpace) {
+			if(!raw){
+				return CommentedProperties.saveConvert(s, escapeSpace, true);
+			}
+			String converted = CommentedProperties.saveConvert(s, escapeSpace, false);
+			if(encoder == null){
+				encoder = charset.newEncoder();
+				utf8 = charset.equals(CharsetSniffer.UTF_8);
+			}
+			StringBuilder sb = null;
+			for ( int i = 0; i < converted.length(); i++ ) {
+				char c = converted.charAt(i);
+				//代理对要一起判断
+				int n = Character.isHighSurrogate(c) && i + 1 < converted.length()
+						&& Character.isLowSurrogate(converted.charAt(i + 1)) ? 2 : 1;
+				if(c > 0x7e && !canEncode(converted, i, n)){
+					if(sb == null){
+						sb = new StringBuilder(converted.length() + 16).append(converted, 0, i);
+					}
+					for ( int j = i; j < i + n; j++ ) {
+						sb.append(String.format("\\u%04X", (int) converted.charAt(j)));
+					}
+				}else if(sb != null){
+					sb.append(converted, i, i + n);
+				}
+				i += n - 1;
+			}
+			return sb == null ? converted : sb.toString();
+		}
+
+		private boolean canEncode(String s, int i, int n) {
+			char c = s.charAt(i);
+			if(utf8){
+				//UTF-8只有不成对的代理字符无法表示
+				return n == 2 || !Character.isSurrogate(c);
+			}
+			return n == 1 ? encoder.canEncode(c) : encoder.canEncode(s.subSequence(i, i + n));
+		}
+	}
+
+	/**
+	 * 由若干物理行组成的逻辑行，保存原始字节以便原样写出
+	 */
+	private static class LogicalLine {
+		private static final byte[] NO_BOM = new byte[0];
+		private byte[] raw = new byte[1024];
+		private int rawLen = 0;
+		private final StringBuilder chars = new StringBuilder();
+		private String firstText;
+		private byte[] lastTerm = new byte[0];
+		private int bomLen = 0;
+		int count = 0;
+
+		/**
+		 * @param bom 文件开头的BOM长度，不属于行的内容
+		 */
+		void add(LineSource lines, String text, int bom) {
+			int len = lines.contentLen + lines.termLen;
+			if(rawLen + len > raw.length){
+				byte[] newRaw = new byte[Math.max(raw.length * 2, rawLen + len)];
+				System.arraycopy(raw, 0, newRaw, 0, rawLen);
+				raw = newRaw;
+			}
+			System.arraycopy(lines.buf, 0, raw, rawLen, len);
+			rawLen += len;
+			lastTerm = lines.termBytes();
+
+			//续行：去掉上一行末尾的反斜杠和本行开头的空白
+			if(count > 0){
+				chars.setLength(chars.length() - 1);
+			}else{
+				firstText = text;
+				bomLen = bom;
+			}
+			int start = 0;
+			while (start < text.length() && isWhitespace(text.charAt(start))) {
+				start++;
+			}
+			chars.append(text, start, text.length());
+			count++;
+		}
+
+		boolean isCommentOrBlank() {
+			if(chars.length() == 0) return true;
+			char c = chars.charAt(0);
+			return c == '#' || c == '!';
+		}
+
+		String leadingWhitespace() {
+			int end = 0;
+			while (end < firstText.length() && isWhitespace(firstText.charAt(end))) {
+				end++;
+			}
+			return firstText.substring(0, end);
+		}
+
+		char[] toChars() {
+			char[] line = new char[chars.length()];
+			chars.getChars(0, line.length, line, 0);
+			return line;
+		}
+
+		byte[] lastTerminator() {
+			return lastTerm;
+		}
+
+		/**
+		 * 逻辑行开头的BOM，重写该行时保留
+		 */
+		byte[] bom() {
+			if(bomLen == 0) return NO_BOM;
+			byte[] bom = new byte[bomLen];
+			System.arraycopy(raw, 0, bom, 0, bomLen);
+			return bom;
+		}
+
+		void writeRaw(OutputStream out) throws IOException {
+			out.write(raw, 0, rawLen);
+		}
+
+		void clear() {
+			rawLen = 0;
+			bomLen = 0;
+			count = 0;
+			firstText = null;
+			chars.setLength(0);
+		}
+	}
+
+}
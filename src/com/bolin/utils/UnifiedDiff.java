@@ -0,0 +1,268 @@
+package com.bolin.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * UnifiedDiff
+ * 按行比较两段文本，生成unified diff格式（与diff -u、git diff相同）
+ *
+ * 先去掉首尾相同的行，中间部分用Myers算法求最短编辑序列。
+ * 配置文件通常只改动少数几行，耗时与文件大小基本成线性关系。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class UnifiedDiff {
+
+	private static final String NO_NEWLINE = "\\ No newline at end of file";
+
+	private UnifiedDiff() {
+	}
+
+	/**
+	 * 生成两段文本的unified diff，没有差异时返回空字符串
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param oldName 原文件名，用于---行
+	 * @param newName 新文件名，用于+++行
+	 * @param oldText 原内容
+	 * @param newText 新内容
+	 * @param context 上下文行数
+	 * @return
+	 */
+	public static String diff(String oldName, String newName, String oldText, String newText, int context) {
+		if(oldText.equals(newText)) return "";
+		List<String> a = splitLines(oldText);
+		List<String> b = splitLines(newText);
+		//没有结尾换行的最后一行加上\n标记，与有换行的同内容行视为不同
+		if(!oldText.isEmpty() && !endsWithNewline(oldText)){
+			a.set(a.size() - 1, a.get(a.size() - 1) + '\n');
+		}
+		if(!newText.isEmpty() && !endsWithNewline(newText)){
+			b.set(b.size() - 1, b.get(b.size() - 1) + '\n');
+		}
+
+		char[] ops = editScript(a, b);
+		StringBuilder out = new StringBuilder();
+		out.append("--- ").append(oldName).append('\n');
+		out.append("+++ ").append(newName).append('\n');
+
+		//ops中' '为相同，'-'为删除，'+'为新增；按上下文行数合并为hunk
+		int n = ops.length;
+		int i = 0;
+		int aLine = 0;
+		int bLine = 0;
+		while (i < n) {
+			//找到下一处修改
+			int change = i;
+			int aAt = aLine;
+			int bAt = bLine;
+			while (change < n && ops[change] == ' ') {
+				change++;
+				aAt++;
+				bAt++;
+			}
+			if(change == n) break;
+			int start = Math.max(i, change - context);
+			int skipped = change - start;
+			int hunkA = aAt - skipped;
+			int hunkB = bAt - skipped;
+			//hunk结束位置：最后一处修改之后连续相同的行超过2*context时结束
+			int lastChange = change;
+			for ( int k = change + 1; k < n; k++ ) {
+				if(ops[k] != ' '){
+					lastChange = k;
+				}else if(k - lastChange > context * 2){
+					break;
+				}
+			}
+			int end = Math.min(n, lastChange + 1 + context);
+
+			int aCount = 0;
+			int bCount = 0;
+			for ( int k = start; k < end; k++ ) {
+				if(ops[k] != '+') aCount++;
+				if(ops[k] != '-') bCount++;
+			}
+			out.append("@@ -").append(range(hunkA, aCount)).append(" +").append(range(hunkB, bCount)).append(" @@\n");
+			int x = hunkA;
+			int y = hunkB;
+			for ( int k = start; k < end; k++ ) {
+				char op = ops[k];
+				if(op == ' '){
+					appendLine(out, ' ', a.get(x));
+					x++;
+					y++;
+				}else if(op == '-'){
+					appendLine(out, '-', a.get(x));
+					x++;
+				}else{
+					appendLine(out, '+', b.get(y));
+					y++;
+				}
+			}
+			i = end;
+			aLine = x;
+			bLine = y;
+		}
+		return out.toString();
+	}
+
+	private static void appendLine(StringBuilder out, char op, String line) {
+		out.append(op);
+		if(line.endsWith("\n")){
+			out.append(line, 0, line.length() - 1).append('\n').append(NO_NEWLINE).append('\n');
+		}else{
+			out.append(line).append('\n');
+		}
+	}
+
+	private static String range(int start, int count) {
+		//unified diff的行号从1开始，count为0时start为前一行
+		if(count == 0) return start + ",0";
+		if(count == 1) return String.valueOf(start + 1);
+		return (start + 1) + "," + count;
+	}
+
+	private static boolean endsWithNewline(String text) {
+		return text.charAt(text.length() - 1) == '\n';
+	}
+
+	/**
+	 * 按\n分行，不包含\n；\r\n换行的\r保留在行内容中，与git diff相同
+	 */
+	static List<String> splitLines(String text) {
+		List<String> lines = new ArrayList<String>();
+		int start = 0;
+		int end;
+		while ((end = text.indexOf('\n', start)) >= 0) {
+			lines.add(text.substring(start, end));
+			start = end + 1;
+		}
+		if(start < text.length()){
+			lines.add(text.substring(start));
+		}
+		return lines;
+	}
+
+	/**
+	 * 最短编辑序列，' '为相同，'-'为删除a中的行，'+'为插入b中的行
+	 */
+	static char[] editScript(List<String> a, List<String> b) {
+		int prefix = 0;
+		int max = Math.min(a.size(), b.size());
+		while (prefix < max && a.get(prefix).equals(b.get(prefix))) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < max - prefix && a.get(a.size() - 1 - suffix).equals(b.get(b.size() - 1 - suffix))) {
+			suffix++;
+		}
+		List<String> midA = a.subList(prefix, a.size() - suffix);
+		List<String> midB = b.subList(prefix, b.size() - suffix);
+		char[] middle = myers(midA, midB);
+
+		char[] ops = new char[prefix + middle.length + suffix];
+		for ( int i = 0; i < prefix; i++ ) {
+			ops[i] = ' ';
+		}
+		System.arraycopy(middle, 0, ops, prefix, middle.length);
+		for ( int i = prefix + middle.length; i < ops.length; i++ ) {
+			ops[i] = ' ';
+		}
+		return ops;
+	}
+
+	/**
+	 * Myers O(ND)算法，每一步只保存-d..d范围内的V，回溯得到编辑序列
+	 */
+	private static char[] myers(List<String> a, List<String> b) {
+		int n = a.size();
+		int m = b.size();
+		if(n == 0 || m == 0){
+			char[] ops = new char[n + m];
+			for ( int i = 0; i < n; i++ ) ops[i] = '-';
+			for ( int i = n; i < n + m; i++ ) ops[i] = '+';
+			return ops;
+		}
+		int maxD = n + m;
+		List<int[]> trace = new ArrayList<int[]>();
+		int[] v = new int[3];
+		//v[k + d]为第d步对角线k上最远的x
+		v[1] = 0;
+		int[] prev = v;
+		int found = -1;
+		for ( int d = 0; d <= maxD; d++ ) {
+			int[] cur = new int[2 * d + 1];
+			for ( int k = -d; k <= d; k += 2 ) {
+				int x;
+				if(d == 0){
+					x = 0;
+				}else if(k == -d || (k != d && get(prev, d - 1, k - 1) < get(prev, d - 1, k + 1))){
+					x = get(prev, d - 1, k + 1);
+				}else{
+					x = get(prev, d - 1, k - 1) + 1;
+				}
+				int y = x - k;
+				while (x < n && y < m && a.get(x).equals(b.get(y))) {
+					x++;
+					y++;
+				}
+				cur[k + d] = x;
+				if(x >= n && y >= m){
+					found = d;
+					break;
+				}
+			}
+			trace.add(cur);
+			prev = cur;
+			if(found >= 0) break;
+		}
+
+		//回溯
+		char[] ops = new char[n + m];
+		int pos = ops.length;
+		int x = n;
+		int y = m;
+		for ( int d = found; d > 0; d-- ) {
+			int[] before = trace.get(d - 1);
+			int k = x - y;
+			int prevK;
+			if(k == -d || (k != d && get(before, d - 1, k - 1) < get(before, d - 1, k + 1))){
+				prevK = k + 1;
+			}else{
+				prevK = k - 1;
+			}
+			int prevX = get(before, d - 1, prevK);
+			int prevY = prevX - prevK;
+			while (x > prevX && y > prevY) {
+				ops[--pos] = ' ';
+				x--;
+				y--;
+			}
+			if(x == prevX){
+				ops[--pos] = '+';
+				y--;
+			}else{
+				ops[--pos] = '-';
+				x--;
+			}
+		}
+		while (x > 0 && y > 0) {
+			ops[--pos] = ' ';
+			x--;
+			y--;
+		}
+		char[] result = new char[ops.length - pos];
+		System.arraycopy(ops, pos, result, 0, result.length);
+		return result;
+	}
+
+	private static int get(int[] v, int d, int k) {
+		return v[k + d];
+	}
+
+}
@@ -0,0 +1,545 @@
+package com.bolin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * YamlFormatHandler
+ * 逐行替换yaml文件（application.yml等）
+ *
+ * 配置文件为键值对，按缩进表示层级，如
+ *   spring:
+ *     datasource:
+ *       url: jdbc:mysql://db/app
+ * 只替换spring.datasource.url，其他内容不变。值只能写在一行内，列表写成[a, b]，
+ * 不支持多个文档、块列表和多行文本。
+ *
+ * 项目文件逐行处理，不建立对象树：只有配置文件中出现的键所在的行会被改写，值之后的注释保留；
+ * 原来的值为块列表或多行文本时，其下属的行一起替换掉。其余的行（包括列表中的内容）原样写出。
+ * 项目文件中没有的键追加到所在层级的末尾，只追加到第一个文档中。
+ *
+ * 文件为UTF-8编码。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class YamlFormatHandler implements FormatHandler {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Override
+	public String getName() {
+		return "yaml";
+	}
+
+	@Override
+	public boolean accepts(String fileName) {
+		return fileName != null && (fileName.endsWith(".yml") || fileName.endsWith(".yaml"));
+	}
+
+	/**
+	 * @return 键 -> 值的原文（保留引号），下一层级为Map
+	 */
+	@Override
+	public Object load(File configFile) throws IOException {
+		List<String> lines = Files.readAllLines(configFile.toPath(), UTF_8);
+		Map<String, Object> root = new LinkedHashMap<String, Object>();
+		List<Level> stack = new ArrayList<Level>();
+		stack.add(new Level(root, "", -2));
+		for ( int n = 0; n < lines.size(); n++ ) {
+			String text = lines.get(n);
+			if(n == 0 && text.startsWith("\uFEFF")){
+				text = text.substring(1);
+			}
+			String trimmed = text.trim();
+			if(trimmed.length() == 0 || trimmed.startsWith("#") || text.startsWith("%")) continue;
+			if(isDocumentMarker(text)){
+				if(!root.isEmpty()){
+					throw error(configFile, n, "只支持一个文档");
+				}
+				continue;
+			}
+			int indent = indentOf(text);
+			Entry entry = Entry.parse(text, indent);
+			if(entry == null){
+				throw error(configFile, n, "只支持键值对，列表请写成[a, b]");
+			}
+			while (stack.size() > 1) {
+				Level top = stack.get(stack.size() - 1);
+				if(top.indent < 0 ? indent > top.keyIndent : indent >= top.indent) break;
+				stack.remove(stack.size() - 1);
+			}
+			Level top = stack.get(stack.size() - 1);
+			if(top.indent < 0){
+				top.indent = indent;
+			}
+			if(indent != top.indent){
+				throw error(configFile, n, "缩进错误");
+			}
+			String value = text.substring(entry.valueStart, entry.valueEnd);
+			if(value.length() == 0){
+				Map<String, Object> child = new LinkedHashMap<String, Object>();
+				top.node.put(entry.key, child);
+				stack.add(new Level(child, "", indent));
+			}else if(value.startsWith("|") || value.startsWith(">")){
+				throw error(configFile, n, "不支持多行文本，请写在一行内");
+			}else{
+				top.node.put(entry.key, value);
+			}
+		}
+		return freeze(root);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<FormatChange> patch(Object config, InputStream in, OutputStream out) throws IOException {
+		YamlPatch patch = new YamlPatch((Map<String, Object>) config, out);
+		patch.run(new LineSource(in));
+		return patch.changes;
+	}
+
+	/**
+	 * 没有下一层级的键的值为空，其余转为只读
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> freeze(Map<String, Object> node) {
+		for ( Map.Entry<String, Object> entry : node.entrySet() ) {
+			Object value = entry.getValue();
+			if(value instanceof Map){
+				Map<String, Object> child = (Map<String, Object>) value;
+				entry.setValue(child.isEmpty() ? "" : freeze(child));
+			}
+		}
+		return Collections.unmodifiableMap(node);
+	}
+
+	private static IOException error(File file, int n, String msg) {
+		return new IOException("yaml配置文件" + file.getName() + "第" + (n + 1) + "行：" + msg);
+	}
+
+	private static boolean isDocumentMarker(String text) {
+		return (text.startsWith("---") || text.startsWith("..."))
+				&& (text.length() == 3 || isBlank(text.charAt(3)));
+	}
+
+	private static int indentOf(String text) {
+		int i = 0;
+		while (i < text.length() && text.charAt(i) == ' ') {
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isBlank(char c) {
+		return c == ' ' || c == '\t';
+	}
+
+	private static boolean isSequenceItem(String text, int indent) {
+		return text.charAt(indent) == '-' && (indent + 1 == text.length() || isBlank(text.charAt(indent + 1)));
+	}
+
+	/**
+	 * 引号结束的位置，没有结束的引号时返回-1
+	 */
+	private static int closingQuote(String text, int start) {
+		char quote = text.charAt(start);
+		for ( int i = start + 1; i < text.length(); i++ ) {
+			char c = text.charAt(i);
+			if(quote == '"' && c == '\\'){
+				i++;
+			}else if(c == quote){
+				if(quote == '\'' && i + 1 < text.length() && text.charAt(i + 1) == '\''){
+					i++;
+					continue;
+				}
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static String unquote(String quoted) {
+		String s = quoted.substring(1, quoted.length() - 1);
+		if(quoted.charAt(0) == '\''){
+			return s.replace("''", "'");
+		}
+		StringBuilder sb = new StringBuilder(s.length());
+		for ( int i = 0; i < s.length(); i++ ) {
+			char c = s.charAt(i);
+			if(c == '\\' && i + 1 < s.length()){
+				c = s.charAt(++i);
+				sb.append(c == 'n' ? '\n' : c == 't' ? '\t' : c);
+			}else{
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 写出时的键，含有特殊字符时加引号
+	 */
+	private static String formatKey(String key) {
+		if(key.length() > 0 && key.equals(key.trim()) && key.indexOf(": ") < 0 && key.indexOf(" #") < 0
+				&& !key.endsWith(":") && "-?#'\"[]{}&*!|>%@`,".indexOf(key.charAt(0)) < 0){
+			return key;
+		}
+		return "\"" + key.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	/**
+	 * 一行中的键值对：key: value # comment
+	 */
+	private static final class Entry {
+
+		final String key;
+
+		/**
+		 * 值的开始和结束位置，没有值时都在冒号之后
+		 */
+		final int valueStart;
+
+		final int valueEnd;
+
+		private Entry(String key, int valueStart, int valueEnd) {
+			this.key = key;
+			this.valueStart = valueStart;
+			this.valueEnd = valueEnd;
+		}
+
+		/**
+		 * @return 不是键值对（列表项、注释等）时返回null
+		 */
+		static Entry parse(String text, int indent) {
+			int len = text.length();
+			if(indent >= len) return null;
+			char first = text.charAt(indent);
+			String key;
+			int colon;
+			if(first == '"' || first == '\''){
+				int end = closingQuote(text, indent);
+				if(end < 0) return null;
+				key = unquote(text.substring(indent, end + 1));
+				colon = end + 1;
+				while (colon < len && isBlank(text.charAt(colon))) {
+					colon++;
+				}
+				if(colon >= len || text.charAt(colon) != ':') return null;
+				if(colon + 1 < len && !isBlank(text.charAt(colon + 1))) return null;
+			}else{
+				if(isSequenceItem(text, indent) || "#?[{|>".indexOf(first) >= 0) return null;
+				colon = -1;
+				for ( int i = indent; i < len; i++ ) {
+					char c = text.charAt(i);
+					if(c == ':' && (i + 1 == len || isBlank(text.charAt(i + 1)))){
+						colon = i;
+						break;
+					}
+					if(c == '#' && isBlank(text.charAt(i - 1))) return null;
+				}
+				if(colon < 0) return null;
+				key = text.substring(indent, colon).trim();
+			}
+			int start = colon + 1;
+			while (start < len && isBlank(text.charAt(start))) {
+				start++;
+			}
+			if(start >= len || text.charAt(start) == '#'){
+				return new Entry(key, colon + 1, colon + 1);
+			}
+			int end = -1;
+			char c = text.charAt(start);
+			if(c == '"' || c == '\''){
+				end = closingQuote(text, start);
+			}
+			if(end >= 0){
+				end++;
+			}else{
+				end = len;
+				for ( int i = start + 1; i < len; i++ ) {
+					if(text.charAt(i) == '#' && isBlank(text.charAt(i - 1))){
+						end = i;
+						break;
+					}
+				}
+				while (end > start && isBlank(text.charAt(end - 1))) {
+					end--;
+				}
+			}
+			return new Entry(key, start, end);
+		}
+
+	}
+
+	/**
+	 * 一个层级的键值对
+	 */
+	private static final class Level {
+
+		final Map<String, Object> node;
+
+		final String path;
+
+		/**
+		 * 所属的键的缩进，根为-2
+		 */
+		final int keyIndent;
+
+		/**
+		 * 本层级的缩进，读到第一个键之前为-1
+		 */
+		int indent = -1;
+
+		final Set<String> seen = new HashSet<String>();
+
+		Level(Map<String, Object> node, String path, int keyIndent) {
+			this.node = node;
+			this.path = path;
+			this.keyIndent = keyIndent;
+		}
+
+	}
+
+	/**
+	 * 一次替换
+	 */
+	private static final class YamlPatch {
+
+		private final Map<String, Object> config;
+
+		private final OutputStream out;
+
+		private final List<Level> stack = new ArrayList<Level>();
+
+		/**
+		 * 还未写出的空行和注释，追加的键写在它们之前
+		 */
+		private final List<byte[]> pending = new ArrayList<byte[]>();
+
+		/**
+		 * 被替换的值的下属行：缩进大于此值的行，以及缩进相同的列表项，-1表示没有
+		 */
+		private int dropIndent = -1;
+
+		private boolean firstDocument = true;
+
+		private boolean hasContent = false;
+
+		private byte[] lineSeparator;
+
+		private boolean endsWithNewLine = true;
+
+		/**
+		 * 追加下一层级时的缩进，取文件中第一个下一层级的缩进
+		 */
+		private int step = 0;
+
+		final List<FormatChange> changes = new ArrayList<FormatChange>();
+
+		YamlPatch(Map<String, Object> config, OutputStream out) {
+			this.config = config;
+			this.out = out;
+			stack.add(new Level(config, "", -2));
+		}
+
+		void run(LineSource lines) throws IOException {
+			boolean first = true;
+			while (lines.next()) {
+				if(lineSeparator == null && lines.termLen > 0){
+					lineSeparator = lines.termBytes();
+				}
+				String text = new String(lines.buf, 0, lines.contentLen, UTF_8);
+				String bom = "";
+				if(first && text.startsWith("\uFEFF")){
+					bom = "\uFEFF";
+					text = text.substring(1);
+				}
+				first = false;
+				line(lines, text, bom);
+			}
+			closeAll();
+			flushPending();
+		}
+
+		private void line(LineSource lines, String text, String bom) throws IOException {
+			String trimmed = text.trim();
+			if(trimmed.length() == 0 || trimmed.startsWith("#")){
+				pending.add(copy(lines));
+				return;
+			}
+			if(isDocumentMarker(text) || text.startsWith("%")){
+				dropIndent = -1;
+				closeAll();
+				flushPending();
+				if(hasContent){
+					firstDocument = false;
+					hasContent = false;
+				}
+				stack.clear();
+				stack.add(new Level(config, "", -2));
+				write(lines);
+				return;
+			}
+			hasContent = true;
+			int indent = indentOf(text);
+			if(dropIndent >= 0){
+				if(indent > dropIndent || (indent == dropIndent && isSequenceItem(text, indent))){
+					pending.clear();
+					return;
+				}
+				dropIndent = -1;
+			}
+			while (stack.size() > 1) {
+				Level top = stack.get(stack.size() - 1);
+				if(top.indent < 0 ? indent > top.keyIndent : indent >= top.indent) break;
+				close(top);
+				stack.remove(stack.size() - 1);
+			}
+			Level top = stack.get(stack.size() - 1);
+			if(top.indent < 0){
+				top.indent = indent;
+				if(step == 0 && top.keyIndent >= 0){
+					step = indent - top.keyIndent;
+				}
+			}
+			flushPending();
+			Entry entry = indent == top.indent ? Entry.parse(text, indent) : null;
+			Object value = entry == null ? null : top.node.get(entry.key);
+			if(value == null){
+				//不在配置文件中的键、列表项和多行的值
+				write(lines);
+				return;
+			}
+			top.seen.add(entry.key);
+			String path = top.path.length() == 0 ? entry.key : top.path + "." + entry.key;
+			String old = text.substring(entry.valueStart, entry.valueEnd);
+			if(value instanceof Map && old.length() == 0){
+				@SuppressWarnings("unchecked")
+				Level child = new Level((Map<String, Object>) value, path, indent);
+				stack.add(child);
+				write(lines);
+				return;
+			}
+			String newValue = value instanceof Map ? toFlow(value) : (String) value;
+			if(old.equals(newValue)){
+				write(lines);
+				return;
+			}
+			String prefix = text.substring(0, entry.valueStart);
+			if(newValue.length() > 0 && entry.valueStart == entry.valueEnd){
+				prefix += " ";
+			}
+			writeText(bom + prefix + newValue + text.substring(entry.valueEnd), lines.termBytes());
+			//原来的值为块列表、对象或多行文本时，其下属的行一起替换
+			dropIndent = indent;
+			changes.add(new FormatChange(path, old, newValue));
+		}
+
+		/**
+		 * 层级结束，追加配置文件中有而项目文件中没有的键
+		 */
+		private void close(Level level) throws IOException {
+			if(!firstDocument) return;
+			int indent = level.indent >= 0 ? level.indent : level.keyIndent + (step == 0 ? 2 : step);
+			for ( Map.Entry<String, Object> entry : level.node.entrySet() ) {
+				if(!level.seen.contains(entry.getKey())){
+					String path = level.path.length() == 0 ? entry.getKey() : level.path + "." + entry.getKey();
+					append(entry.getKey(), entry.getValue(), path, indent);
+				}
+			}
+		}
+
+		private void closeAll() throws IOException {
+			for ( int i = stack.size() - 1; i >= 0; i-- ) {
+				close(stack.get(i));
+			}
+			stack.subList(1, stack.size()).clear();
+		}
+
+		@SuppressWarnings("unchecked")
+		private void append(String key, Object value, String path, int indent) throws IOException {
+			StringBuilder sb = new StringBuilder();
+			for ( int i = 0; i < indent; i++ ) {
+				sb.append(' ');
+			}
+			sb.append(formatKey(key)).append(':');
+			if(value instanceof Map){
+				writeText(sb.toString(), separator());
+				for ( Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet() ) {
+					append(entry.getKey(), entry.getValue(), path + "." + entry.getKey(), indent + (step == 0 ? 2 : step));
+				}
+				return;
+			}
+			String text = (String) value;
+			if(text.length() > 0){
+				sb.append(' ').append(text);
+			}
+			writeText(sb.toString(), separator());
+			changes.add(new FormatChange(path, null, text));
+		}
+
+		private byte[] separator() {
+			return lineSeparator == null ? new byte[] { '\n' } : lineSeparator;
+		}
+
+		private void flushPending() throws IOException {
+			for ( byte[] raw : pending ) {
+				out.write(raw);
+				endsWithNewLine = raw.length > 0 && (raw[raw.length - 1] == '\n' || raw[raw.length - 1] == '\r');
+			}
+			pending.clear();
+		}
+
+		private void write(LineSource lines) throws IOException {
+			out.write(lines.buf, 0, lines.contentLen + lines.termLen);
+			endsWithNewLine = lines.termLen > 0;
+		}
+
+		private void writeText(String text, byte[] term) throws IOException {
+			if(!endsWithNewLine){
+				out.write(separator());
+			}
+			out.write(text.getBytes(UTF_8));
+			out.write(term);
+			endsWithNewLine = term.length > 0;
+		}
+
+		private static byte[] copy(LineSource lines) {
+			byte[] raw = new byte[lines.contentLen + lines.termLen];
+			System.arraycopy(lines.buf, 0, raw, 0, raw.length);
+			return raw;
+		}
+
+		/**
+		 * 对象写成一行：{a: 1, b: 2}
+		 */
+		@SuppressWarnings("unchecked")
+		private static String toFlow(Object value) {
+			if(!(value instanceof Map)){
+				return (String) value;
+			}
+			StringBuilder sb = new StringBuilder("{");
+			for ( Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet() ) {
+				if(sb.length() > 1){
+					sb.append(", ");
+				}
+				sb.append(formatKey(entry.getKey())).append(": ").append(toFlow(entry.getValue()));
+			}
+			return sb.append('}').toString();
+		}
+
+	}
+
+}
@@ -1,16 +1,25 @@
 package com.bolin.xml;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
+import org.dom4j.Attribute;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
+import org.dom4j.Element;
 import org.dom4j.io.OutputFormat;
 import org.dom4j.io.SAXReader;
 import org.dom4j.io.XMLWriter;
 
+import com.bolin.utils.AtomicFiles;
+import com.bolin.utils.PatchMetrics;
+
 /**
  * @author bolin
  * @create 2017年4月21日
@@ -23,22 +32,25 @@ public class Dom4jXmlDocument implements XmlDocument {
 	 * @create 2017年4月21日
 	 * 
 	 * @param fileName
+	 * @throws IOException 写入出错，文件可能不完整
 	 */
 	@Override
-	public void createXml(String fileName, Document document) {
+	public void createXml(String fileName, Document document) throws IOException {
+		long start = PatchMetrics.start();
+		OutputFormat format = OutputFormat.createPrettyPrint();
+		format.setEncoding("utf-8");
+		
+		//按声明的utf-8写出，不使用平台默认编码
+		Writer fileWriter = new OutputStreamWriter(new FileOutputStream(fileName), "utf-8");
 		try {
-			
-			OutputFormat format = OutputFormat.createPrettyPrint();
-			format.setEncoding("utf-8");
-			
-			Writer fileWriter = new FileWriter(fileName);  
 			XMLWriter xmlWriter = new XMLWriter(fileWriter, format);  
 			xmlWriter.write(document);  
-			xmlWriter.close();
+			xmlWriter.flush();
 		}
-		catch (IOException e) {
-			e.printStackTrace();
-		}  
+		finally {
+			fileWriter.close();
+		}
+		PatchMetrics.record(PatchMetrics.Phase.CREATE_XML, start, 0L, new File(fileName).length(), 1L);
 	}
 	
 	/**
@@ -51,12 +63,69 @@ public class Dom4jXmlDocument implements XmlDocument {
 	public Document parseXml(String fileName) {
 		File inputXml = new File(fileName);  
         SAXReader saxReader = new SAXReader();  
+        long start = PatchMetrics.start();
         try {  
             return saxReader.read(inputXml);  
         } catch (DocumentException e) {  
             e.printStackTrace();
-        }  
+        } finally {
+            PatchMetrics.record(PatchMetrics.Phase.PARSE_XML, start, inputXml.length(), 0L, 1L);
+        }
         return null;
 	}
+	
+	/**
+	 * 替换后的元素添加到根元素末尾
+	 * @author bolin
+	 * @create 2017年4月21日
+	 * 
+	 * @param sourceXml
+	 * @param targetXml
+	 * @return 是否修改了文件，写出的内容与原文件相同时不替换
+	 * @throws IOException
+	 */
+	@Override
+	@SuppressWarnings("rawtypes")
+	public boolean replaceElement(String sourceXml, String targetXml, String elementName, String nameElement, String name) throws IOException {
+		Document sourceXmlDocument = parseXml(sourceXml);
+		if(sourceXmlDocument == null){
+			throw new IOException("xml解析出错：" + sourceXml);
+		}
+		Document targetXmlDocument = parseXml(targetXml);
+		if(targetXmlDocument == null){
+			throw new IOException("xml解析出错：" + targetXml);
+		}
+		
+		Element sourceXmlDocumentRoot = sourceXmlDocument.getRootElement();
+		Element targetXmlDocumentRoot = targetXmlDocument.getRootElement();
+		
+		//先找出所有要替换的元素再修改，遍历elementIterator时不能增删根元素的子元素
+		List<Element> matched = new ArrayList<Element>();
+		for ( Iterator iterator = targetXmlDocumentRoot.elementIterator(elementName); iterator.hasNext(); ) {
+			Element filterEle = (Element) iterator.next();
+			String fileterName = filterEle.elementText(nameElement);
+			if(name.equals(fileterName)){
+				matched.add(filterEle);
+			}
+		}
+		for ( Element filterEle : matched ) {
+			filterEle.detach();
+			Element casFileterEle = sourceXmlDocumentRoot.createCopy();
+			Attribute attribute = casFileterEle.attribute("xmlns");
+			casFileterEle.remove(attribute);
+			targetXmlDocumentRoot.add(casFileterEle);
+		}
+		//先写临时文件，完整写出并关闭后才替换，写到一半出错时原文件不受影响
+		File targetXmlFile = new File(targetXml);
+		File tmpFile = AtomicFiles.tempFileFor(targetXmlFile);
+		try {
+			createXml(tmpFile.getPath(), targetXmlDocument);
+			return AtomicFiles.replaceIfChanged(tmpFile, targetXmlFile);
+		}
+		catch (IOException e) {
+			tmpFile.delete();
+			throw e;
+		}
+	}
 
 }
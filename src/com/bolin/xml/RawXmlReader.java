@@ -0,0 +1,398 @@
+package com.bolin.xml;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * RawXmlReader
+ * 给StAX解析器提供字符，同时切分出每个事件在原文中的文本，XmlRulePatcher未修改的部分按原文写出
+ *
+ * 编码按BOM和xml声明判断（默认UTF-8），输出使用同一编码，BOM原样写出。
+ * 解码后的字符放在一个缓冲区中，解析器和切分各自读取，已写出或跳过的部分才丢弃，缓冲区大小只与被缓存的元素有关。
+ * 切分只识别标签、注释、CDATA、处理指令、DOCTYPE和文本的边界，文档是否合法仍由解析器判断，
+ * 切分结果与事件对不上时抛出XMLStreamException。
+ * 每个事件的原文为上一个事件之后到此事件结束，根元素外不作为事件读出的空白归到下一个事件，
+ * 相邻的文本、CDATA事件的原文都归到第一个，自闭合元素的结束事件原文为空。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+final class RawXmlReader extends Reader {
+
+	private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*([\"'])([A-Za-z0-9._\\-]+)\\1");
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** 判断编码读取的文件开头字节数 */
+	private static final int HEAD_SIZE = 1024;
+
+	private final Reader in;
+
+	private final Charset charset;
+
+	private final byte[] bom;
+
+	private char[] buf = new char[8192];
+
+	/** buf[0]在原文中的位置 */
+	private long base;
+
+	private int count;
+
+	/** 解析器读到的位置 */
+	private long readPos;
+
+	/** 切分到的位置 */
+	private long scanPos;
+
+	/** 写出或跳过到的位置，之后的字符还要保留 */
+	private long written;
+
+	private boolean eof;
+
+	/** 上一个事件是文本，同一段文本的后续事件原文为空 */
+	private boolean inText;
+
+	/** 上一个开始标签是自闭合的 */
+	private boolean selfClosing;
+
+	RawXmlReader(InputStream in) throws IOException {
+		InputStream stream = new BufferedInputStream(in, HEAD_SIZE * 8);
+		stream.mark(HEAD_SIZE);
+		byte[] head = new byte[HEAD_SIZE];
+		int length = 0;
+		int n;
+		while (length < head.length && (n = stream.read(head, length, head.length - length)) > 0) {
+			length += n;
+		}
+		stream.reset();
+
+		int bomLength = 0;
+		Charset charset;
+		if(length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF){
+			bomLength = 3;
+			charset = UTF_8;
+		}else if(length >= 2 && (head[0] & 0xFF) == 0xFE && (head[1] & 0xFF) == 0xFF){
+			bomLength = 2;
+			charset = Charset.forName("UTF-16BE");
+		}else if(length >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE){
+			bomLength = 2;
+			charset = Charset.forName("UTF-16LE");
+		}else if(length >= 2 && head[0] == 0 && head[1] == '<'){
+			charset = Charset.forName("UTF-16BE");
+		}else if(length >= 2 && head[0] == '<' && head[1] == 0){
+			charset = Charset.forName("UTF-16LE");
+		}else{
+			charset = declaredCharset(new String(head, 0, length, "ISO-8859-1"));
+		}
+		this.charset = charset;
+		this.bom = Arrays.copyOf(head, bomLength);
+		for ( long skipped = 0; skipped < bomLength; ) {
+			skipped += stream.skip(bomLength - skipped);
+		}
+		//解码出错时抛出异常，不替换成?后再写回文件
+		this.in = new InputStreamReader(stream, charset.newDecoder());
+	}
+
+	/**
+	 * xml声明中的编码，没有声明时为UTF-8
+	 */
+	private static Charset declaredCharset(String head) throws IOException {
+		if(!head.startsWith("<?xml")){
+			return UTF_8;
+		}
+		int end = head.indexOf("?>");
+		Matcher matcher = ENCODING.matcher(end < 0 ? head : head.substring(0, end));
+		if(!matcher.find()){
+			return UTF_8;
+		}
+		String name = matcher.group(2);
+		try {
+			return Charset.forName(name);
+		}
+		catch (IllegalArgumentException e) {
+			throw new IOException("不支持的xml编码：" + name, e);
+		}
+	}
+
+	/**
+	 * 按原文的编码写出，先写出原文的BOM
+	 */
+	Writer newWriter(OutputStream out) throws IOException {
+		out.write(bom);
+		return new OutputStreamWriter(out, charset);
+	}
+
+	/**
+	 * 用于判断写入的内容能否按原文的编码写出
+	 */
+	CharsetEncoder newEncoder() {
+		return charset.newEncoder();
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if(len == 0){
+			return 0;
+		}
+		if(readPos == base + count && !fill()){
+			return -1;
+		}
+		int start = (int) (readPos - base);
+		int n = Math.min(len, count - start);
+		System.arraycopy(buf, start, cbuf, off, n);
+		readPos += n;
+		return n;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * 切分出事件的原文，事件必须按解析器读出的顺序传入
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param event 解析器读出的事件
+	 * @return 事件原文的结束位置
+	 * @throws XMLStreamException 原文与事件对不上
+	 * @throws IOException
+	 */
+	long advance(XMLEvent event) throws XMLStreamException, IOException {
+		if(event.isCharacters()){
+			if(!inText){
+				inText = true;
+				scanPos = skipCharacters(scanPos);
+			}
+			return scanPos;
+		}
+		inText = false;
+		if(selfClosing){
+			if(!event.isEndElement()){
+				throw mismatch(scanPos);
+			}
+			selfClosing = false;
+			return scanPos;
+		}
+		long pos = skipText(scanPos);
+		switch (event.getEventType()) {
+			case XMLStreamConstants.START_DOCUMENT:
+				if(startsWith(pos, "<?xml") && Character.isWhitespace(charAt(pos + 5))){
+					pos = find(pos + 2, "?>");
+				}
+				break;
+			case XMLStreamConstants.END_DOCUMENT:
+				if(charAt(pos) != -1){
+					throw mismatch(pos);
+				}
+				break;
+			case XMLStreamConstants.START_ELEMENT:
+				if(charAt(pos) != '<' || "!?/".indexOf(charAt(pos + 1)) >= 0){
+					throw mismatch(pos);
+				}
+				pos = skipTag(pos + 1);
+				selfClosing = charAt(pos - 2) == '/';
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				if(startsWith(pos, "</")){
+					pos = find(pos + 2, ">");
+				}else{
+					throw mismatch(pos);
+				}
+				break;
+			case XMLStreamConstants.COMMENT:
+				if(!startsWith(pos, "<!--")){
+					throw mismatch(pos);
+				}
+				pos = find(pos + 4, "-->");
+				break;
+			case XMLStreamConstants.PROCESSING_INSTRUCTION:
+				if(!startsWith(pos, "<?")){
+					throw mismatch(pos);
+				}
+				pos = find(pos + 2, "?>");
+				break;
+			case XMLStreamConstants.DTD:
+				if(!startsWith(pos, "<!DOCTYPE")){
+					throw mismatch(pos);
+				}
+				pos = skipDoctype(pos + 9);
+				break;
+			default:
+				throw new XMLStreamException("不支持的xml事件类型：" + event.getEventType());
+		}
+		scanPos = pos;
+		return pos;
+	}
+
+	/**
+	 * 写出上次写出或跳过的位置到end之间的原文
+	 */
+	void copy(Writer out, long end) throws IOException {
+		if(end > written){
+			out.write(buf, (int) (written - base), (int) (end - written));
+			written = end;
+		}
+	}
+
+	/**
+	 * 不写出上次写出或跳过的位置到end之间的原文
+	 */
+	void discard(long end) {
+		if(end > written){
+			written = end;
+		}
+	}
+
+	/**
+	 * 上次写出或跳过的位置到end之间的原文，不移动位置
+	 */
+	String text(long end) {
+		return end > written ? new String(buf, (int) (written - base), (int) (end - written)) : "";
+	}
+
+	private XMLStreamException mismatch(long pos) {
+		return new XMLStreamException("xml原文与解析结果不一致，位置：" + pos);
+	}
+
+	/**
+	 * 读入更多字符，丢弃解析器、切分和写出都已经用过的部分
+	 */
+	private boolean fill() throws IOException {
+		if(eof){
+			return false;
+		}
+		int discard = (int) (Math.min(Math.min(readPos, scanPos), written) - base);
+		if(discard > 0){
+			System.arraycopy(buf, discard, buf, 0, count - discard);
+			count -= discard;
+			base += discard;
+		}
+		if(count == buf.length){
+			buf = Arrays.copyOf(buf, buf.length * 2);
+		}
+		int n;
+		do {
+			n = in.read(buf, count, buf.length - count);
+		} while (n == 0);
+		if(n < 0){
+			eof = true;
+			return false;
+		}
+		count += n;
+		return true;
+	}
+
+	private int charAt(long pos) throws IOException {
+		while (pos >= base + count) {
+			if(!fill()){
+				return -1;
+			}
+		}
+		return buf[(int) (pos - base)];
+	}
+
+	private boolean startsWith(long pos, String prefix) throws IOException {
+		for ( int i = 0; i < prefix.length(); i++ ) {
+			if(charAt(pos + i) != prefix.charAt(i)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 查找end，返回end之后的位置
+	 */
+	private long find(long pos, String end) throws IOException, XMLStreamException {
+		while (!startsWith(pos, end)) {
+			if(charAt(pos) == -1){
+				throw mismatch(pos);
+			}
+			pos++;
+		}
+		return pos + end.length();
+	}
+
+	private long skipText(long pos) throws IOException {
+		int c;
+		while ((c = charAt(pos)) != -1 && c != '<') {
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * 跳过连续的文本和CDATA
+	 */
+	private long skipCharacters(long pos) throws IOException, XMLStreamException {
+		pos = skipText(pos);
+		while (startsWith(pos, "<![CDATA[")) {
+			pos = skipText(find(pos + 9, "]]>"));
+		}
+		return pos;
+	}
+
+	/**
+	 * 跳过开始标签，属性值中可以有&gt;
+	 */
+	private long skipTag(long pos) throws IOException, XMLStreamException {
+		int c;
+		while ((c = charAt(pos)) != '>') {
+			if(c == -1){
+				throw mismatch(pos);
+			}
+			if(c == '"' || c == '\''){
+				pos = find(pos + 1, String.valueOf((char) c));
+			}else{
+				pos++;
+			}
+		}
+		return pos + 1;
+	}
+
+	/**
+	 * 跳过DOCTYPE，内部子集中可以有引号、注释和&gt;
+	 */
+	private long skipDoctype(long pos) throws IOException, XMLStreamException {
+		int depth = 0;
+		int c;
+		while ((c = charAt(pos)) != '>' || depth > 0) {
+			if(c == -1){
+				throw mismatch(pos);
+			}
+			if(c == '"' || c == '\''){
+				pos = find(pos + 1, String.valueOf((char) c));
+			}else if(startsWith(pos, "<!--")){
+				pos = find(pos + 4, "-->");
+			}else{
+				if(c == '['){
+					depth++;
+				}else if(c == ']'){
+					depth--;
+				}
+				pos++;
+			}
+		}
+		return pos + 1;
+	}
+
+}
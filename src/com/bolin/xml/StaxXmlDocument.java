@@ -0,0 +1,376 @@
+package com.bolin.xml;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Comment;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.ProcessingInstruction;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import com.bolin.utils.AtomicFiles;
+import com.bolin.utils.ChangeDetectingOutputStream;
+import com.bolin.utils.PatchMetrics;
+
+/**
+ * StaxXmlDocument
+ * 基于StAX的流式xml替换
+ *
+ * 要修改的xml按事件逐个读取，未修改的部分按原文写出，只缓存根元素下名称匹配的一级子元素
+ * （如filter），读完该元素后判断是否需要替换。内存占用只与单个被匹配元素的大小有关，
+ * 与文档大小无关，原文件的格式、注释、CDATA也都保留，没有需要修改的内容时不写文件。
+ * 与Dom4jXmlDocument不同，替换后的元素保留在原来的位置。
+ * 替换由XmlRules在一次遍历中完成，按filter-name替换filter是其中一条replace规则。
+ *
+ * parseXml和createXml仍使用dom4j实现。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class StaxXmlDocument extends Dom4jXmlDocument {
+
+	static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+	static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+	static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+
+	/** JDK自带的解析器默认把CDATA作为普通文本读出 */
+	private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+	static {
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		if(INPUT_FACTORY.isPropertySupported(REPORT_CDATA)){
+			INPUT_FACTORY.setProperty(REPORT_CDATA, Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param sourceXml
+	 * @param targetXml
+	 * @return 是否修改了文件
+	 * @throws IOException
+	 */
+	@Override
+	public boolean replaceElement(String sourceXml, String targetXml, String elementName, String nameElement, String name) throws IOException {
+		List<XMLEvent> sourceEvents;
+		try {
+			sourceEvents = readRootElement(new File(sourceXml));
+		}
+		catch (XMLStreamException e) {
+			throw new IOException("xml解析出错：" + new File(sourceXml).getName(), e);
+		}
+		return replaceElement(sourceEvents, targetXml, elementName, nameElement, name);
+	}
+
+	/**
+	 * 用已解析的配置文件替换xml文件
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param sourceEvents 用于替换的元素事件，见readRootElement
+	 * @param targetXml 要修改的xml
+	 * @return 是否修改了文件，替换后内容与原文件相同时不写文件
+	 * @throws IOException 读取、解析或写入出错，要修改的xml保持不变
+	 */
+	public boolean replaceElement(List<XMLEvent> sourceEvents, String targetXml, String elementName, String nameElement, String name) throws IOException {
+		return replaceElement(XmlRules.replace(selector(elementName, nameElement, name), sourceEvents), targetXml);
+	}
+
+	/**
+	 * 按规则修改xml文件，所有规则在一次遍历中应用
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param rules
+	 * @param targetXml 要修改的xml
+	 * @return 是否修改了文件，修改后内容与原文件相同时不写文件
+	 * @throws IOException 读取、解析或写入出错，要修改的xml保持不变
+	 */
+	public boolean replaceElement(XmlRules rules, String targetXml) throws IOException {
+		File targetFile = new File(targetXml);
+		File tmpFile = AtomicFiles.tempFileFor(targetFile);
+		try {
+			boolean changed;
+			InputStream in = new BufferedInputStream(new FileInputStream(targetFile), 65536);
+			try {
+				ChangeDetectingOutputStream out = ChangeDetectingOutputStream.forFile(targetFile, tmpFile);
+				try {
+					rules.apply(in, out);
+				}
+				finally {
+					out.close();
+				}
+				changed = out.isChanged();
+			}
+			finally {
+				in.close();
+			}
+			if(changed){
+				AtomicFiles.commit(tmpFile, targetFile);
+			}
+			return changed;
+		}
+		catch (IOException e) {
+			tmpFile.delete();
+			throw e;
+		}
+		catch (XMLStreamException e) {
+			tmpFile.delete();
+			throw new IOException("xml解析出错：" + targetFile.getName(), e);
+		}
+	}
+
+	/**
+	 * 从输入流读取xml，替换后写到输出流，输出编码与原文档的编码一致，未修改的部分按原文写出
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param in 要修改的xml
+	 * @param out 替换后的xml
+	 * @param sourceEvents 用于替换的元素事件，见readRootElement
+	 * @param elementName 要替换的元素名称
+	 * @param nameElement 用于匹配的子元素名称
+	 * @param name 用于匹配的子元素内容
+	 * @return 替换的元素数量
+	 * @throws XMLStreamException
+	 */
+	public int replaceElement(InputStream in, OutputStream out, List<XMLEvent> sourceEvents,
+			String elementName, String nameElement, String name) throws XMLStreamException {
+		return XmlRules.replace(selector(elementName, nameElement, name), sourceEvents).apply(in, out)[0];
+	}
+
+	/**
+	 * 根元素下名称为elementName、子元素nameElement的内容为name的元素的选择器
+	 */
+	static String selector(String elementName, String nameElement, String name) {
+		return elementName + "[" + nameElement + "=" + XmlRules.quote(name) + "]";
+	}
+
+	/**
+	 * 查找根元素下第一个匹配的一级子元素，返回其xml文本，用于预览替换前的内容
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param in xml内容
+	 * @param elementName 元素名称
+	 * @param nameElement 用于匹配的子元素名称
+	 * @param name 用于匹配的子元素内容
+	 * @return 未找到时返回null
+	 * @throws XMLStreamException
+	 */
+	public String findElement(InputStream in, String elementName, String nameElement, String name) throws XMLStreamException {
+		XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(in);
+		try {
+			int depth = 0;
+			while (reader.hasNext()) {
+				XMLEvent event = reader.nextEvent();
+				if(event.isStartElement()){
+					depth++;
+					if(depth == 2 && elementName.equals(event.asStartElement().getName().getLocalPart())){
+						List<XMLEvent> buffered = new ArrayList<XMLEvent>();
+						buffered.add(event);
+						String elementText = bufferElement(reader, buffered, nameElement);
+						depth--;
+						if(name.equals(elementText)){
+							return toXml(buffered);
+						}
+					}
+				}else if(event.isEndElement()){
+					depth--;
+				}
+			}
+			return null;
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * 把元素事件写成xml文本，没有内容的元素写成自闭合，CDATA仍写成CDATA
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param events
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	public static String toXml(List<XMLEvent> events) throws XMLStreamException {
+		StringWriter text = new StringWriter();
+		XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(text);
+		for ( int i = 0; i < events.size(); i++ ) {
+			XMLEvent event = events.get(i);
+			switch (event.getEventType()) {
+				case XMLStreamConstants.START_ELEMENT:
+					boolean empty = i + 1 < events.size() && events.get(i + 1).isEndElement();
+					writeStartElement(writer, event.asStartElement(), empty);
+					if(empty){
+						i++;
+					}
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					writer.writeEndElement();
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					if(event.asCharacters().isCData()){
+						writer.writeCData(event.asCharacters().getData());
+					}else{
+						writer.writeCharacters(event.asCharacters().getData());
+					}
+					break;
+				case XMLStreamConstants.COMMENT:
+					writer.writeComment(((Comment) event).getText());
+					break;
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					ProcessingInstruction instruction = (ProcessingInstruction) event;
+					writer.writeProcessingInstruction(instruction.getTarget(), instruction.getData());
+					break;
+				default:
+					break;
+			}
+		}
+		//结束最后一个自闭合元素
+		writer.writeEndDocument();
+		writer.close();
+		return text.toString();
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static void writeStartElement(XMLStreamWriter writer, StartElement element, boolean empty) throws XMLStreamException {
+		QName name = element.getName();
+		if(empty){
+			writer.writeEmptyElement(name.getPrefix(), name.getLocalPart(), name.getNamespaceURI());
+		}else{
+			writer.writeStartElement(name.getPrefix(), name.getLocalPart(), name.getNamespaceURI());
+		}
+		for ( Iterator iterator = element.getNamespaces(); iterator.hasNext(); ) {
+			Namespace namespace = (Namespace) iterator.next();
+			if(namespace.isDefaultNamespaceDeclaration()){
+				writer.writeDefaultNamespace(namespace.getNamespaceURI());
+			}else{
+				writer.writeNamespace(namespace.getPrefix(), namespace.getNamespaceURI());
+			}
+		}
+		for ( Iterator iterator = element.getAttributes(); iterator.hasNext(); ) {
+			Attribute attribute = (Attribute) iterator.next();
+			QName attributeName = attribute.getName();
+			writer.writeAttribute(attributeName.getPrefix(), attributeName.getNamespaceURI(), attributeName.getLocalPart(), attribute.getValue());
+		}
+	}
+
+	/**
+	 * 读取当前元素的剩余事件到buffered中，返回其子元素nameElement的内容
+	 */
+	private String bufferElement(XMLEventReader reader, List<XMLEvent> buffered, String nameElement) throws XMLStreamException {
+		int depth = 1;
+		StringBuilder nameText = null;
+		String elementText = null;
+		while (depth > 0 && reader.hasNext()) {
+			XMLEvent event = reader.nextEvent();
+			buffered.add(event);
+			if(event.isStartElement()){
+				depth++;
+				if(depth == 2 && elementText == null && nameText == null
+						&& nameElement.equals(event.asStartElement().getName().getLocalPart())){
+					nameText = new StringBuilder();
+				}
+			}else if(event.isEndElement()){
+				if(depth == 2 && nameText != null && elementText == null){
+					elementText = nameText.toString();
+				}
+				depth--;
+			}else if(event.isCharacters() && nameText != null && elementText == null){
+				nameText.append(event.asCharacters().getData());
+			}
+		}
+		return elementText;
+	}
+
+	/**
+	 * 读取配置文件根元素的所有事件，根元素上的默认命名空间声明去掉，
+	 * 写入要修改的xml后使用其所在位置的命名空间
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param sourceXml 配置文件
+	 * @return
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	@SuppressWarnings("rawtypes")
+	public static List<XMLEvent> readRootElement(File sourceXml) throws IOException, XMLStreamException {
+		List<XMLEvent> events = new ArrayList<XMLEvent>();
+		long start = PatchMetrics.start();
+		InputStream in = new BufferedInputStream(new FileInputStream(sourceXml));
+		try {
+			XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(in);
+			try {
+				int depth = 0;
+				while (reader.hasNext()) {
+					XMLEvent event = reader.nextEvent();
+					if(event.isStartElement()){
+						if(depth == 0){
+							StartElement root = event.asStartElement();
+							List<Namespace> namespaces = new ArrayList<Namespace>();
+							for ( Iterator iterator = root.getNamespaces(); iterator.hasNext(); ) {
+								Namespace namespace = (Namespace) iterator.next();
+								if(!namespace.isDefaultNamespaceDeclaration()){
+									namespaces.add(namespace);
+								}
+							}
+							event = EVENT_FACTORY.createStartElement(root.getName().getPrefix(), "",
+									root.getName().getLocalPart(), root.getAttributes(), namespaces.iterator());
+						}
+						depth++;
+					}else if(event.isEndElement()){
+						depth--;
+						if(depth == 0){
+							events.add(EVENT_FACTORY.createEndElement(event.asEndElement().getName().getPrefix(), "",
+									event.asEndElement().getName().getLocalPart()));
+							break;
+						}
+					}
+					if(depth > 0){
+						events.add(event);
+					}
+				}
+			}
+			finally {
+				reader.close();
+			}
+		}
+		finally {
+			in.close();
+			PatchMetrics.record(PatchMetrics.Phase.PARSE_XML, start, sourceXml.length(), 0L, 1L);
+		}
+		return events;
+	}
+
+}
@@ -1,5 +1,7 @@
 package com.bolin.xml;
 
+import java.io.IOException;
+
 import org.dom4j.Document;
 
 /**
@@ -9,8 +11,22 @@ import org.dom4j.Document;
  */
 public interface XmlDocument {
 	
-	public void createXml(String fileName, Document document);
+	public void createXml(String fileName, Document document) throws IOException;
 	
 	public Document parseXml(String fileName);
+	
+	/**
+	 * 用配置文件的根元素替换要修改的xml中对应的一级子元素
+	 * 一级子元素名称为elementName，且其子元素nameElement的内容为name时替换
+	 * 
+	 * @param sourceXml 配置文件
+	 * @param targetXml 要修改的xml
+	 * @param elementName 要替换的元素名称，如filter
+	 * @param nameElement 用于匹配的子元素名称，如filter-name
+	 * @param name 用于匹配的子元素内容，如CASFilter
+	 * @return 是否修改了文件，替换后内容与原文件相同时不写文件
+	 * @throws IOException 读取或写入出错，出错时要修改的xml保持不变
+	 */
+	public boolean replaceElement(String sourceXml, String targetXml, String elementName, String nameElement, String name) throws IOException;
 
 }
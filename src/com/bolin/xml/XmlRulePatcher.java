@@ -0,0 +1,586 @@
+package com.bolin.xml;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.CharsetEncoder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * XmlRulePatcher
+ * 按XmlRules逐个事件读取xml并写出，一次遍历应用所有规则
+ *
+ * 未修改的部分按RawXmlReader切分出的原文写出，引号、实体引用、CDATA、自闭合元素和根元素外的空白都不变，
+ * 没有规则生效时输出与原文件相同；只有插入的内容和设置属性的开始标签是新写出的。
+ * 每个打开的元素记录其子元素可能匹配的前缀树节点，不在任何规则路径上的元素不做查找。
+ * 只有选择器带子元素条件时才缓存当前元素，判断后放回事件流继续处理，内存占用只与被缓存元素的大小有关。
+ * 元素之间的空白延后写出，删除元素时去掉其前面的空白，插入时使用相邻元素的缩进。
+ * 每次替换创建一个实例，不能在多个线程中共享。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+final class XmlRulePatcher {
+
+	private static final Comparator<XmlRules.Rule> BY_INDEX = new Comparator<XmlRules.Rule>() {
+		@Override
+		public int compare(XmlRules.Rule o1, XmlRules.Rule o2) {
+			return o1.getIndex() - o2.getIndex();
+		}
+	};
+
+	/**
+	 * 一个打开的元素
+	 */
+	private static final class Frame {
+
+		/** 子元素可能匹配的节点，为null时子元素不做查找 */
+		List<XmlRules.Node> active;
+
+		List<XmlRules.Rule> first;
+
+		List<XmlRules.Rule> last;
+
+		List<XmlRules.Rule> after;
+
+		/** 元素前面的空白 */
+		String indent = "";
+
+		/** 最后一个子元素前面的空白 */
+		String childIndent;
+
+		/** 自闭合元素插入了子元素，改为写出的结束标签 */
+		String endTag;
+
+		boolean firstDone;
+
+	}
+
+	/** 不在任何规则路径上的元素共用，没有需要记录的状态 */
+	private static final Frame PLAIN = new Frame();
+
+	private final XmlRules rules;
+
+	private final RawXmlReader source;
+
+	private final XMLEventReader reader;
+
+	private final Writer out;
+
+	private final CharsetEncoder encoder;
+
+	/** 缓存后放回的事件，先于reader读取 */
+	private final Deque<XMLEvent> pushback = new ArrayDeque<XMLEvent>();
+
+	/** 放回的事件原文的结束位置 */
+	private final Deque<Long> pushbackEnds = new ArrayDeque<Long>();
+
+	/** 延后写出的空白原文的结束位置，没有时为-1 */
+	private long pendingEnd = -1;
+
+	private final StringBuilder pendingText = new StringBuilder();
+
+	private final Deque<Frame> frames = new ArrayDeque<Frame>();
+
+	private final int[] hits;
+
+	/** 每次生效的规则和原来的值，为null时不记录 */
+	private final List<XmlRules.Hit> matches;
+
+	/** 规则内容的xml文本，下标为规则序号 */
+	private final String[] contents;
+
+	/** 最后读出的事件原文的结束位置 */
+	private long end;
+
+	XmlRulePatcher(XmlRules rules, RawXmlReader source, XMLEventReader reader, Writer out, List<XmlRules.Hit> matches) {
+		this.rules = rules;
+		this.source = source;
+		this.reader = reader;
+		this.out = out;
+		this.encoder = source.newEncoder();
+		this.hits = new int[rules.getRules().size()];
+		this.contents = new String[hits.length];
+		this.matches = matches;
+	}
+
+	int[] run() throws XMLStreamException, IOException {
+		Frame document = new Frame();
+		document.active = Collections.singletonList(rules.root);
+		frames.push(document);
+		try {
+			while (hasNext()) {
+				XMLEvent event = next();
+				if(frames.size() > 1 && XmlRules.isWhitespace(event)){
+					pendingEnd = end;
+					pendingText.append(event.asCharacters().getData());
+					continue;
+				}
+				if(event.isStartElement()){
+					startElement(event.asStartElement(), frames.peek());
+				}else if(event.isEndElement()){
+					endElement();
+				}else{
+					beforeContent(frames.peek());
+					flushPending();
+					source.copy(out, end);
+				}
+			}
+			flushPending();
+			out.flush();
+		}
+		finally {
+			reader.close();
+		}
+		return hits;
+	}
+
+	private void startElement(StartElement element, Frame parent) throws XMLStreamException, IOException {
+		if(parent.active == null){
+			plainElement(parent, end, null, null);
+			return;
+		}
+		List<XmlRules.Step> candidates = new ArrayList<XmlRules.Step>(2);
+		String name = element.getName().getLocalPart();
+		for ( XmlRules.Node node : parent.active ) {
+			node.candidates(name, candidates);
+		}
+		if(candidates.isEmpty()){
+			plainElement(parent, end, null, null);
+			return;
+		}
+		String indent = pendingText.toString();
+		long startEnd = end;
+		List<XMLEvent> buffered = null;
+		List<Long> bufferedEnds = null;
+		Map<String, List<String>> childTexts = null;
+		for ( XmlRules.Step step : candidates ) {
+			if(step.needsChildren()){
+				bufferedEnds = new ArrayList<Long>();
+				buffered = readElement(bufferedEnds);
+				childTexts = childTexts(buffered);
+				break;
+			}
+		}
+		List<XmlRules.Step> matched = new ArrayList<XmlRules.Step>(candidates.size());
+		for ( XmlRules.Step step : candidates ) {
+			if(step.matches(element, childTexts)){
+				matched.add(step);
+			}
+		}
+
+		if(matched.isEmpty()){
+			plainElement(parent, startEnd, buffered, bufferedEnds);
+			return;
+		}
+
+		beforeContent(parent);
+		parent.childIndent = indent;
+		Frame frame = new Frame();
+		frame.indent = indent;
+
+		List<XmlRules.Rule> matchedRules = new ArrayList<XmlRules.Rule>();
+		for ( XmlRules.Step step : matched ) {
+			matchedRules.addAll(step.rules);
+			if(!step.next.isEmpty()){
+				if(frame.active == null){
+					frame.active = new ArrayList<XmlRules.Node>(matched.size());
+				}
+				frame.active.add(step.next);
+			}
+		}
+		Collections.sort(matchedRules, BY_INDEX);
+		XmlRules.Rule drop = null;
+		List<XmlRules.Rule> before = new ArrayList<XmlRules.Rule>(0);
+		List<XmlRules.Rule> setAttributes = new ArrayList<XmlRules.Rule>(0);
+		for ( XmlRules.Rule rule : matchedRules ) {
+			switch (rule.getAction()) {
+				case REPLACE:
+				case REMOVE:
+					if(drop == null) drop = rule;
+					break;
+				case SET_ATTRIBUTE:
+					setAttributes.add(rule);
+					break;
+				case INSERT:
+					switch (rule.getPosition()) {
+						case BEFORE:
+							before.add(rule);
+							break;
+						case AFTER:
+							frame.after = add(frame.after, rule);
+							break;
+						case FIRST:
+							frame.first = add(frame.first, rule);
+							break;
+						default:
+							frame.last = add(frame.last, rule);
+							break;
+					}
+					break;
+			}
+		}
+
+		if(drop != null){
+			long elementEnd = startEnd;
+			if(buffered == null){
+				readElement(null);
+				elementEnd = end;
+			}else if(!bufferedEnds.isEmpty()){
+				elementEnd = bufferedEnds.get(bufferedEnds.size() - 1);
+			}
+			//前面延后写出的空白还没有写出，去掉首尾空白后就是被替换或删除的元素原文
+			hit(drop, matches == null ? null : source.text(elementEnd).trim());
+			List<XmlRules.Rule> sequence = new ArrayList<XmlRules.Rule>(before);
+			if(drop.getAction() == XmlRules.Action.REPLACE){
+				sequence.add(drop);
+			}
+			if(frame.after != null){
+				sequence.addAll(frame.after);
+			}
+			if(sequence.isEmpty()){
+				//删除的元素前面的空白一起去掉
+				pendingEnd = -1;
+				pendingText.setLength(0);
+				source.discard(elementEnd);
+				return;
+			}
+			flushPending();
+			for ( int i = 0; i < sequence.size(); i++ ) {
+				if(i > 0){
+					writeText(indent);
+				}
+				XmlRules.Rule rule = sequence.get(i);
+				writeContent(rule);
+				if(rule != drop){
+					hit(rule, null);
+				}
+			}
+			source.discard(elementEnd);
+			return;
+		}
+
+		flushPending();
+		for ( XmlRules.Rule rule : before ) {
+			writeContent(rule);
+			writeText(indent);
+			hit(rule, null);
+		}
+		String tag = source.text(startEnd);
+		boolean modified = false;
+		for ( XmlRules.Rule rule : setAttributes ) {
+			hit(rule, matches == null ? null : attribute(element, rule.getAttributeName()));
+			tag = setAttribute(tag, rule.getAttributeName(), rule.getAttributeValue());
+			modified = true;
+		}
+		if(tag.endsWith("/>") && (frame.first != null || frame.last != null)){
+			frame.endTag = "</" + tagName(tag) + ">";
+			tag = tag.substring(0, tag.lastIndexOf('/')) + ">";
+			modified = true;
+		}
+		if(modified){
+			writeMarkup(tag);
+			source.discard(startEnd);
+		}else{
+			source.copy(out, startEnd);
+		}
+		frames.push(frame);
+		pushBack(buffered, bufferedEnds);
+	}
+
+	/**
+	 * 原样写出不匹配任何规则的元素
+	 */
+	private void plainElement(Frame parent, long startEnd, List<XMLEvent> buffered, List<Long> bufferedEnds) throws XMLStreamException, IOException {
+		beforeContent(parent);
+		if(parent.last != null){
+			parent.childIndent = pendingText.toString();
+		}
+		flushPending();
+		source.copy(out, startEnd);
+		frames.push(PLAIN);
+		pushBack(buffered, bufferedEnds);
+	}
+
+	private void endElement() throws XMLStreamException, IOException {
+		Frame frame = frames.pop();
+		if(frame == PLAIN){
+			flushPending();
+			source.copy(out, end);
+			return;
+		}
+		List<XmlRules.Rule> tail = new ArrayList<XmlRules.Rule>(0);
+		if(frame.first != null && !frame.firstDone){
+			tail.addAll(frame.first);
+		}
+		if(frame.last != null){
+			tail.addAll(frame.last);
+		}
+		for ( XmlRules.Rule rule : tail ) {
+			//插在最后一个子元素之后、结束标签前的空白之前
+			if(frame.childIndent != null){
+				writeText(frame.childIndent);
+			}
+			writeContent(rule);
+			hit(rule, null);
+		}
+		flushPending();
+		if(frame.endTag != null){
+			writeMarkup(frame.endTag);
+			source.discard(end);
+		}else{
+			source.copy(out, end);
+		}
+		if(frame.after != null){
+			for ( XmlRules.Rule rule : frame.after ) {
+				writeText(frame.indent);
+				writeContent(rule);
+				hit(rule, null);
+			}
+		}
+	}
+
+	/**
+	 * 元素的第一个非空白内容之前插入position为first的内容
+	 */
+	private void beforeContent(Frame frame) throws XMLStreamException, IOException {
+		if(frame.first == null || frame.firstDone){
+			return;
+		}
+		frame.firstDone = true;
+		String indent = pendingText.toString();
+		flushPending();
+		for ( XmlRules.Rule rule : frame.first ) {
+			writeContent(rule);
+			writeText(indent);
+			hit(rule, null);
+		}
+	}
+
+	/**
+	 * 记录规则生效一次
+	 * @param oldValue 被替换或删除的元素原文、设置前的属性值，插入时为null
+	 */
+	private void hit(XmlRules.Rule rule, String oldValue) {
+		hits[rule.getIndex()]++;
+		if(matches != null){
+			matches.add(new XmlRules.Hit(rule, oldValue));
+		}
+	}
+
+	/**
+	 * 按本地名称查找属性值，与选择器的属性条件相同
+	 */
+	@SuppressWarnings("rawtypes")
+	private static String attribute(StartElement element, String name) {
+		for ( Iterator iterator = element.getAttributes(); iterator.hasNext(); ) {
+			Attribute attribute = (Attribute) iterator.next();
+			if(attribute.getName().getLocalPart().equals(name)){
+				return attribute.getValue();
+			}
+		}
+		return null;
+	}
+
+	private static List<XmlRules.Rule> add(List<XmlRules.Rule> list, XmlRules.Rule rule) {
+		if(list == null){
+			list = new ArrayList<XmlRules.Rule>(1);
+		}
+		list.add(rule);
+		return list;
+	}
+
+	/**
+	 * 修改开始标签原文中的属性值，其他属性和空白不变，没有该属性时加在最后一个属性之后
+	 */
+	static String setAttribute(String tag, String name, String value) {
+		int i = tag.indexOf('<') + 1;
+		int length = tag.length();
+		while (i < length && !isTagEnd(tag.charAt(i))) i++;
+		int insertAt = i;
+		while (true) {
+			while (i < length && Character.isWhitespace(tag.charAt(i))) i++;
+			if(i >= length || tag.charAt(i) == '/' || tag.charAt(i) == '>'){
+				break;
+			}
+			int nameStart = i;
+			while (i < length && tag.charAt(i) != '=' && !Character.isWhitespace(tag.charAt(i))) i++;
+			String attributeName = tag.substring(nameStart, i);
+			i = tag.indexOf('=', i) + 1;
+			while (i < length && Character.isWhitespace(tag.charAt(i))) i++;
+			char quote = tag.charAt(i);
+			int valueEnd = tag.indexOf(quote, i + 1);
+			String localName = attributeName.substring(attributeName.indexOf(':') + 1);
+			if(localName.equals(name) && !"xmlns".equals(attributeName) && !attributeName.startsWith("xmlns:")){
+				return tag.substring(0, i + 1) + escape(value, quote) + tag.substring(valueEnd);
+			}
+			i = valueEnd + 1;
+			insertAt = i;
+		}
+		return tag.substring(0, insertAt) + " " + name + "=\"" + escape(value, '"') + "\"" + tag.substring(insertAt);
+	}
+
+	private static boolean isTagEnd(char c) {
+		return Character.isWhitespace(c) || c == '/' || c == '>';
+	}
+
+	/**
+	 * 开始标签原文中的元素名称（含前缀）
+	 */
+	private static String tagName(String tag) {
+		int start = tag.indexOf('<') + 1;
+		int i = start;
+		while (i < tag.length() && !isTagEnd(tag.charAt(i))) i++;
+		return tag.substring(start, i);
+	}
+
+	private static String escape(String value, char quote) {
+		StringBuilder sb = new StringBuilder(value.length() + 8);
+		for ( int i = 0; i < value.length(); i++ ) {
+			char c = value.charAt(i);
+			if(c == '&'){
+				sb.append("&amp;");
+			}else if(c == '<'){
+				sb.append("&lt;");
+			}else if(c == quote){
+				sb.append(c == '"' ? "&quot;" : "&apos;");
+			}else{
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 读取当前元素的剩余事件，包括结束标签
+	 */
+	private List<XMLEvent> readElement(List<Long> ends) throws XMLStreamException, IOException {
+		List<XMLEvent> events = new ArrayList<XMLEvent>();
+		int depth = 1;
+		while (depth > 0 && hasNext()) {
+			XMLEvent event = next();
+			events.add(event);
+			if(ends != null){
+				ends.add(end);
+			}
+			if(event.isStartElement()){
+				depth++;
+			}else if(event.isEndElement()){
+				depth--;
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * 直接子元素名称 -> 内容（去掉首尾空白），同名子元素有多个
+	 */
+	private static Map<String, List<String>> childTexts(List<XMLEvent> events) {
+		Map<String, List<String>> texts = new HashMap<String, List<String>>();
+		int depth = 0;
+		String name = null;
+		StringBuilder text = null;
+		for ( XMLEvent event : events ) {
+			if(event.isStartElement()){
+				depth++;
+				if(depth == 1){
+					name = event.asStartElement().getName().getLocalPart();
+					text = new StringBuilder();
+				}
+			}else if(event.isEndElement()){
+				if(depth == 1 && name != null){
+					List<String> list = texts.get(name);
+					if(list == null){
+						list = new ArrayList<String>(1);
+						texts.put(name, list);
+					}
+					list.add(text.toString().trim());
+					name = null;
+				}
+				depth--;
+			}else if(depth == 1 && event.isCharacters()){
+				text.append(event.asCharacters().getData());
+			}
+		}
+		return texts;
+	}
+
+	private void pushBack(List<XMLEvent> events, List<Long> ends) {
+		if(events == null) return;
+		for ( int i = events.size() - 1; i >= 0; i-- ) {
+			pushback.addFirst(events.get(i));
+			pushbackEnds.addFirst(ends.get(i));
+		}
+	}
+
+	private boolean hasNext() {
+		return !pushback.isEmpty() || reader.hasNext();
+	}
+
+	private XMLEvent next() throws XMLStreamException, IOException {
+		if(!pushback.isEmpty()){
+			end = pushbackEnds.pollFirst();
+			return pushback.pollFirst();
+		}
+		XMLEvent event = reader.nextEvent();
+		end = source.advance(event);
+		return event;
+	}
+
+	private void flushPending() throws IOException {
+		if(pendingEnd < 0) return;
+		source.copy(out, pendingEnd);
+		pendingEnd = -1;
+		pendingText.setLength(0);
+	}
+
+	private void writeText(String text) throws IOException {
+		if(text != null && !text.isEmpty()){
+			out.write(text);
+		}
+	}
+
+	private void writeContent(XmlRules.Rule rule) throws XMLStreamException, IOException {
+		String content = contents[rule.getIndex()];
+		if(content == null){
+			content = StaxXmlDocument.toXml(rule.getContent());
+			contents[rule.getIndex()] = content;
+		}
+		writeMarkup(content);
+	}
+
+	/**
+	 * 写出新的内容，原文编码中没有的字符写成字符引用
+	 */
+	private void writeMarkup(String text) throws IOException {
+		if(encoder.canEncode(text)){
+			out.write(text);
+			return;
+		}
+		for ( int i = 0; i < text.length(); ) {
+			int codePoint = text.codePointAt(i);
+			int length = Character.charCount(codePoint);
+			if(encoder.canEncode(text.substring(i, i + length))){
+				out.write(text, i, length);
+			}else{
+				out.write("&#" + codePoint + ";");
+			}
+			i += length;
+		}
+	}
+
+}
@@ -0,0 +1,623 @@
+package com.bolin.xml;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import com.bolin.utils.PatchMetrics;
+
+/**
+ * XmlRules
+ * 声明式的xml修改规则，每条规则由选择器和动作组成
+ *
+ * 规则文件格式：
+ * <pre>
+ * &lt;patch-rules&gt;
+ *   &lt;rule action="replace" select="filter[filter-name=CASFilter]"&gt;&lt;filter&gt;...&lt;/filter&gt;&lt;/rule&gt;
+ *   &lt;rule action="insert" select="." position="last"&gt;&lt;context-param&gt;...&lt;/context-param&gt;&lt;/rule&gt;
+ *   &lt;rule action="remove" select="servlet-mapping[servlet-name=legacy]"/&gt;
+ *   &lt;rule action="set-attribute" select="bean[@id=dataSource]/property[@name=url]" name="value" value="jdbc:..."/&gt;
+ * &lt;/patch-rules&gt;
+ * </pre>
+ * 选择器是以/分隔的元素名称，从根元素的子元素开始，"."表示根元素本身，以/开头时第一级为根元素。
+ * 名称可以是*；每一级可以带多个条件，[@属性=值]比较属性，[子元素=内容]比较子元素去掉首尾空白后的内容，值可以加引号。
+ * insert的position为before、after、first、last（默认），分别插入到元素前、后、第一个子元素前、最后一个子元素后。
+ * insert每次执行都会插入，需要重复执行时可以对同一元素再加一条remove规则，同一次遍历中先删除旧的再插入。
+ *
+ * 规则在加载时编译成按元素名称索引的前缀树，替换时只遍历一次文档，每个元素只在当前可能匹配的节点中按名称查找，
+ * 规则数量基本不影响替换耗时。编译后不再修改，可以在多个线程中共享。
+ *
+ * @author bolin
+ * @create 2026年10月18日
+ *
+ */
+public class XmlRules {
+
+	public enum Action {
+		/** 用规则内容替换元素 */
+		REPLACE,
+		/** 插入规则内容 */
+		INSERT,
+		/** 删除元素 */
+		REMOVE,
+		/** 设置元素的属性 */
+		SET_ATTRIBUTE
+	}
+
+	public enum Position {
+		BEFORE, AFTER, FIRST, LAST
+	}
+
+	/**
+	 * 一条规则
+	 */
+	public static class Rule {
+
+		private final Action action;
+
+		private final String select;
+
+		private final Position position;
+
+		private final String attributeName;
+
+		private final String attributeValue;
+
+		private final List<XMLEvent> content;
+
+		private int index;
+
+		/**
+		 * @param action 动作
+		 * @param select 选择器
+		 * @param position insert的插入位置，其他动作为null
+		 * @param attributeName set-attribute的属性名称
+		 * @param attributeValue set-attribute的属性值
+		 * @param content replace、insert的内容
+		 */
+		public Rule(Action action, String select, Position position, String attributeName, String attributeValue, List<XMLEvent> content) {
+			super();
+			this.action = action;
+			this.select = select;
+			this.position = position;
+			this.attributeName = attributeName;
+			this.attributeValue = attributeValue;
+			this.content = content == null ? Collections.<XMLEvent>emptyList()
+					: Collections.unmodifiableList(new ArrayList<XMLEvent>(content));
+		}
+
+		public Action getAction() {
+			return action;
+		}
+
+		public String getSelect() {
+			return select;
+		}
+
+		public Position getPosition() {
+			return position;
+		}
+
+		public String getAttributeName() {
+			return attributeName;
+		}
+
+		public String getAttributeValue() {
+			return attributeValue;
+		}
+
+		public List<XMLEvent> getContent() {
+			return content;
+		}
+
+		/**
+		 * 规则在规则列表中的序号，也是apply返回数组的下标
+		 * @return
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * 规则写入的内容：replace、insert为xml文本，set-attribute为属性值，remove为null
+		 * @return
+		 */
+		public String getValue() {
+			if(action == Action.SET_ATTRIBUTE){
+				return attributeValue;
+			}
+			if(content.isEmpty()){
+				return null;
+			}
+			try {
+				return StaxXmlDocument.toXml(content);
+			}
+			catch (XMLStreamException e) {
+				return null;
+			}
+		}
+
+		@Override
+		public String toString() {
+			String name = action.name().toLowerCase().replace('_', '-');
+			if(action == Action.INSERT){
+				name += " " + position.name().toLowerCase();
+			}
+			return name + " " + select + (action == Action.SET_ATTRIBUTE ? " @" + attributeName : "");
+		}
+
+	}
+
+	/**
+	 * 规则的一次生效
+	 */
+	public static class Hit {
+
+		private final Rule rule;
+
+		private final String oldValue;
+
+		public Hit(Rule rule, String oldValue) {
+			super();
+			this.rule = rule;
+			this.oldValue = oldValue;
+		}
+
+		public Rule getRule() {
+			return rule;
+		}
+
+		/**
+		 * 原来的内容：replace、remove为被匹配元素的原文，set-attribute为原来的属性值（没有时为null），insert为null
+		 * @return
+		 */
+		public String getOldValue() {
+			return oldValue;
+		}
+
+	}
+
+	/**
+	 * 选择器中的一级，同一父节点下名称和条件都相同的规则共用
+	 */
+	static final class Step {
+
+		final String name;
+
+		final List<String> attributeNames = new ArrayList<String>(1);
+
+		final List<String> attributeValues = new ArrayList<String>(1);
+
+		final List<String> childNames = new ArrayList<String>(1);
+
+		final List<String> childValues = new ArrayList<String>(1);
+
+		/** 下一级 */
+		final Node next = new Node();
+
+		/** 选择器到此为止的规则 */
+		final List<Rule> rules = new ArrayList<Rule>(1);
+
+		Step(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * 有子元素条件时要先读完整个元素才能判断
+		 */
+		boolean needsChildren() {
+			return !childNames.isEmpty();
+		}
+
+		@SuppressWarnings("rawtypes")
+		boolean matches(StartElement element, Map<String, List<String>> childTexts) {
+			for ( int i = 0; i < attributeNames.size(); i++ ) {
+				String value = null;
+				for ( Iterator iterator = element.getAttributes(); iterator.hasNext(); ) {
+					Attribute attribute = (Attribute) iterator.next();
+					if(attribute.getName().getLocalPart().equals(attributeNames.get(i))){
+						value = attribute.getValue();
+						break;
+					}
+				}
+				if(!attributeValues.get(i).equals(value)) return false;
+			}
+			for ( int i = 0; i < childNames.size(); i++ ) {
+				List<String> texts = childTexts == null ? null : childTexts.get(childNames.get(i));
+				if(texts == null || !texts.contains(childValues.get(i))) return false;
+			}
+			return true;
+		}
+
+		String key() {
+			StringBuilder key = new StringBuilder(name);
+			for ( int i = 0; i < attributeNames.size(); i++ ) {
+				key.append("[@").append(attributeNames.get(i)).append('=').append(attributeValues.get(i)).append(']');
+			}
+			for ( int i = 0; i < childNames.size(); i++ ) {
+				key.append('[').append(childNames.get(i)).append('=').append(childValues.get(i)).append(']');
+			}
+			return key.toString();
+		}
+
+	}
+
+	/**
+	 * 前缀树的节点：下一级可能匹配的步骤，按元素名称索引
+	 */
+	static final class Node {
+
+		private final Map<String, Step> byKey = new HashMap<String, Step>();
+
+		private final Map<String, List<Step>> byName = new HashMap<String, List<Step>>();
+
+		private final List<Step> any = new ArrayList<Step>();
+
+		boolean isEmpty() {
+			return byKey.isEmpty();
+		}
+
+		void candidates(String name, List<Step> out) {
+			List<Step> steps = byName.get(name);
+			if(steps != null){
+				out.addAll(steps);
+			}
+			out.addAll(any);
+		}
+
+		Step add(Step step) {
+			String key = step.key();
+			Step existing = byKey.get(key);
+			if(existing != null){
+				return existing;
+			}
+			byKey.put(key, step);
+			if("*".equals(step.name)){
+				any.add(step);
+			}else{
+				List<Step> steps = byName.get(step.name);
+				if(steps == null){
+					steps = new ArrayList<Step>(1);
+					byName.put(step.name, steps);
+				}
+				steps.add(step);
+			}
+			return step;
+		}
+
+	}
+
+	private final List<Rule> rules;
+
+	/** 文档节点，第一级匹配根元素 */
+	final Node root = new Node();
+
+	/**
+	 * @param rules 规则，按顺序编号
+	 * @throws IllegalArgumentException 选择器格式错误
+	 */
+	public XmlRules(List<Rule> rules) {
+		super();
+		this.rules = Collections.unmodifiableList(new ArrayList<Rule>(rules));
+		for ( int i = 0; i < this.rules.size(); i++ ) {
+			Rule rule = this.rules.get(i);
+			rule.index = i;
+			Node node = root;
+			Step last = null;
+			for ( Step step : parseSelector(rule.select) ) {
+				last = node.add(step);
+				node = last.next;
+			}
+			last.rules.add(rule);
+		}
+	}
+
+	/**
+	 * 只有一条replace规则
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param select 选择器
+	 * @param content 替换的内容
+	 * @return
+	 */
+	public static XmlRules replace(String select, List<XMLEvent> content) {
+		List<Rule> rules = new ArrayList<Rule>(1);
+		rules.add(new Rule(Action.REPLACE, select, null, null, null, content));
+		return new XmlRules(rules);
+	}
+
+	/**
+	 * 选择器中的值，含有]、引号或首尾空白时加引号
+	 * @param value
+	 * @return
+	 */
+	public static String quote(String value) {
+		if(value.indexOf(']') < 0 && value.indexOf('\'') < 0 && value.indexOf('"') < 0 && value.equals(value.trim())){
+			return value;
+		}
+		return value.indexOf('"') < 0 ? "\"" + value + "\"" : "'" + value + "'";
+	}
+
+	public List<Rule> getRules() {
+		return rules;
+	}
+
+	/**
+	 * 从输入流读取xml，应用所有规则后写到输出流，只遍历一次，输出编码与原文档的编码一致，
+	 * 未修改的部分按原文写出
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param in 要修改的xml
+	 * @param out 修改后的xml
+	 * @return 每条规则生效的次数，下标为规则序号
+	 * @throws XMLStreamException 解析出错，读写出错也包装成此异常
+	 */
+	public int[] apply(InputStream in, OutputStream out) throws XMLStreamException {
+		return apply(in, out, null);
+	}
+
+	/**
+	 * 同apply(InputStream, OutputStream)，并按文档顺序记录每次生效的规则和原来的值
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param in 要修改的xml
+	 * @param out 修改后的xml
+	 * @param matches 记录生效的规则，为null时不记录
+	 * @return 每条规则生效的次数，下标为规则序号
+	 * @throws XMLStreamException 解析出错，读写出错也包装成此异常
+	 */
+	public int[] apply(InputStream in, OutputStream out, List<Hit> matches) throws XMLStreamException {
+		long start = PatchMetrics.start();
+		PatchMetrics.CountingInputStream countingIn = new PatchMetrics.CountingInputStream(in);
+		try {
+			RawXmlReader source = new RawXmlReader(countingIn);
+			Writer writer = source.newWriter(out);
+			return new XmlRulePatcher(this, source, StaxXmlDocument.INPUT_FACTORY.createXMLEventReader(source), writer, matches).run();
+		}
+		catch (IOException e) {
+			throw new XMLStreamException(e.getMessage(), e);
+		}
+		finally {
+			//out可能只用于比较或在内存中，实际写入文件的字节数在替换文件时记录
+			PatchMetrics.record(PatchMetrics.Phase.PATCH_XML, start, countingIn.getCount(), 0L, 1L);
+		}
+	}
+
+	/**
+	 * 读取规则文件
+	 * @author bolin
+	 * @create 2026年10月18日
+	 *
+	 * @param file 根元素为patch-rules的xml文件
+	 * @return
+	 * @throws IOException 文件读取出错或格式错误
+	 */
+	public static XmlRules load(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			return new XmlRules(readRules(in, file.getName()));
+		}
+		catch (XMLStreamException e) {
+			throw new IOException("xml规则文件解析出错：" + file.getName() + "，" + e.getMessage(), e);
+		}
+		catch (IllegalArgumentException e) {
+			throw new IOException("xml规则文件格式错误：" + file.getName() + "，" + e.getMessage(), e);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static List<Rule> readRules(InputStream in, String fileName) throws XMLStreamException, IOException {
+		List<Rule> rules = new ArrayList<Rule>();
+		XMLEventReader reader = StaxXmlDocument.INPUT_FACTORY.createXMLEventReader(in);
+		try {
+			int depth = 0;
+			while (reader.hasNext()) {
+				XMLEvent event = reader.nextEvent();
+				if(event.isStartElement()){
+					depth++;
+					StartElement element = event.asStartElement();
+					String name = element.getName().getLocalPart();
+					if(depth == 1 && !"patch-rules".equals(name)){
+						throw new IOException("不是xml规则文件，根元素应为patch-rules：" + fileName);
+					}
+					if(depth == 2){
+						if(!"rule".equals(name)){
+							throw new IllegalArgumentException("第" + event.getLocation().getLineNumber() + "行：未知的元素" + name);
+						}
+						rules.add(readRule(reader, element));
+						depth--;
+					}
+				}else if(event.isEndElement()){
+					depth--;
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return rules;
+	}
+
+	private static Rule readRule(XMLEventReader reader, StartElement element) throws XMLStreamException {
+		String line = "第" + element.getLocation().getLineNumber() + "行：";
+		String actionName = attribute(element, "action");
+		String select = attribute(element, "select");
+		if(actionName == null || select == null){
+			throw new IllegalArgumentException(line + "rule缺少action或select");
+		}
+		List<XMLEvent> content = new ArrayList<XMLEvent>();
+		int depth = 1;
+		while (reader.hasNext()) {
+			XMLEvent event = reader.nextEvent();
+			if(event.isStartElement()){
+				depth++;
+			}else if(event.isEndElement() && --depth == 0){
+				break;
+			}
+			content.add(event);
+		}
+		//去掉首尾的空白，插入位置的缩进由要修改的文档决定
+		while (!content.isEmpty() && isWhitespace(content.get(0))) {
+			content.remove(0);
+		}
+		while (!content.isEmpty() && isWhitespace(content.get(content.size() - 1))) {
+			content.remove(content.size() - 1);
+		}
+
+		Action action;
+		try {
+			action = Action.valueOf(actionName.trim().toUpperCase().replace('-', '_'));
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(line + "未知的action：" + actionName);
+		}
+		Position position = null;
+		String attributeName = null;
+		String attributeValue = null;
+		switch (action) {
+			case REPLACE:
+				if(content.isEmpty()) throw new IllegalArgumentException(line + "replace规则没有内容");
+				break;
+			case INSERT:
+				if(content.isEmpty()) throw new IllegalArgumentException(line + "insert规则没有内容");
+				String positionName = attribute(element, "position");
+				try {
+					position = positionName == null ? Position.LAST : Position.valueOf(positionName.trim().toUpperCase());
+				}
+				catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException(line + "未知的position：" + positionName);
+				}
+				break;
+			case SET_ATTRIBUTE:
+				attributeName = attribute(element, "name");
+				if(attributeName == null) throw new IllegalArgumentException(line + "set-attribute规则缺少name");
+				attributeValue = attribute(element, "value");
+				if(attributeValue == null) attributeValue = "";
+				content.clear();
+				break;
+			default:
+				content.clear();
+				break;
+		}
+		try {
+			parseSelector(select);
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(line + e.getMessage());
+		}
+		return new Rule(action, select, position, attributeName, attributeValue, content);
+	}
+
+	private static String attribute(StartElement element, String name) {
+		Attribute attribute = element.getAttributeByName(new QName(name));
+		return attribute == null ? null : attribute.getValue();
+	}
+
+	static boolean isWhitespace(XMLEvent event) {
+		return event.isCharacters() && !event.asCharacters().isCData() && event.asCharacters().isWhiteSpace();
+	}
+
+	/**
+	 * 解析选择器，相对根元素的选择器前面补一级*匹配根元素
+	 */
+	static List<Step> parseSelector(String select) {
+		String text = select == null ? "" : select.trim();
+		if(text.isEmpty()){
+			throw new IllegalArgumentException("选择器为空");
+		}
+		List<Step> steps = new ArrayList<Step>();
+		boolean absolute = text.startsWith("/");
+		if(absolute){
+			text = text.substring(1);
+		}else{
+			steps.add(new Step("*"));
+		}
+		if(".".equals(text) && !absolute){
+			return steps;
+		}
+		int i = 0;
+		int length = text.length();
+		while (true) {
+			int nameStart = i;
+			while (i < length && text.charAt(i) != '[' && text.charAt(i) != '/') i++;
+			String name = text.substring(nameStart, i).trim();
+			if(name.isEmpty()){
+				throw new IllegalArgumentException("选择器缺少元素名称：" + select);
+			}
+			Step step = new Step(name);
+			while (i < length && text.charAt(i) == '[') {
+				i = parseCondition(text, i + 1, step, select);
+			}
+			steps.add(step);
+			if(i >= length) break;
+			if(text.charAt(i) != '/'){
+				throw new IllegalArgumentException("选择器格式错误：" + select);
+			}
+			i++;
+		}
+		return steps;
+	}
+
+	/**
+	 * 解析一个条件，返回]之后的位置
+	 */
+	private static int parseCondition(String text, int i, Step step, String select) {
+		int eq = text.indexOf('=', i);
+		if(eq < 0){
+			throw new IllegalArgumentException("选择器条件缺少=：" + select);
+		}
+		String left = text.substring(i, eq).trim();
+		if(left.isEmpty() || "@".equals(left)){
+			throw new IllegalArgumentException("选择器条件缺少名称：" + select);
+		}
+		int valueStart = eq + 1;
+		while (valueStart < text.length() && text.charAt(valueStart) == ' ') valueStart++;
+		String value;
+		int end;
+		if(valueStart < text.length() && (text.charAt(valueStart) == '"' || text.charAt(valueStart) == '\'')){
+			int close = text.indexOf(text.charAt(valueStart), valueStart + 1);
+			if(close < 0){
+				throw new IllegalArgumentException("选择器引号未闭合：" + select);
+			}
+			value = text.substring(valueStart + 1, close);
+			end = text.indexOf(']', close);
+		}else{
+			end = text.indexOf(']', valueStart);
+			value = end < 0 ? null : text.substring(valueStart, end).trim();
+		}
+		if(end < 0){
+			throw new IllegalArgumentException("选择器条件缺少]：" + select);
+		}
+		if(left.startsWith("@")){
+			step.attributeNames.add(left.substring(1).trim());
+			step.attributeValues.add(value);
+		}else{
+			step.childNames.add(left);
+			step.childValues.add(value);
+		}
+		return end + 1;
+	}
+
+}